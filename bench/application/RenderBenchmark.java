@@ -0,0 +1,126 @@
+package application;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmark.Corpus;
+
+/** JMH benchmarks for the database and formatting stages of a job: Database.bulkUpsert(), formatting the whole
+ *  table as it is streamed by Database.streamResults(), Main.buildString() and the paged JobResult.writeAll().
+ *  This class lives in the application package so it can call the protected formatting methods of Main.
+ *  The words table lives in an in-memory H2 database in MySQL mode (never the configured MySQL server, whose
+ *  table would be rewritten), so the benchmarks run offline; the H2 jar must be on the classpath.
+ *  @author derekdileo */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+	// Embedded stand-in for the MySQL server
+	public static final String STAND_IN_URL = "jdbc:h2:mem:wordfreq-bench;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+	// Distinct words in the table and in the ranking
+	@Param({"1000", "10000"})
+	public int vocabulary;
+
+	private WordCounter counts;
+	private JobResult result;
+	private List<Word> ranked;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		// Each fork is a new JVM, so the pool has not been created yet
+		System.setProperty(Settings.PREFIX + "db.url", STAND_IN_URL);
+
+		// Each word appears once per rank below it, so frequencies are all different
+		List<String> words = Corpus.vocabulary(vocabulary);
+		counts = new WordCounter(words.size());
+		for (int i = 0; i < words.size(); i++) {
+			counts.add(words.get(i), words.size() - i);
+		}
+		Database.createWordsTable("words");
+		Database.bulkUpsert(counts);
+
+		result = new JobResult(TopWords.select(counts, 10), TopWords.ranked(counts));
+		ranked = new ArrayList<Word>(TopWords.sorted(counts));
+	}
+
+	@Benchmark
+	public int bulkUpsert() {
+		return Database.bulkUpsert(counts);
+	}
+
+	@Benchmark
+	public int streamResults(Blackhole bh) {
+		int[] rank = new int[1];
+		return Database.streamResults(null, 0, word -> bh.consume(Main.buildString(word.getWord(), word.getFrequency(), rank[0]++)));
+	}
+
+	@Benchmark
+	public void buildString(Blackhole bh) {
+		for (int i = 0; i < ranked.size(); i++) {
+			Word word = ranked.get(i);
+			bh.consume(Main.buildString(word.getWord(), word.getFrequency(), i));
+		}
+	}
+
+	@Benchmark
+	public String displayTopTen() {
+		return Main.displayTopTen(result.getTopWords());
+	}
+
+	@Benchmark
+	public void writeAll(Blackhole bh) throws IOException {
+		result.writeAll(new BlackholeWriter(bh), JobResult.PAGE_SIZE);
+	}
+
+	/** Writer which hands every String to the Blackhole instead of a socket. */
+	private static final class BlackholeWriter extends Writer {
+
+		private final Blackhole bh;
+
+		BlackholeWriter(Blackhole bh) {
+			this.bh = bh;
+		}
+
+		@Override
+		public void write(String str) {
+			bh.consume(str);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			bh.consume(len);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,48 @@
+package benchmark;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import application.Settings;
+
+/** BenchmarkRunner runs the benchmark suite and writes the results as JMH JSON, one file per run, so runs of
+ *  different releases can be compared (e.g. with jmh.morethan.me or a script diffing the "primaryMetric" scores).
+ *  Settings: wordfreq.bench.include (regex of benchmarks to run, default all), wordfreq.bench.words and
+ *  wordfreq.bench.vocabulary (comma separated corpus sizes overriding the @Param defaults) and
+ *  wordfreq.bench.resultDir (default bench-results).
+ *  @author derekdileo */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		File dir = new File(Settings.getString("bench.resultDir", "bench-results"));
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			System.out.println("Cannot create " + dir + ", writing results to the working directory");
+			dir = new File(".");
+		}
+		File result = new File(dir, "jmh-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.include(Settings.getString("bench.include", "benchmark\\..*|application\\..*Benchmark"))
+				.resultFormat(ResultFormatType.JSON)
+				.result(result.getPath());
+		String words = Settings.getString("bench.words", null);
+		if (words != null) {
+			options.param("words", words.split("\\s*,\\s*"));
+		}
+		String vocabulary = Settings.getString("bench.vocabulary", null);
+		if (vocabulary != null) {
+			options.param("vocabulary", vocabulary.split("\\s*,\\s*"));
+		}
+
+		new Runner(options.build()).run();
+		System.out.println("Results written to " + result.getAbsolutePath());
+	}
+
+}
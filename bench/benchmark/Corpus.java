@@ -0,0 +1,154 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import application.WebScrape;
+import application.WordTokenizer;
+
+/** Corpus builds the inputs shared by the benchmarks: the bundled copy of The Raven and synthetic pages of any size.
+ *  A synthetic page looks like a Gutenberg page (HTML lines between a head and an end marker) and draws its words
+ *  from a Zipf-like distribution over a vocabulary which starts with the words of The Raven, so frequencies are
+ *  skewed the way natural text is. The same seed always gives the same page.
+ *  @author derekdileo */
+public final class Corpus {
+
+	/** Head and end markers of the bundled page (and of every synthetic page). */
+	public static final String HEAD = "<h1>The Raven</h1>";
+	public static final String END = "*** END OF THE PROJECT";
+
+	// Resource name of the bundled page
+	public static final String RAVEN = "/application/scrape.txt";
+
+	private static final int WORDS_PER_LINE = 12;
+
+	private Corpus() {
+	}
+
+	/** Method returns the text of the bundled page.
+	 *  @return contents of scrape.txt
+	 *  @throws IOException if the resource is missing */
+	public static String raven() throws IOException {
+		try (InputStream in = Corpus.class.getResourceAsStream(RAVEN)) {
+			if (in == null) {
+				throw new IOException(RAVEN + " is not on the classpath");
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/** Method returns the distinct countable words of The Raven in the order they first appear.
+	 *  @return list of words
+	 *  @throws IOException if the resource is missing */
+	public static List<String> ravenWords() throws IOException {
+		Set<String> words = new LinkedHashSet<String>();
+		WordTokenizer tokenizer = new WordTokenizer((buffer, offset, length) -> {
+			if (WebScrape.isCountable(buffer, offset, length)) {
+				words.add(new String(buffer, offset, length));
+			}
+		});
+		tokenizer.feed(raven());
+		tokenizer.finish();
+		return new ArrayList<String>(words);
+	}
+
+	/** Method returns a vocabulary: the words of The Raven followed by made-up words (letters only, so the
+	 *  tokenizer keeps them whole) until it has the requested size.
+	 *  @param size is the number of distinct words
+	 *  @return list of distinct words
+	 *  @throws IOException if the resource is missing */
+	public static List<String> vocabulary(int size) throws IOException {
+		List<String> raven = ravenWords();
+		List<String> words = new ArrayList<String>(size);
+		Set<String> seen = new LinkedHashSet<String>();
+		for (int i = 0; i < raven.size() && words.size() < size; i++) {
+			words.add(raven.get(i));
+			seen.add(raven.get(i));
+		}
+		for (int n = 0; words.size() < size; n++) {
+			String word = synthetic(n);
+			if (seen.add(word)) {
+				words.add(word);
+			}
+		}
+		return words;
+	}
+
+	/** Method draws words from the vocabulary with a Zipf-like (1/rank) distribution.
+	 *  @param words is the number of words to draw
+	 *  @param vocabulary is the number of distinct words to draw from
+	 *  @param seed makes the draw repeatable
+	 *  @return the words in the order they were drawn
+	 *  @throws IOException if the resource is missing */
+	public static String[] words(int words, int vocabulary, long seed) throws IOException {
+		List<String> vocab = vocabulary(vocabulary);
+
+		// Cumulative 1/rank weights, searched with a binary search per draw
+		double[] cumulative = new double[vocab.size()];
+		double sum = 0;
+		for (int i = 0; i < cumulative.length; i++) {
+			sum += 1.0 / (i + 1);
+			cumulative[i] = sum;
+		}
+
+		Random random = new Random(seed);
+		String[] drawn = new String[words];
+		for (int i = 0; i < words; i++) {
+			double target = random.nextDouble() * sum;
+			int lo = 0;
+			int hi = cumulative.length - 1;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (cumulative[mid] < target) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			drawn[i] = vocab.get(lo);
+		}
+		return drawn;
+	}
+
+	/** Method builds a synthetic page: a preamble, the head marker, paragraphs of words and the end marker.
+	 *  @param words is the number of words between the markers
+	 *  @param vocabulary is the number of distinct words
+	 *  @param seed makes the page repeatable
+	 *  @return page text
+	 *  @throws IOException if the resource is missing */
+	public static String page(int words, int vocabulary, long seed) throws IOException {
+		String[] drawn = words(words, vocabulary, seed);
+		StringBuilder sb = new StringBuilder(words * 8);
+		sb.append("<html>\n<head><title>Synthetic corpus</title></head>\n<body>\n");
+		sb.append(HEAD).append('\n');
+		for (int i = 0; i < drawn.length; i += WORDS_PER_LINE) {
+			sb.append("<p class='line'>");
+			for (int j = i; j < drawn.length && j < i + WORDS_PER_LINE; j++) {
+				if (j > i) {
+					sb.append(j % 5 == 0 ? ", " : " ");
+				}
+				sb.append(drawn[j]);
+			}
+			sb.append(".</p>\n");
+		}
+		sb.append("<div>").append(END).append(" ***</div>\n</body>\n</html>\n");
+		return sb.toString();
+	}
+
+	// Letters-only name for the n-th made-up word ("qa", "qb", ... "qaa", ...)
+	private static String synthetic(int n) {
+		StringBuilder sb = new StringBuilder("q");
+		do {
+			sb.append((char) ('a' + n % 26));
+			n /= 26;
+		} while (n > 0);
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,133 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import application.CaptureMode;
+import application.ParallelWordCount;
+import application.TopWords;
+import application.WebScrape;
+import application.Word;
+import application.WordCounter;
+import application.WordManager;
+
+/** JMH benchmarks for the scrape and count stages of a job and for ranking the counted words: tokenizing the
+ *  bundled scrape.txt through WebScrape.parseSite(), tokenizing and counting a synthetic page of the requested size,
+ *  sorting Words with Word.compareTo() and TopWords.RANKING, and filling a WordManager with addWord().
+ *  Everything runs offline; the bundled page is read from the classpath (file URLs bypass the fetch cache).
+ *  @author derekdileo */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+	// Words between the markers of the synthetic page
+	@Param({"10000", "100000"})
+	public int words;
+
+	// Distinct words the synthetic page draws from
+	@Param({"5000"})
+	public int vocabulary;
+
+	private String raven;
+	private String page;
+	private WordCounter counts;
+	private List<Word> counted;
+	private String[] distinct;
+
+	@Setup
+	public void setUp() throws IOException {
+		URL resource = PipelineBenchmark.class.getResource(Corpus.RAVEN);
+		if (resource == null) {
+			throw new IOException(Corpus.RAVEN + " is not on the classpath");
+		}
+		raven = resource.toString();
+		page = Corpus.page(words, vocabulary, 42);
+
+		// Counted words in no particular order, for the sorting benchmarks
+		counts = countPage();
+		counted = new ArrayList<Word>(counts.size());
+		counts.forEach((word, frequency) -> counted.add(new Word(word, frequency)));
+		Collections.shuffle(counted, new Random(42));
+		distinct = Corpus.vocabulary(vocabulary).toArray(new String[0]);
+	}
+
+	@Benchmark
+	public boolean parseSiteRaven(Blackhole bh) {
+		return WebScrape.parseSite(raven, Corpus.HEAD, Corpus.END, CaptureMode.all(),
+				(buffer, offset, length) -> bh.consume(length));
+	}
+
+	@Benchmark
+	public void tokenizePage(Blackhole bh) throws IOException {
+		WebScrape.parse(new BufferedReader(new StringReader(page)), Corpus.HEAD, Corpus.END,
+				(buffer, offset, length) -> bh.consume(length));
+	}
+
+	@Benchmark
+	public WordCounter countPage() throws IOException {
+		WordCounter counter = new WordCounter();
+		WebScrape.parse(new BufferedReader(new StringReader(page)), Corpus.HEAD, Corpus.END, WebScrape.counterSink(counter));
+		return counter;
+	}
+
+	@Benchmark
+	public WordCounter countPageParallel() {
+		return ParallelWordCount.count(page, 1 << 14, ForkJoinPool.commonPool());
+	}
+
+	@Benchmark
+	public List<Word> sortCompareTo() {
+		List<Word> sorted = new ArrayList<Word>(counted);
+		Collections.sort(sorted);
+		Collections.reverse(sorted);
+		return sorted;
+	}
+
+	@Benchmark
+	public List<Word> sortRanking() {
+		List<Word> sorted = new ArrayList<Word>(counted);
+		sorted.sort(TopWords.RANKING);
+		return sorted;
+	}
+
+	@Benchmark
+	public List<Word> selectTopTen() {
+		return TopWords.select(counts, 10);
+	}
+
+	@Benchmark
+	public WordManager addWord() {
+		// addWord() only accepts single digit frequencies and words it has not seen
+		WordManager manager = new WordManager();
+		for (int i = 0; i < distinct.length; i++) {
+			manager.addWord(distinct[i], 1 + i % 9);
+		}
+		return manager;
+	}
+
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import application.WebScrape;
+import application.WordCounter;
+import application.WordTokenizer;
+
+/** JMH comparison of WordCounter against HashMap(of String, Integer) for counting the tokens of The Raven 
+ *  (repeated to the requested number of tokens). Tokens are laid out in one char[] the way WordTokenizer 
+ *  hands them out, so the WordCounter benchmark looks words up straight from the char range while the 
+ *  HashMap benchmark has to build a String per token; hashMapPrebuiltStrings shows the map cost alone.
+ *  @author derekdileo */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordCounterBenchmark {
+
+	@Param({"100000", "1000000"})
+	public int tokens;
+
+	private char[] chars;
+	private int[] offsets;
+	private int[] lengths;
+	private String[] strings;
+
+	@Setup
+	public void setUp() throws IOException {
+		List<String> words = new ArrayList<String>();
+		try (InputStream in = WordCounterBenchmark.class.getResourceAsStream("/application/scrape.txt")) {
+			WordTokenizer tokenizer = new WordTokenizer((buffer, offset, length) -> {
+				if (WebScrape.isCountable(buffer, offset, length)) {
+					words.add(new String(buffer, offset, length));
+				}
+			});
+			tokenizer.feed(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			tokenizer.finish();
+		}
+
+		// Lay the tokens out back to back, as they would come out of the tokenizer
+		StringBuilder sb = new StringBuilder();
+		offsets = new int[tokens];
+		lengths = new int[tokens];
+		strings = new String[tokens];
+		for (int i = 0; i < tokens; i++) {
+			String word = words.get(i % words.size());
+			offsets[i] = sb.length();
+			lengths[i] = word.length();
+			strings[i] = word;
+			sb.append(word);
+		}
+		chars = sb.toString().toCharArray();
+	}
+
+	@Benchmark
+	public WordCounter wordCounterCharRange() {
+		WordCounter counter = new WordCounter();
+		for (int i = 0; i < tokens; i++) {
+			counter.increment(chars, offsets[i], lengths[i]);
+		}
+		return counter;
+	}
+
+	@Benchmark
+	public Map<String, Integer> hashMapNewStrings() {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < tokens; i++) {
+			counts.merge(new String(chars, offsets[i], lengths[i]), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	@Benchmark
+	public Map<String, Integer> hashMapPrebuiltStrings() {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < tokens; i++) {
+			counts.merge(strings[i], 1, Integer::sum);
+		}
+		return counts;
+	}
+
+}
@@ -0,0 +1,198 @@
+package application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** BinarySessionProtocol serves Clients which opened with a FrameCodec handshake. It follows the same
+ *  request flow as SessionProtocol (top ten, then optionally pages or all results) but answers with WORDS
+ *  frames of varint-encoded word/frequency pairs instead of formatted text, and ends every response with an END frame.
+ *  The front end feeds frames in with onFrame() and calls respond() (usually on a worker thread) once a request is ready.
+ *  @author derekdileo */
+public class BinarySessionProtocol {
+
+	private final Consumer<String> log;
+
+	// Frame waiting for respond()
+	private FrameCodec.Frame request;
+	private boolean ready;
+	private boolean closed;
+
+	// Set after a top ten only request has been answered, while the Client may still ask for more results
+	private JobResult pending;
+
+	/** Constructor
+	 *  @param log receives messages to display on the server GUI */
+	public BinarySessionProtocol(Consumer<String> log) {
+		this.log = log;
+	}
+
+	/** Method stores one frame sent by the Client.
+	 *  @param frame is the frame
+	 *  @return true if respond() should be called next */
+	public boolean onFrame(FrameCodec.Frame frame) {
+		if (closed || ready) {
+			return false;
+		}
+		if (frame.type == FrameCodec.QUIT) {
+			closed = true;
+			return false;
+		}
+		request = frame;
+		ready = true;
+		return true;
+	}
+
+	/** Method answers the stored frame: runs the ScrapeJob for a REQUEST, or reads pages of the pending result.
+	 *  @param out receives the response frames; it is flushed after each frame of words
+	 *  @throws IOException if the Client connection fails */
+	public void respond(OutputStream out) throws IOException {
+		boolean keepOpen = false;
+		try {
+			if (!ready) {
+				return;
+			}
+			ready = false;
+			FrameCodec.Frame frame = request;
+			request = null;
+
+			if (pending == null && frame.type == FrameCodec.REQUEST) {
+				keepOpen = runRequest(out, frame);
+			} else if (pending != null && frame.type == FrameCodec.RANGE) {
+				long start = System.nanoTime();
+				int from = FrameCodec.readVarint(frame.payload);
+				int count = FrameCodec.readVarint(frame.payload);
+				if (count <= 0) {
+					writeError(out, "RANGE count must be positive");
+				} else {
+					// At most one page per reply, as in the text protocol
+					count = Math.min(count, JobResult.PAGE_SIZE);
+					writeWords(out, pending.getRanking().size(), from, pending.getRanking().get(from, count));
+					FrameCodec.writeFrame(out, FrameCodec.END);
+					ServerMetrics.recordSince(ServerMetrics.Stage.RESPOND, start);
+				}
+				keepOpen = true;
+			} else if (pending != null && frame.type == FrameCodec.ALL) {
+				long start = System.nanoTime();
+				writeAll(out, pending);
+				ServerMetrics.recordSince(ServerMetrics.Stage.RESPOND, start);
+			} else {
+				writeError(out, "Unexpected frame type " + frame.type);
+			}
+		} finally {
+			out.flush();
+			closed = !keepOpen;
+		}
+	}
+
+	/** Method reports whether the session has nothing more to do and the connection can be closed.
+	 *  @return true once the response has been written (or the request was abandoned) */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/** Method marks the session as finished, e.g. when the Client disconnects early. */
+	public void close() {
+		closed = true;
+	}
+
+	// Runs the job and returns true if the Client may still ask for more results
+	private boolean runRequest(OutputStream out, FrameCodec.Frame frame) throws IOException {
+		String website = FrameCodec.readString(frame.payload);
+		String sourceHead = FrameCodec.readString(frame.payload);
+		String sourceEnd = FrameCodec.readString(frame.payload);
+		int flags = FrameCodec.readVarint(frame.payload);
+		log.accept("\nBinary request: " + website);
+
+		// Scrape, count and rank results for this session only, on a JobQueue worker
+		ScrapeJob job = (flags & FrameCodec.FLAG_CRAWL) != 0 ? new ScrapeJob(website, sourceHead, sourceEnd, true)
+				: new ScrapeJob(website, sourceHead, sourceEnd);
+		JobResult result;
+		try {
+			result = JobQueue.getDefault().run(job);
+		} catch (JobQueue.BusyException e) {
+			log.accept("\nRejected " + website + ": " + e.getMessage() + "\n" + JobQueue.getDefault().getStats());
+			writeBusy(out, e);
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		if (job.isCacheHit()) {
+			log.accept("\nServed from result cache: " + website + "\n" + ResultCache.getDefault().getStats());
+		} else if (job.getFetchStats() != null) {
+			log.accept("\n" + job.getFetchStats());
+		}
+		if (job.getCrawlResult() != null) {
+			log.accept("\n" + job.getCrawlResult());
+		}
+		if (result == null) {
+			log.accept("\nJob failed for " + website);
+			writeError(out, "Job failed for " + website);
+			return false;
+		}
+
+		// Send top ten results back to client
+		long start = System.nanoTime();
+		RankedWords ranking = result.getRanking();
+		writeWords(out, ranking.size(), 0, result.getTopWords());
+		FrameCodec.writeFrame(out, FrameCodec.END);
+
+		// Wait for RANGE or ALL before reading any other results
+		if ((flags & FrameCodec.FLAG_TOP_ONLY) != 0) {
+			ServerMetrics.recordSince(ServerMetrics.Stage.RESPOND, start);
+			pending = result;
+			return true;
+		}
+		writeAll(out, result);
+		ServerMetrics.recordSince(ServerMetrics.Stage.RESPOND, start);
+		return false;
+	}
+
+	// Streams every word in WORDS frames of one page each, then END
+	private static void writeAll(OutputStream out, JobResult result) throws IOException {
+		RankedWords ranking = result.getRanking();
+		int total = ranking.size();
+		int rank = 0;
+		List<Word> page;
+		while (!(page = ranking.get(rank, JobResult.PAGE_SIZE)).isEmpty()) {
+			writeWords(out, total, rank, page);
+			out.flush();
+			rank += page.size();
+			if (page.size() < JobResult.PAGE_SIZE) {
+				break;
+			}
+		}
+		FrameCodec.writeFrame(out, FrameCodec.END);
+	}
+
+	private static void writeWords(OutputStream out, int total, int firstRank, List<Word> words) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(16 + words.size() * 12);
+		FrameCodec.writeVarint(payload, total);
+		FrameCodec.writeVarint(payload, firstRank);
+		FrameCodec.writeVarint(payload, words.size());
+		for (Word word : words) {
+			FrameCodec.writeString(payload, word.getWord());
+			FrameCodec.writeVarint(payload, word.getFrequency());
+		}
+		FrameCodec.writeFrame(out, FrameCodec.WORDS, payload);
+	}
+
+	private static void writeBusy(OutputStream out, JobQueue.BusyException busy) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		FrameCodec.writeVarint(payload, (int) Math.min(busy.getRetryAfterSeconds(), Integer.MAX_VALUE));
+		FrameCodec.writeString(payload, busy.getMessage());
+		FrameCodec.writeFrame(out, FrameCodec.BUSY, payload);
+		FrameCodec.writeFrame(out, FrameCodec.END);
+	}
+
+	private static void writeError(OutputStream out, String message) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		FrameCodec.writeString(payload, message);
+		FrameCodec.writeFrame(out, FrameCodec.ERROR, payload);
+		FrameCodec.writeFrame(out, FrameCodec.END);
+	}
+
+}
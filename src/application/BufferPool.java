@@ -0,0 +1,56 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** BufferPool hands out reusable direct ByteBuffers of a fixed size so the NIO server does not 
+ *  allocate (and later garbage collect) a new buffer for every read or write.
+ *  @author derekdileo */
+public class BufferPool {
+
+	private final int bufferSize;
+	private final int maxPooled;
+	private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/** Constructor
+	 *  @param bufferSize is the capacity in bytes of every buffer
+	 *  @param maxPooled is the maximum number of free buffers kept for reuse */
+	public BufferPool(int bufferSize, int maxPooled) {
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/** Method returns a cleared buffer, reusing a free one when possible.
+	 *  @return a direct ByteBuffer of bufferSize bytes */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = free.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/** Method returns a buffer to the pool (it is dropped if the pool is already full).
+	 *  @param buffer is a buffer obtained from acquire() */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || buffer.capacity() != bufferSize) {
+			return;
+		}
+		if (pooled.incrementAndGet() <= maxPooled) {
+			free.offer(buffer);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+
+	/** Method returns the capacity of the buffers handed out by this pool.
+	 *  @return buffer size in bytes */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+}
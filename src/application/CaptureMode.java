@@ -0,0 +1,83 @@
+package application;
+
+/** CaptureMode decides how many sourceHead..sourceEnd regions of a page are captured. Once the last region has 
+ *  been captured the rest of the page is not read at all and the connection is closed.
+ *  The mode is chosen with wordfreq.scrape.capture = first (default), all, or a number of regions.
+ *  @author derekdileo */
+public final class CaptureMode {
+
+	private final int maxRegions;
+
+	private CaptureMode(int maxRegions) {
+		this.maxRegions = maxRegions;
+	}
+
+	/** Method returns a mode which stops after the first region.
+	 *  @return CaptureMode for one region */
+	public static CaptureMode first() {
+		return new CaptureMode(1);
+	}
+
+	/** Method returns a mode which captures every region on the page (the original behavior) and always reads the whole page.
+	 *  @return CaptureMode without a limit */
+	public static CaptureMode all() {
+		return new CaptureMode(Integer.MAX_VALUE);
+	}
+
+	/** Method returns a mode which stops after the given number of regions.
+	 *  @param regions is the maximum number of regions to capture
+	 *  @return CaptureMode for up to regions regions */
+	public static CaptureMode upTo(int regions) {
+		if (regions <= 0) {
+			throw new IllegalArgumentException("Number of regions must be positive: " + regions);
+		}
+		return new CaptureMode(regions);
+	}
+
+	/** Method converts "first", "all" or a number into a CaptureMode.
+	 *  @param value is the text to convert
+	 *  @return matching CaptureMode
+	 *  @throws IllegalArgumentException if the value is not recognized */
+	public static CaptureMode parse(String value) {
+		String mode = value.trim().toLowerCase();
+		if (mode.equals("first")) {
+			return first();
+		} else if (mode.equals("all")) {
+			return all();
+		}
+		try {
+			return upTo(Integer.parseInt(mode));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Unknown capture mode: " + value);
+		}
+	}
+
+	/** Method returns the mode configured with wordfreq.scrape.capture.
+	 *  @return configured CaptureMode (first if not set or invalid) */
+	public static CaptureMode fromSettings() {
+		try {
+			return parse(Settings.getString("scrape.capture", "first"));
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage() + ", using first");
+			return first();
+		}
+	}
+
+	/** Method reports whether capturing is finished after the given number of complete regions.
+	 *  @param regions is the number of regions captured so far
+	 *  @return true if no more regions should be read */
+	public boolean isComplete(int regions) {
+		return regions >= maxRegions;
+	}
+
+	// Getter
+	public int getMaxRegions() {
+		return maxRegions;
+	}
+
+	@Override
+	public String toString() {
+		return maxRegions == 1 ? "first" : maxRegions == Integer.MAX_VALUE ? "all" : String.valueOf(maxRegions);
+	}
+
+}
@@ -0,0 +1,115 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.function.Consumer;
+
+/** A ClientSession serves one connected Client over a blocking socket: it reads the user's responses 
+ *  and lets its SessionProtocol run the job and send the results back. All state lives in the session 
+ *  so concurrent Clients do not share anything.
+ *  @author derekdileo */
+public class ClientSession implements Runnable {
+
+	private final Socket socket;
+	private final Consumer<String> log;
+	private final SessionProtocol protocol;
+
+	/** Constructor
+	 *  @param socket is the accepted connection to the Client
+	 *  @param log receives messages to display on the server GUI */
+	public ClientSession(Socket socket, Consumer<String> log) {
+		this.socket = socket;
+		this.log = log;
+		this.protocol = new SessionProtocol(log);
+	}
+
+	/** Method reads the Client's responses, runs the job and sends top ten and all results back. 
+	 *  Clients which open with a FrameCodec handshake are served by a BinarySessionProtocol instead. */
+	@Override
+	public void run() {
+		try (Socket s = socket;
+				BufferedInputStream in = new BufferedInputStream(s.getInputStream());
+				BufferedOutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+
+			// Peek at the first byte to choose between the binary and the text protocol
+			in.mark(1);
+			int first = in.read();
+			in.reset();
+			if (first >= 0 && FrameCodec.isHandshake(first)) {
+				runBinary(s, in, out);
+			} else {
+				runText(s, in, out);
+			}
+
+		} catch (IOException ex) {
+			log.accept("\nError in ClientSession.run(): " + ex.getMessage());
+		}
+	}
+
+	private void runText(Socket s, InputStream in, OutputStream out) throws IOException {
+		// Wrap input stream with a buffered reader
+		BufferedReader fromClient = new BufferedReader(new InputStreamReader(in));
+		// Wrap output stream with a buffered writer (flushed after each block of results)
+		Writer toClient = new BufferedWriter(new OutputStreamWriter(out));
+
+		while (!protocol.isClosed()) {
+			
+			// Read each response line sent by Client
+			String response = fromClient.readLine();
+			if (response == null) {
+				log.accept("\nClient " + s.getRemoteSocketAddress() + " disconnected early");
+				protocol.close();
+				return;
+			}
+
+			// Run the job once the request is complete
+			if (protocol.onLine(response)) {
+				protocol.respond(toClient);
+			}
+		}
+		toClient.flush();
+	}
+
+	private void runBinary(Socket s, InputStream in, OutputStream out) throws IOException {
+		// Answer the handshake with the version both sides speak
+		byte[] handshake = new byte[FrameCodec.handshakeLength()];
+		int read = 0;
+		while (read < handshake.length) {
+			int n = in.read(handshake, read, handshake.length - read);
+			if (n < 0) {
+				return;
+			}
+			read += n;
+		}
+		int version = FrameCodec.negotiate(handshake);
+		if (version < 0) {
+			log.accept("\nClient " + s.getRemoteSocketAddress() + " sent a malformed handshake");
+			return;
+		}
+		out.write(FrameCodec.handshake(version));
+		out.flush();
+
+		BinarySessionProtocol binary = new BinarySessionProtocol(log);
+		while (!binary.isClosed()) {
+			FrameCodec.Frame frame = FrameCodec.readFrame(in);
+			if (frame == null) {
+				log.accept("\nClient " + s.getRemoteSocketAddress() + " disconnected early");
+				binary.close();
+				return;
+			}
+			if (binary.onFrame(frame)) {
+				binary.respond(out);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,297 @@
+package application;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The ConnectionPool class keeps a bounded set of open JDBC connections which are borrowed and
+ *  returned by the Database class instead of opening a new connection for every statement.
+ *  Idle connections are closed by a background evictor and connections which have been idle for a
+ *  while are validated before they are handed out again.
+ *  @author derekdileo */
+public class ConnectionPool {
+
+	// Connection details
+	private final String url;
+	private final String username;
+	private final String password;
+
+	// Pool limits
+	private final int maxSize;
+	private final long idleTimeoutMillis;
+	private final long borrowTimeoutMillis;
+	private final long validateAfterMillis;
+
+	// One permit per connection that may exist (idle or borrowed)
+	private final Semaphore permits;
+
+	// Idle connections, most recently returned first
+	private final Deque<IdleConnection> idle = new ArrayDeque<IdleConnection>();
+
+	// Connections handed out by borrow() and not yet released, each holding one permit
+	private final Set<Connection> checkedOut = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>()));
+
+	private final ScheduledExecutorService evictor;
+	private volatile boolean closed;
+
+	// Statistics
+	private final AtomicLong borrowed = new AtomicLong();
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong evicted = new AtomicLong();
+	private final AtomicLong invalidated = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	/** Constructor creates an empty pool; connections are opened lazily as they are borrowed.
+	 *  @param url is the JDBC url of the database
+	 *  @param username is the database user
+	 *  @param password is the password of the database user
+	 *  @param maxSize is the maximum number of connections (idle plus borrowed)
+	 *  @param idleTimeoutMillis is how long an unused connection is kept open before it is closed
+	 *  @param borrowTimeoutMillis is how long borrow() waits for a free connection before giving up
+	 *  @param validateAfterMillis is how long a connection may sit idle before it is validated on borrow */
+	public ConnectionPool(String url, String username, String password, int maxSize,
+			long idleTimeoutMillis, long borrowTimeoutMillis, long validateAfterMillis) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+		}
+		this.url = url;
+		this.username = username;
+		this.password = password;
+		this.maxSize = maxSize;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.validateAfterMillis = validateAfterMillis;
+		this.permits = new Semaphore(maxSize, true);
+
+		// Close connections which have been idle for too long
+		evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "connection-pool-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1000, idleTimeoutMillis / 2);
+		evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/** Method borrows a connection from the pool, opening a new one if no idle connection is available.
+	 *  Every borrowed connection must be handed back with release().
+	 *  @return an open database Connection
+	 *  @throws SQLException if no connection becomes available within the borrow timeout or one cannot be opened */
+	public Connection borrow() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+
+		// Wait for a free slot and record how long it took
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeouts.incrementAndGet();
+				throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a database connection");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+		long waited = System.nanoTime() - start;
+		totalWaitNanos.addAndGet(waited);
+		maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+		try {
+			// Prefer an idle connection which is still usable
+			IdleConnection candidate;
+			while ((candidate = pollIdle()) != null) {
+				if (isUsable(candidate)) {
+					borrowed.incrementAndGet();
+					checkedOut.add(candidate.conn);
+					return candidate.conn;
+				}
+				invalidated.incrementAndGet();
+				closeQuietly(candidate.conn);
+			}
+
+			// Otherwise open a new one
+			Connection conn = DriverManager.getConnection(url, username, password);
+			created.incrementAndGet();
+			borrowed.incrementAndGet();
+			checkedOut.add(conn);
+			return conn;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/** Method hands a borrowed connection back to the pool. Closed connections are discarded
+	 *  and connections left in a transaction are rolled back first.
+	 *  A connection which is not checked out (released twice, or not from this pool) is ignored, so it
+	 *  cannot return a permit it never took and let the pool grow past maxSize.
+	 *  @param conn is a connection returned by borrow() (null is ignored) */
+	public void release(Connection conn) {
+		if (conn == null) {
+			return;
+		}
+		if (!checkedOut.remove(conn)) {
+			System.out.println("Ignored release of a connection which is not borrowed from this pool");
+			return;
+		}
+		try {
+			if (closed || conn.isClosed()) {
+				closeQuietly(conn);
+				return;
+			}
+			// Reset state a previous borrower may have changed
+			if (!conn.getAutoCommit()) {
+				conn.rollback();
+				conn.setAutoCommit(true);
+			}
+			synchronized (idle) {
+				idle.addFirst(new IdleConnection(conn, System.currentTimeMillis()));
+			}
+		} catch (SQLException e) {
+			invalidated.incrementAndGet();
+			closeQuietly(conn);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/** Method closes every idle connection and stops the evictor. Connections still borrowed
+	 *  are closed when they are released. */
+	public void close() {
+		closed = true;
+		evictor.shutdownNow();
+		synchronized (idle) {
+			for (IdleConnection entry : idle) {
+				closeQuietly(entry.conn);
+			}
+			idle.clear();
+		}
+	}
+
+	/** Method returns a snapshot of the pool occupancy and wait-time statistics.
+	 *  @return Stats describing the pool at the time of the call */
+	public Stats getStats() {
+		int idleCount;
+		synchronized (idle) {
+			idleCount = idle.size();
+		}
+		int inUse = maxSize - permits.availablePermits();
+		long borrows = borrowed.get();
+		return new Stats(maxSize, inUse, idleCount, permits.getQueueLength(), borrows, created.get(),
+				evicted.get(), invalidated.get(), timeouts.get(),
+				borrows == 0 ? 0 : totalWaitNanos.get() / borrows, maxWaitNanos.get());
+	}
+
+	private IdleConnection pollIdle() {
+		synchronized (idle) {
+			return idle.pollFirst();
+		}
+	}
+
+	private boolean isUsable(IdleConnection candidate) {
+		long idleFor = System.currentTimeMillis() - candidate.since;
+		if (idleFor > idleTimeoutMillis) {
+			return false;
+		}
+		try {
+			if (candidate.conn.isClosed()) {
+				return false;
+			}
+			// Ping connections which have been idle for a while (the server may have dropped them)
+			if (idleFor > validateAfterMillis) {
+				return candidate.conn.isValid(5);
+			}
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void evictIdle() {
+		long now = System.currentTimeMillis();
+		synchronized (idle) {
+			Iterator<IdleConnection> it = idle.iterator();
+			while (it.hasNext()) {
+				IdleConnection entry = it.next();
+				if (now - entry.since > idleTimeoutMillis) {
+					it.remove();
+					evicted.incrementAndGet();
+					closeQuietly(entry.conn);
+				}
+			}
+		}
+	}
+
+	private static void closeQuietly(Connection conn) {
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			System.out.println("Error closing pooled connection: " + e.getMessage());
+		}
+	}
+
+	/** An idle connection and the time it was returned to the pool. */
+	private static final class IdleConnection {
+		final Connection conn;
+		final long since;
+
+		IdleConnection(Connection conn, long since) {
+			this.conn = conn;
+			this.since = since;
+		}
+	}
+
+	/** Stats is an immutable snapshot of pool occupancy and borrow wait times. */
+	public static final class Stats {
+		public final int maxSize;
+		public final int inUse;
+		public final int idle;
+		public final int waiting;
+		public final long borrowed;
+		public final long created;
+		public final long evicted;
+		public final long invalidated;
+		public final long timeouts;
+		public final long averageWaitNanos;
+		public final long maxWaitNanos;
+
+		Stats(int maxSize, int inUse, int idle, int waiting, long borrowed, long created, long evicted,
+				long invalidated, long timeouts, long averageWaitNanos, long maxWaitNanos) {
+			this.maxSize = maxSize;
+			this.inUse = inUse;
+			this.idle = idle;
+			this.waiting = waiting;
+			this.borrowed = borrowed;
+			this.created = created;
+			this.evicted = evicted;
+			this.invalidated = invalidated;
+			this.timeouts = timeouts;
+			this.averageWaitNanos = averageWaitNanos;
+			this.maxWaitNanos = maxWaitNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "ConnectionPool[inUse=" + inUse + "/" + maxSize + ", idle=" + idle + ", waiting=" + waiting
+					+ ", borrowed=" + borrowed + ", created=" + created + ", evicted=" + evicted
+					+ ", invalidated=" + invalidated + ", timeouts=" + timeouts
+					+ ", avgWait=" + TimeUnit.NANOSECONDS.toMicros(averageWaitNanos) + "us"
+					+ ", maxWait=" + TimeUnit.NANOSECONDS.toMicros(maxWaitNanos) + "us]";
+		}
+	}
+
+}
@@ -1,37 +1,78 @@
 package application;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /** The Database class will be home to all methods which  
  *  pertain to the local MySQL database for this project.
+ *  Connections are borrowed from a shared ConnectionPool and handed back when each method is done.
  *  @author derekdileo */
 public class Database {
 
-	// Declare variable
-	protected static Connection conn;
+	// Number of rows sent to the database per executeBatch() call in bulkUpsert()
+	public static final int BATCH_SIZE = 1000;
 	
-	/** Method establishes a connection with local MySQL database
+	// Shared pool of connections, created on first use
+	private static volatile ConnectionPool pool;
+	
+	/** Method returns the shared connection pool, creating it from the wordfreq.db.* settings on first use.
+	 *  @return the ConnectionPool used by every Database method */
+	public static ConnectionPool getPool() {
+		if (pool == null) {
+			synchronized (Database.class) {
+				if (pool == null) {
+					try {
+						// Load the driver once instead of on every connection
+						Class.forName("com.mysql.cj.jdbc.Driver");
+					} catch (ClassNotFoundException e) {
+						System.out.println("MySQL driver not found: " + e.getMessage());
+					}
+					// rewriteBatchedStatements lets the driver send each batch as one multi-row INSERT
+					// and useCursorFetch lets streamResults() read through a server-side cursor
+					String url = Settings.getString("db.url", 
+							"jdbc:mysql://localhost:3306/word_occurrences?rewriteBatchedStatements=true&useCursorFetch=true");
+//					String url = "jdbc:mysql://24.196.52.166:3306/database_name"; used for an online db
+					pool = new ConnectionPool(url, 
+							Settings.getString("db.username", "root"), 
+							Settings.getString("db.password", "rootpassword"),
+							Settings.getInt("db.poolSize", 8),
+							Settings.getLong("db.idleTimeoutMillis", 60000),
+							Settings.getLong("db.borrowTimeoutMillis", 30000),
+							Settings.getLong("db.validateAfterMillis", 5000));
+				}
+			}
+		}
+		return pool;
+	}
+	
+	/** Method borrows a connection to the local MySQL database from the pool. 
+	 *  The caller must hand it back with releaseConnection() rather than closing it.
 	 *  @return returns a database Connection to the caller
-	 *  @throws Exception */
+	 *  @throws Exception if no connection could be borrowed */
 	public static Connection getConnection() throws Exception {
-		try {
-			String driver = "com.mysql.cj.jdbc.Driver";
-			String url = "jdbc:mysql://localhost:3306/word_occurrences"; 
-//			String url = "jdbc:mysql://24.196.52.166:3306/database_name"; used for an online db
-			String username = "root";
-			String password = "rootpassword";
-			Class.forName(driver);
-			conn = DriverManager.getConnection(url, username, password);
-			return conn;
-		} catch (Exception e) {
-			System.out.println(e.getMessage());
-			e.printStackTrace();
- 		} 
-		// Return null if not successful
-		return null;
+		return getPool().borrow();
+	}
+	
+	/** Method hands a connection borrowed with getConnection() back to the pool.
+	 *  @param conn is the borrowed connection (null is ignored) */
+	public static void releaseConnection(Connection conn) {
+		if (conn != null) {
+			getPool().release(conn);
+		}
+	}
+	
+	/** Method returns pool occupancy and wait-time statistics.
+	 *  @return a snapshot of the connection pool statistics */
+	public static ConnectionPool.Stats getPoolStats() {
+		return getPool().getStats();
 	}
 	
 	/** Method creates the standard words table within the database (if it does not exist already).
@@ -39,45 +80,78 @@ public class Database {
 	 *  otherwise, this would be hard-coded.
 	 *  @throws Exception */
 	public static void createWordsTable(String tableName) throws Exception {
+		Connection conn = null;
 		try {
-			// Establish a connection
+			// Borrow a connection
 			conn = getConnection();
 			
 			// Create PreparedStatement and Execute
-			String create = "CREATE TABLE IF NOT EXISTS " + tableName + " (word varchar(255) NOT NULL UNIQUE, frequency int NOT NULL, PRIMARY KEY(word))";
-			PreparedStatement pstmt = conn.prepareStatement(create);
- 		 	pstmt.executeUpdate();
- 		 	
- 		 	// Close the connection
-			conn.close();
+			// The frequency index lets ORDER BY frequency DESC LIMIT n read just n index entries
+			String create = "CREATE TABLE IF NOT EXISTS " + tableName + " (word varchar(255) NOT NULL UNIQUE, frequency int NOT NULL, "
+					+ "PRIMARY KEY(word), INDEX idx_frequency (frequency))";
+			try (PreparedStatement pstmt = conn.prepareStatement(create)) {
+				pstmt.executeUpdate();
+			}
+			
+			// Tables created before the index existed get it now
+			if (!hasIndex(conn, tableName, "idx_frequency")) {
+				try (PreparedStatement pstmt = conn.prepareStatement("CREATE INDEX idx_frequency ON " + tableName + " (frequency)")) {
+					pstmt.executeUpdate();
+				}
+			}
 		} catch(Exception e) {
 			System.out.println(e.getMessage());
 			e.printStackTrace();
 		} finally {
+			// Return the connection to the pool
+			releaseConnection(conn);
+			invalidateAll();
 			System.out.println("The Method: createTable() is complete!");
 		}
 		
 	}
 	
+	/** Method checks the table's metadata for an index.
+	 *  @return true if the table has an index with the given name */
+	private static boolean hasIndex(Connection conn, String tableName, String indexName) throws SQLException {
+		// Metadata lookups match the identifier case the database stores
+		DatabaseMetaData meta = conn.getMetaData();
+		if (meta.storesUpperCaseIdentifiers()) {
+			tableName = tableName.toUpperCase();
+		} else if (meta.storesLowerCaseIdentifiers()) {
+			tableName = tableName.toLowerCase();
+		}
+		try (ResultSet indexes = meta.getIndexInfo(conn.getCatalog(), null, tableName, false, false)) {
+			while (indexes.next()) {
+				if (indexName.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
 	/** Method drops a table within the database (if it exists).
 	 *  @param tableName is the name of the table to be deleted.
 	 *  @throws Exception */
 	public static void deleteTable(String tableName) throws Exception {
+		Connection conn = null;
 		try {
-			// Establish a connection
+			// Borrow a connection
 			conn = getConnection();
 			
 			// Create PreparedStatement and Execute
 			String delete = "DROP TABLE IF EXISTS " + tableName + "";
-			PreparedStatement pstmt = conn.prepareStatement(delete);
- 		 	pstmt.executeUpdate();
- 		 	
- 		 	// Close the connection
-			conn.close();
+			try (PreparedStatement pstmt = conn.prepareStatement(delete)) {
+				pstmt.executeUpdate();
+			}
 		} catch(Exception e) {
 			System.out.println("Error in Database.deleteTable(): " + e.getMessage());
 			e.printStackTrace();
 		} finally {
+			// Return the connection to the pool
+			releaseConnection(conn);
+			invalidateAll();
 			System.out.println("The Method: deleteTable() is complete!");
 		}
 		
@@ -88,16 +162,26 @@ public class Database {
 	 *  @param frequency is the frequency of occurrence of the word in our program 
 	 *  @throws Exception */
 	public static void post(String word, int frequency) throws Exception {
+		MaterializedTopWords top = beginTopWrite();
+		Connection conn = null;
 		try {
 			conn = getConnection();
-			String post = "INSERT INTO words (word, frequency) VALUES ('" + word +"', '" + frequency + "')";
-			PreparedStatement pstmt = conn.prepareStatement(post);
-			pstmt.executeUpdate();
-			conn.close();
+			String post = "INSERT INTO words (word, frequency) VALUES (?, ?)";
+			try (PreparedStatement pstmt = conn.prepareStatement(post)) {
+				pstmt.setString(1, word);
+				pstmt.setInt(2, frequency);
+				pstmt.executeUpdate();
+				ServerMetrics.dbRoundTrips(1);
+			}
 		} catch(Exception e) {
 			System.out.println(e.getMessage());
 			e.printStackTrace();
-		} 
+		} finally {
+			releaseConnection(conn);
+			// Even a failed statement may have reached the table
+			invalidate(word);
+			endTopWrite(top, null);
+		}
 		
 	}
 	
@@ -105,16 +189,24 @@ public class Database {
 	 *  @param word is the desired word to be removed from the words table
 	 *  @throws Exception */
 	public static void delete(String word) throws Exception {
+		MaterializedTopWords top = beginTopWrite();
+		Connection conn = null;
 		try {
 			conn = getConnection();
-			String post = "DELETE FROM words WHERE word = '" + word + "'";
-			PreparedStatement pstmt = conn.prepareStatement(post);
-			pstmt.executeUpdate();
-			conn.close();
+			String post = "DELETE FROM words WHERE word = ?";
+			try (PreparedStatement pstmt = conn.prepareStatement(post)) {
+				pstmt.setString(1, word);
+				pstmt.executeUpdate();
+				ServerMetrics.dbRoundTrips(1);
+			}
 		} catch(Exception e) {
 			System.out.println(e.getMessage());
 			e.printStackTrace();
-		} 
+		} finally {
+			releaseConnection(conn);
+			invalidate(word);
+			endTopWrite(top, null);
+		}
 		
 	}
 	
@@ -123,64 +215,663 @@ public class Database {
 	 *  @param frequency is the new frequency of occurrence of the word in our program 
 	 *  @throws Exception */
 	public static void update(String word, int frequency) {
+		MaterializedTopWords top = beginTopWrite();
+		Connection conn = null;
 		try {
 			conn = getConnection();
-			String update = "UPDATE words SET frequency = " + frequency + " WHERE word  = '" + word + "'";
-			PreparedStatement pstmt = conn.prepareStatement(update);
-			pstmt.executeUpdate();
-			conn.close();
+			String update = "UPDATE words SET frequency = ? WHERE word = ?";
+			try (PreparedStatement pstmt = conn.prepareStatement(update)) {
+				pstmt.setInt(1, frequency);
+				pstmt.setString(2, word);
+				pstmt.executeUpdate();
+				ServerMetrics.dbRoundTrips(1);
+			}
 		} catch(Exception e) {
 			System.out.println(e.getMessage());
 			e.printStackTrace();
-		} 
+		} finally {
+			releaseConnection(conn);
+			invalidate(word);
+			endTopWrite(top, null);
+		}
 		
 	}
 	
+	/** Method merges in-memory word counts into the words table with an insert-or-increment upsert. 
+	 *  Rows are sent in batches of BATCH_SIZE inside one transaction, so a whole job costs a handful 
+	 *  of round trips instead of a query plus an update (or post) for every word.
+	 *  @param counts maps each distinct word to the number of occurrences to add to its frequency 
+	 *  @return number of batches sent to the database (or -1 if not successful) */
+	public static int bulkUpsert(Map<String, Integer> counts) {
+		return counts == null ? 0 : bulkUpsert(WordCounter.of(counts));
+	}
+	
+	/** Method merges the counts of a WordCounter into the words table (see bulkUpsert(Map)).
+	 *  @param counts holds each distinct word and the number of occurrences to add to its frequency 
+	 *  @return number of batches sent to the database (or -1 if not successful) */
+	public static int bulkUpsert(WordCounter counts) {
+		if (counts == null || counts.isEmpty()) {
+			return 0;
+		}
+		MaterializedTopWords top = beginTopWrite();
+		WordCounter committed = null;
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			conn.setAutoCommit(false);
+			String upsert = "INSERT INTO words (word, frequency) VALUES (?, ?) "
+					+ "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+			int pending = 0;
+			int batches = 0;
+			try (PreparedStatement pstmt = conn.prepareStatement(upsert)) {
+				WordCounter.Cursor cursor = counts.cursor();
+				while (cursor.next()) {
+					pstmt.setString(1, cursor.word());
+					pstmt.setInt(2, cursor.count());
+					pstmt.addBatch();
+					
+					// Send a full batch
+					if (++pending == BATCH_SIZE) {
+						pstmt.executeBatch();
+						ServerMetrics.dbRoundTrips(1);
+						batches++;
+						pending = 0;
+					}
+				}
+				
+				// Send whatever is left over
+				if (pending > 0) {
+					pstmt.executeBatch();
+					ServerMetrics.dbRoundTrips(1);
+					batches++;
+				}
+				conn.commit();
+				committed = counts;
+				ServerMetrics.dbRoundTrips(1);
+			} catch (Exception e) {
+				conn.rollback();
+				throw e;
+			}
+			return batches;
+		} catch(Exception e) {
+			System.out.println("Error in Database.bulkUpsert(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			// The pool restores auto-commit before the connection is reused
+			releaseConnection(conn);
+			invalidate(counts);
+			endTopWrite(top, committed);
+		}
+		
+		return -1; // if not successful
+	}
+	
 	/** Method to query for a word and return its frequency (if present)- 
 	 *  otherwise, frequency is set to -1. 
+	 *  Lookups go through the FrequencyCache (when enabled), so only a miss reaches the database.
 	 *  @param word is the word to search for in the database.
 	 *  @return frequency of the word (or -1 if word not present in db) */
 	public static int queryFrequency(String word) {
+		FrequencyCache cache = FrequencyCache.getDefault();
+		Integer frequency = cache == null || word == null ? selectFrequency(word) : cache.get(word, Database::selectFrequency);
+		return frequency == null ? -1 : frequency; // -1 if not successful
+	}
+	
+	/** Method reads the frequency of a word from the words table.
+	 *  @param word is the word to search for
+	 *  @return frequency of the word, -1 if it is not present, or null if the query failed (so it isn't cached) */
+	private static Integer selectFrequency(String word) {
+		Connection conn = null;
 		try {
 			conn = getConnection();
-			String query = "SELECT frequency FROM words WHERE word = '" + word + "'";
-			PreparedStatement pstmt = conn.prepareStatement(query);
-			ResultSet rs = pstmt.executeQuery();
-			int frequency = 0;
-			if(rs.next()) {
-				frequency = rs.getInt(1);
-				conn.close();
-				return frequency;
-			} else {
-				frequency = -1;
-				conn.close();
-				return frequency;
+			String query = "SELECT frequency FROM words WHERE word = ?";
+			try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+				pstmt.setString(1, word);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					ServerMetrics.dbRoundTrips(1);
+					if(rs.next()) {
+						return rs.getInt(1);
+					} else {
+						return -1;
+					}
+				}
 			}
 		} catch(Exception e) {
 			System.out.println("Error in Database.queryFrequency(): " + e.getMessage());
 			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+		
+		return null;
+	}
+	
+	/** Method drops a changed word from the FrequencyCache.
+	 *  @param word is the word whose row was written */
+	private static void invalidate(String word) {
+		FrequencyCache cache = FrequencyCache.getDefault();
+		if (cache != null && word != null) {
+			cache.invalidate(word);
+		}
+	}
+	
+	/** Method drops merged words from the FrequencyCache, or the whole cache when a batch touches more words than it holds.
+	 *  @param counts holds the words whose rows were written */
+	private static void invalidate(WordCounter counts) {
+		FrequencyCache cache = FrequencyCache.getDefault();
+		if (cache == null) {
+			return;
+		}
+		if (counts.size() > cache.getMaxEntries()) {
+			cache.clear();
+			return;
+		}
+		WordCounter.Cursor cursor = counts.cursor();
+		while (cursor.next()) {
+			cache.invalidate(cursor.word());
+		}
+	}
+	
+	/** Method drops every word from the FrequencyCache and MaterializedTopWords after the words table was dropped or created. */
+	private static void invalidateAll() {
+		FrequencyCache cache = FrequencyCache.getDefault();
+		if (cache != null) {
+			cache.clear();
+		}
+		MaterializedTopWords top = MaterializedTopWords.getDefault();
+		if (top != null) {
+			top.invalidate();
+		}
+	}
+	
+	/** Method tells MaterializedTopWords a write to the words table is starting.
+	 *  @return the view to hand to endTopWrite() (null if it is disabled) */
+	private static MaterializedTopWords beginTopWrite() {
+		MaterializedTopWords top = MaterializedTopWords.getDefault();
+		if (top != null) {
+			top.beginWrite();
+		}
+		return top;
+	}
+	
+	/** Method applies a finished write to MaterializedTopWords.
+	 *  @param top is the view returned by beginTopWrite() (null is ignored)
+	 *  @param merged holds the counts added by a committed upsert (null if the write set frequencies or may have failed) */
+	private static void endTopWrite(MaterializedTopWords top, WordCounter merged) {
+		if (top == null) {
+			return;
+		}
+		if (merged != null) {
+			top.applied(merged);
+		} else {
+			top.invalidated();
+		}
+	}
+	
+	/** Method returns the most frequent words. They are answered from MaterializedTopWords, which is kept up to date
+	 *  as counts are merged; when it doesn't know enough of the ranking, an indexed ORDER BY frequency DESC LIMIT query 
+	 *  reads its whole capacity (only those rows are read and transferred instead of the whole table).
+	 *  @param limit is the number of words wanted (e.g. 10 for the top ten)
+	 *  @return List of up to limit words, most frequent first (empty if not successful) */
+	public static List<Word> getTopResults(int limit) {
+		MaterializedTopWords top = MaterializedTopWords.getDefault();
+		if (top == null || limit > top.getCapacity()) {
+			return getResultsPage(0, limit);
+		}
+		List<Word> words = top.get(limit);
+		if (words != null) {
+			return words;
+		}
+		
+		// Read the whole prefix the view keeps, so the next requests are answered from memory
+		long version = top.beginRefill();
+		List<Word> ranked = new ArrayList<Word>();
+		if (streamResults(null, top.getCapacity(), ranked::add) >= 0) {
+			top.refill(version, ranked);
+		}
+		return new ArrayList<Word>(ranked.subList(0, Math.min(Math.max(limit, 0), ranked.size())));
+	}
+	
+	/** Method returns one page of the words table in ranking order (frequency DESC, then word).
+	 *  @param offset is the 0-based rank of the first word
+	 *  @param limit is the maximum number of words wanted
+	 *  @return List of up to limit words (empty if not successful) */
+	public static List<Word> getResultsPage(int offset, int limit) {
+		List<Word> page = new ArrayList<Word>();
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String query = "SELECT word, frequency FROM words ORDER BY frequency DESC, word LIMIT ? OFFSET ?";
+			try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+				pstmt.setInt(1, limit);
+				pstmt.setInt(2, offset);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					ServerMetrics.dbRoundTrips(1);
+					while (rs.next()) {
+						page.add(new Word(rs.getString(1), rs.getInt(2)));
+					}
+				}
+			}
+		} catch(Exception e) {
+			System.out.println("Error in Database.getResultsPage(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+		
+		return page;
+	}
+	
+	/** Method counts the rows of the words table.
+	 *  @return number of distinct words (-1 if not successful) */
+	public static int countWords() {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			try (PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM words");
+					ResultSet rs = pstmt.executeQuery()) {
+				ServerMetrics.dbRoundTrips(1);
+				if (rs.next()) {
+					return rs.getInt(1);
+				}
+			}
+		} catch(Exception e) {
+			System.out.println("Error in Database.countWords(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
 		}
 		
 		return -1; // if not successful
 	}
 	
-	/** Method that queries database for * FROM words, orders by frequency DESC and returns a ResultSet. 
-	 *  @return ResultSet of query SELECT * FROM words ORDER BY frequency DESC */
-	public static ResultSet getResults() {
+	/** Method returns a RankedWords view of the words table which reads one page per query, 
+	 *  so all results can be streamed without holding the whole table in memory.
+	 *  Walking the pages in order uses keyset queries (getResultsPageAfter()) rather than growing offsets.
+	 *  @return RankedWords backed by getResultsPageAfter() and getResultsPage() */
+	public static RankedWords getRankedWords() {
+		RankedWords byOffset = new RankedWords() {
+			@Override
+			public int size() {
+				return Math.max(countWords(), 0);
+			}
+
+			@Override
+			public List<Word> get(int from, int count) {
+				return getResultsPage(from, count);
+			}
+		};
+		return new KeysetRankedWords(byOffset, Database::getResultsPageAfter);
+	}
+	
+	/** Method creates the jobs and job_words tables (if they do not exist already). Each job's words live under 
+	 *  their own job_id, so jobs never touch each other's rows: the composite primary key (job_id, word) clusters 
+	 *  a job's words together and idx_job_frequency serves each job's ranking.
+	 *  @throws Exception */
+	public static void createJobTables() throws Exception {
+		Connection conn = null;
 		try {
 			conn = getConnection();
-			String query = "SELECT * FROM words ORDER BY frequency DESC";
-			PreparedStatement pstmt = conn.prepareStatement(query);
-			ResultSet results = pstmt.executeQuery();
-			return results;
+			String jobs = "CREATE TABLE IF NOT EXISTS jobs (job_id bigint NOT NULL AUTO_INCREMENT, website varchar(2048) NOT NULL, "
+					+ "created_millis bigint NOT NULL, words int NOT NULL DEFAULT 0, "
+					+ "PRIMARY KEY(job_id), INDEX idx_created (created_millis))";
+			String jobWords = "CREATE TABLE IF NOT EXISTS job_words (job_id bigint NOT NULL, word varchar(255) NOT NULL, "
+					+ "frequency int NOT NULL, PRIMARY KEY(job_id, word), INDEX idx_job_frequency (job_id, frequency))";
+			try (PreparedStatement pstmt = conn.prepareStatement(jobs)) {
+				pstmt.executeUpdate();
+			}
+			try (PreparedStatement pstmt = conn.prepareStatement(jobWords)) {
+				pstmt.executeUpdate();
+			}
 		} catch(Exception e) {
-			System.out.println(e.getMessage());
+			System.out.println("Error in Database.createJobTables(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+	}
+	
+	/** Method registers a new job and returns the id its words are stored under.
+	 *  @param website is the URL the job scrapes
+	 *  @return job id (or -1 if not successful) */
+	public static long createJob(String website) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String insert = "INSERT INTO jobs (website, created_millis) VALUES (?, ?)";
+			try (PreparedStatement pstmt = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+				pstmt.setString(1, website.length() > 2048 ? website.substring(0, 2048) : website);
+				pstmt.setLong(2, System.currentTimeMillis());
+				pstmt.executeUpdate();
+				ServerMetrics.dbRoundTrips(1);
+				try (ResultSet keys = pstmt.getGeneratedKeys()) {
+					if (keys.next()) {
+						return keys.getLong(1);
+					}
+				}
+			}
+		} catch(Exception e) {
+			System.out.println("Error in Database.createJob(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+		
+		return -1; // if not successful
+	}
+	
+	/** Method adds counts to one job's words in batches of BATCH_SIZE inside one transaction. No other job writes
+	 *  these keys, so the upserts never wait for another job's rows; a job's counts may arrive in several calls
+	 *  (e.g. from the WriteBehindBuffer). Counts for a job which has already expired are dropped.
+	 *  @param jobId is the id from createJob()
+	 *  @param counts holds each distinct word of the job and its frequency
+	 *  @return number of batches sent to the database (0 if the job has expired, -1 if not successful) */
+	public static int insertJobWords(long jobId, WordCounter counts) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			conn.setAutoCommit(false);
+			int pending = 0;
+			int batches = 0;
+			String upsert = "INSERT INTO job_words (job_id, word, frequency) VALUES (?, ?, ?) "
+					+ "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+			String words = "UPDATE jobs SET words = (SELECT COUNT(*) FROM job_words WHERE job_id = ?) WHERE job_id = ?";
+			try (PreparedStatement pstmt = conn.prepareStatement(upsert);
+					PreparedStatement total = conn.prepareStatement(words)) {
+				WordCounter.Cursor cursor = counts.cursor();
+				while (cursor.next()) {
+					pstmt.setLong(1, jobId);
+					pstmt.setString(2, cursor.word());
+					pstmt.setInt(3, cursor.count());
+					pstmt.addBatch();
+					
+					// Send a full batch
+					if (++pending == BATCH_SIZE) {
+						pstmt.executeBatch();
+						ServerMetrics.dbRoundTrips(1);
+						batches++;
+						pending = 0;
+					}
+				}
+				
+				// Send whatever is left over
+				if (pending > 0) {
+					pstmt.executeBatch();
+					ServerMetrics.dbRoundTrips(1);
+					batches++;
+				}
+				
+				// Keep the word count with the job so pages do not need a COUNT(*)
+				total.setLong(1, jobId);
+				total.setLong(2, jobId);
+				if (total.executeUpdate() == 0) {
+					// The job expired while its counts were on the way
+					conn.rollback();
+					ServerMetrics.dbRoundTrips(2);
+					return 0;
+				}
+				conn.commit();
+				ServerMetrics.dbRoundTrips(2);
+			} catch (Exception e) {
+				conn.rollback();
+				throw e;
+			}
+			return batches;
+		} catch(Exception e) {
+			System.out.println("Error in Database.insertJobWords(): " + e.getMessage());
 			e.printStackTrace();
 		} finally {
-			System.out.println("The Method: queryAll is complete!");
+			// The pool restores auto-commit before the connection is reused
+			releaseConnection(conn);
 		}
 		
-		return null; // if not successful
+		return -1; // if not successful
+	}
+	
+	/** Method returns one page of a job's words in ranking order (frequency DESC, then word).
+	 *  @param jobId is the id from createJob()
+	 *  @param offset is the 0-based rank of the first word
+	 *  @param limit is the maximum number of words wanted
+	 *  @return List of up to limit words (empty if not successful or the job has expired) */
+	public static List<Word> getJobResultsPage(long jobId, int offset, int limit) {
+		List<Word> page = new ArrayList<Word>();
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String query = "SELECT word, frequency FROM job_words WHERE job_id = ? ORDER BY frequency DESC, word LIMIT ? OFFSET ?";
+			try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+				pstmt.setLong(1, jobId);
+				pstmt.setInt(2, limit);
+				pstmt.setInt(3, offset);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					ServerMetrics.dbRoundTrips(1);
+					while (rs.next()) {
+						page.add(new Word(rs.getString(1), rs.getInt(2)));
+					}
+				}
+			}
+		} catch(Exception e) {
+			System.out.println("Error in Database.getJobResultsPage(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+		
+		return page;
+	}
+	
+	/** Method returns the number of distinct words stored for a job.
+	 *  @param jobId is the id from createJob()
+	 *  @return word count (0 if the job has expired, -1 if not successful) */
+	public static int countJobWords(long jobId) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			try (PreparedStatement pstmt = conn.prepareStatement("SELECT words FROM jobs WHERE job_id = ?")) {
+				pstmt.setLong(1, jobId);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					ServerMetrics.dbRoundTrips(1);
+					return rs.next() ? rs.getInt(1) : 0;
+				}
+			}
+		} catch(Exception e) {
+			System.out.println("Error in Database.countJobWords(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+		
+		return -1; // if not successful
+	}
+	
+	/** Method looks up the frequency of a word within one job.
+	 *  @param jobId is the id from createJob()
+	 *  @param word is the word to search for
+	 *  @return frequency of the word (or -1 if it is not stored for the job) */
+	public static int queryJobFrequency(long jobId, String word) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			try (PreparedStatement pstmt = conn.prepareStatement("SELECT frequency FROM job_words WHERE job_id = ? AND word = ?")) {
+				pstmt.setLong(1, jobId);
+				pstmt.setString(2, word);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					ServerMetrics.dbRoundTrips(1);
+					return rs.next() ? rs.getInt(1) : -1;
+				}
+			}
+		} catch(Exception e) {
+			System.out.println("Error in Database.queryJobFrequency(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+		
+		return -1; // if not successful
+	}
+	
+	/** Method deletes every job created before a cutoff, with its words, in one transaction. The words of all 
+	 *  expired jobs are removed in one batch of primary key range deletes, so other jobs' rows are never locked.
+	 *  @param cutoffMillis is the creation time (System.currentTimeMillis()) before which jobs are deleted
+	 *  @return number of jobs deleted (or -1 if not successful) */
+	public static int deleteJobsBefore(long cutoffMillis) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			
+			// Find the expired jobs through idx_created
+			List<Long> expired = new ArrayList<Long>();
+			try (PreparedStatement pstmt = conn.prepareStatement("SELECT job_id FROM jobs WHERE created_millis < ?")) {
+				pstmt.setLong(1, cutoffMillis);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					ServerMetrics.dbRoundTrips(1);
+					while (rs.next()) {
+						expired.add(rs.getLong(1));
+					}
+				}
+			}
+			if (expired.isEmpty()) {
+				return 0;
+			}
+			
+			conn.setAutoCommit(false);
+			try (PreparedStatement words = conn.prepareStatement("DELETE FROM job_words WHERE job_id = ?");
+					PreparedStatement jobs = conn.prepareStatement("DELETE FROM jobs WHERE job_id = ?")) {
+				for (long jobId : expired) {
+					words.setLong(1, jobId);
+					words.addBatch();
+					jobs.setLong(1, jobId);
+					jobs.addBatch();
+				}
+				words.executeBatch();
+				jobs.executeBatch();
+				conn.commit();
+				ServerMetrics.dbRoundTrips(3);
+			} catch (Exception e) {
+				conn.rollback();
+				throw e;
+			}
+			return expired.size();
+		} catch(Exception e) {
+			System.out.println("Error in Database.deleteJobsBefore(): " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+		
+		return -1; // if not successful
+	}
+	
+	/** Method streams the words table in ranking order (frequency DESC, word) to a callback.
+	 *  Rows are read through a cursor a fetch size at a time (wordfreq.db.fetchSize, default 1000) instead of being
+	 *  buffered in client memory, so a whole vocabulary can be walked in constant memory. Passing the last word
+	 *  of one call as after continues the walk where it stopped (keyset pagination), which stays cheap deep into
+	 *  the ranking where LIMIT/OFFSET has to skip every earlier row. The connection is held until the method
+	 *  returns, so the consumer should not block.
+	 *  @param after is the last word already read (null to start at the most frequent word)
+	 *  @param limit is the most words passed to the consumer (0 for no limit)
+	 *  @param consumer receives each word in ranking order
+	 *  @return number of words passed to the consumer (or -1 if not successful) */
+	public static int streamResults(Word after, int limit, Consumer<Word> consumer) {
+		return streamRanked("Database.streamResults()", "SELECT word, frequency FROM words", -1, after, limit, consumer);
+	}
+	
+	/** Method streams one job's words in ranking order to a callback (see streamResults()).
+	 *  @param jobId is the id from createJob()
+	 *  @param after is the last word already read (null to start at the most frequent word)
+	 *  @param limit is the most words passed to the consumer (0 for no limit)
+	 *  @param consumer receives each word in ranking order
+	 *  @return number of words passed to the consumer (or -1 if not successful) */
+	public static int streamJobResults(long jobId, Word after, int limit, Consumer<Word> consumer) {
+		return streamRanked("Database.streamJobResults()", "SELECT word, frequency FROM job_words WHERE job_id = ?", jobId, after,
+				limit, consumer);
+	}
+	
+	/** Method reads the page of the words table which follows a word in ranking order.
+	 *  @param after is the last word of the previous page (null for the first page)
+	 *  @param limit is the number of words wanted
+	 *  @return List of up to limit words (empty if not successful) */
+	public static List<Word> getResultsPageAfter(Word after, int limit) {
+		List<Word> page = new ArrayList<Word>();
+		streamResults(after, limit, page::add);
+		return page;
+	}
+	
+	/** Method reads the page of one job's words which follows a word in ranking order.
+	 *  @param jobId is the id from createJob()
+	 *  @param after is the last word of the previous page (null for the first page)
+	 *  @param limit is the number of words wanted
+	 *  @return List of up to limit words (empty if not successful) */
+	public static List<Word> getJobResultsPageAfter(long jobId, Word after, int limit) {
+		List<Word> page = new ArrayList<Word>();
+		streamJobResults(jobId, after, limit, page::add);
+		return page;
+	}
+	
+	/** Method runs a ranked query through a cursor and hands every row to the consumer.
+	 *  @param caller names the public method in error messages
+	 *  @param select is the SELECT word, frequency FROM ... [WHERE job_id = ?] part of the query
+	 *  @param jobId is bound to the job_id parameter (ignored when negative)
+	 *  @return number of rows passed to the consumer (or -1 if not successful) */
+	private static int streamRanked(String caller, String select, long jobId, Word after, int limit, Consumer<Word> consumer) {
+		StringBuilder query = new StringBuilder(select);
+		if (after != null) {
+			// Rows after (frequency, word) in ORDER BY frequency DESC, word
+			query.append(jobId < 0 ? " WHERE" : " AND").append(" (frequency < ? OR (frequency = ? AND word > ?))");
+		}
+		query.append(" ORDER BY frequency DESC, word");
+		if (limit > 0) {
+			query.append(" LIMIT ?");
+		}
+		
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			// Some drivers (e.g. PostgreSQL) only keep a cursor open inside a transaction- the pool rolls it back on release
+			conn.setAutoCommit(false);
+			try (PreparedStatement pstmt = conn.prepareStatement(query.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+				pstmt.setFetchSize(fetchSize(conn));
+				int i = 1;
+				if (jobId >= 0) {
+					pstmt.setLong(i++, jobId);
+				}
+				if (after != null) {
+					pstmt.setInt(i++, after.getFrequency());
+					pstmt.setInt(i++, after.getFrequency());
+					pstmt.setString(i++, after.getWord());
+				}
+				if (limit > 0) {
+					pstmt.setInt(i++, limit);
+				}
+				int rows = 0;
+				try (ResultSet rs = pstmt.executeQuery()) {
+					ServerMetrics.dbRoundTrips(1);
+					while (rs.next()) {
+						consumer.accept(new Word(rs.getString(1), rs.getInt(2)));
+						rows++;
+					}
+				}
+				return rows;
+			}
+		} catch(Exception e) {
+			System.out.println("Error in " + caller + ": " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			releaseConnection(conn);
+		}
+		
+		return -1; // if not successful
+	}
+	
+	/** Method picks the fetch size for a streaming query. MySQL Connector/J buffers the whole result regardless of
+	 *  the fetch size unless the URL has useCursorFetch=true- without it, Integer.MIN_VALUE makes it stream row by row.
+	 *  @return rows fetched per round trip */
+	private static int fetchSize(Connection conn) throws SQLException {
+		DatabaseMetaData meta = conn.getMetaData();
+		if ("MySQL".equalsIgnoreCase(meta.getDatabaseProductName()) && !meta.getURL().contains("useCursorFetch=true")) {
+			return Integer.MIN_VALUE;
+		}
+		return Settings.getInt("db.fetchSize", 1000);
 	}
 	
 	/** Used for testing while coding and will be deleted later.
@@ -199,7 +890,8 @@ public class Database {
 			freq = queryFrequency("Alas");
 			System.out.println(freq);
 			
-			getResults();
+			streamResults(null, 0, word -> System.out.println(word.getWord() + " " + word.getFrequency()));
+			System.out.println(getPoolStats());
 			
 			deleteTable("words");
 			createWordsTable("words");
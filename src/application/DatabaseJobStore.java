@@ -0,0 +1,63 @@
+package application;
+
+import java.util.List;
+
+/** DatabaseJobStore keeps each job's words under its own job_id in the job_words table, whose composite primary key
+ *  (job_id, word) keeps the rows of one job together. Jobs insert into disjoint key ranges, so they do not contend
+ *  for rows the way upserts into the shared words table do, and expiry deletes whole key ranges in one batch.
+ *  @author derekdileo */
+public class DatabaseJobStore implements JobStore {
+
+	/** Constructor creates the jobs and job_words tables if they do not exist yet. */
+	public DatabaseJobStore() {
+		try {
+			Database.createJobTables();
+		} catch (Exception e) {
+			System.out.println("Error creating job tables: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public long begin(String website) {
+		return Database.createJob(website);
+	}
+
+	@Override
+	public void merge(long jobId, WordCounter counts) {
+		Database.insertJobWords(jobId, counts);
+	}
+
+	@Override
+	public int frequency(long jobId, String word) {
+		return Database.queryJobFrequency(jobId, word);
+	}
+
+	@Override
+	public List<Word> top(long jobId, int k) {
+		return Database.getJobResultsPage(jobId, 0, k);
+	}
+
+	@Override
+	public RankedWords ranked(long jobId) {
+		RankedWords byOffset = new RankedWords() {
+			@Override
+			public int size() {
+				return Math.max(Database.countJobWords(jobId), 0);
+			}
+
+			@Override
+			public List<Word> get(int from, int count) {
+				return Database.getJobResultsPage(jobId, from, count);
+			}
+		};
+		return new KeysetRankedWords(byOffset, (after, limit) -> Database.getJobResultsPageAfter(jobId, after, limit));
+	}
+
+	@Override
+	public int expire(long maxAgeMillis) {
+		// Jobs created at or before now - maxAgeMillis are at least maxAgeMillis old
+		return Math.max(Database.deleteJobsBefore(System.currentTimeMillis() - maxAgeMillis + 1), 0);
+	}
+
+}
@@ -0,0 +1,69 @@
+package application;
+
+import java.util.List;
+
+/** DatabaseWordStore is the WordStore backed by the MySQL words table through the Database class.
+ *  Merges are sent as batched upserts and ordered reads use the frequency index.
+ *  @author derekdileo */
+public class DatabaseWordStore implements WordStore {
+
+	/** Constructor creates the words table if it does not exist yet. */
+	public DatabaseWordStore() {
+		try {
+			Database.createWordsTable("words");
+		} catch (Exception e) {
+			System.out.println("Error creating words table: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void increment(String word, int delta) {
+		WordCounter counts = new WordCounter(1);
+		counts.add(word, delta);
+		Database.bulkUpsert(counts);
+	}
+
+	@Override
+	public void merge(WordCounter counts) {
+		Database.bulkUpsert(counts);
+	}
+
+	@Override
+	public int frequency(String word) {
+		return Database.queryFrequency(word);
+	}
+
+	@Override
+	public List<Word> top(int k) {
+		return Database.getTopResults(k);
+	}
+
+	@Override
+	public List<Word> scan(int offset, int limit) {
+		return Database.getResultsPage(offset, limit);
+	}
+
+	@Override
+	public int size() {
+		return Math.max(Database.countWords(), 0);
+	}
+
+	@Override
+	public void clear() {
+		try {
+			// Drop and re-create words table
+			Database.deleteTable("words");
+			Database.createWordsTable("words");
+		} catch (Exception e) {
+			System.out.println("Error clearing words table: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public RankedWords ranked() {
+		return Database.getRankedWords();
+	}
+
+}
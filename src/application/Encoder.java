@@ -1,25 +1,49 @@
 package application;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Encoder {
 
-	/** An attempt to encode String array for transfer over client / server connection.
+	/** Encodes String array for transfer over client / server connection. Each String is sent as a
+	 * varint byte length and its UTF-8 bytes (see FrameCodec), so fields may contain commas.
 	 * @param strings user-entered URL, start, finish points
 	 * @return byte array for transfer from client to server via Socket
-	 * @throws UnsupportedEncodingException
+	 * @throws UnsupportedEncodingException never (kept for existing callers)
 	 */
 	public byte[] encode(String[] strings) throws UnsupportedEncodingException {
-		return String.join(",", strings).getBytes("UTF_8");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			for (String s : strings) {
+				FrameCodec.writeString(out, s);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
 	}
-	
-	/** An attempt to decode byte array after transfer over client / server connection.
-	 * @param encoded byte array which was transferred from client to server
+
+	/** Decodes byte array after transfer over client / server connection.
+	 * @param encodedArray byte array which was transferred from client to server
 	 * @return String array which contains user-entered URL, start, finish points to be used in WebScrape class
-	 * @throws UnsupportedEncodingException
+	 * @throws UnsupportedEncodingException if the bytes were not produced by encode()
 	 */
 	public String[] decode(byte[] encodedArray) throws UnsupportedEncodingException {
-		return new String(encodedArray, "UTF_8").split(",");
-	} 
-	
+		ByteBuffer in = ByteBuffer.wrap(encodedArray);
+		List<String> strings = new ArrayList<String>();
+		try {
+			while (in.hasRemaining()) {
+				strings.add(FrameCodec.readString(in));
+			}
+		} catch (IOException e) {
+			throw new UnsupportedEncodingException("Malformed encoded array: " + e.getMessage());
+		}
+		return strings.toArray(new String[0]);
+	}
+
 }
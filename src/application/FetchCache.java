@@ -0,0 +1,571 @@
+package application;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The FetchCache keeps downloaded pages on disk, keyed by URL, together with their ETag and Last-Modified
+ *  validators. A cached page is revalidated with a conditional GET and, if the origin answers 304 Not Modified,
+ *  served from disk instead of being downloaded again. The cache is bounded in bytes and evicts the least
+ *  recently used pages first. Each page is stored as a .body file next to a .meta file, so the cache survives restarts.
+ *  Only http(s) pages with a validator are cached; everything else is read straight from the network.
+ *  @author derekdileo */
+public class FetchCache {
+
+	// Shared cache configured from wordfreq.cache.* (null when disabled)
+	private static FetchCache defaultCache;
+	private static boolean defaultLoaded;
+
+	private final PageFetcher fetcher;
+	private final Path dir;
+	private final long maxBytes;
+	private final long maxEntryBytes;
+
+	// url -> entry, least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+	private long totalBytes;
+
+	// Statistics
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+	private final AtomicLong stores = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong bytesFromCache = new AtomicLong();
+
+	/** Constructor opens (or creates) a cache directory and loads the pages already stored in it.
+	 *  @param dir is the directory holding the cached pages
+	 *  @param maxBytes is the most the page bodies may take up on disk; a single page may use half of it
+	 *  @throws IOException if the directory cannot be created or read */
+	public FetchCache(Path dir, long maxBytes) throws IOException {
+		this(dir, maxBytes, PageFetcher.getDefault());
+	}
+
+	/** Constructor opens (or creates) a cache directory which downloads through a given PageFetcher.
+	 *  @param dir is the directory holding the cached pages
+	 *  @param maxBytes is the most the page bodies may take up on disk; a single page may use half of it
+	 *  @param fetcher sends the (conditional) requests
+	 *  @throws IOException if the directory cannot be created or read */
+	public FetchCache(Path dir, long maxBytes, PageFetcher fetcher) throws IOException {
+		this.fetcher = fetcher;
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = maxBytes / 2;
+		Files.createDirectories(dir);
+		load();
+	}
+
+	/** Method returns the cache configured with wordfreq.cache.enabled (default true), wordfreq.cache.dir
+	 *  (default wordfreq-cache in the temp directory) and wordfreq.cache.maxBytes (default 256MB).
+	 *  @return the shared FetchCache, or null if caching is disabled or the directory cannot be used */
+	public static synchronized FetchCache getDefault() {
+		if (!defaultLoaded) {
+			defaultLoaded = true;
+			if (Settings.getBoolean("cache.enabled", true)) {
+				Path dir = Paths.get(Settings.getString("cache.dir",
+						Paths.get(System.getProperty("java.io.tmpdir"), "wordfreq-cache").toString()));
+				try {
+					defaultCache = new FetchCache(dir, Settings.getLong("cache.maxBytes", 256L * 1024 * 1024));
+				} catch (IOException e) {
+					System.out.println("Fetch cache disabled, cannot use " + dir + ": " + e.getMessage());
+				}
+			}
+		}
+		return defaultCache;
+	}
+
+	/** Method opens a page through the default cache, or straight from the network if caching is disabled.
+	 *  @param website is the URL of the page
+	 *  @return Page whose body must be closed by the caller
+	 *  @throws IOException if the page cannot be opened */
+	public static Page fetch(String website) throws IOException {
+		FetchCache cache = getDefault();
+		return cache != null ? cache.open(new URL(website)) : openDirect(new URL(website));
+	}
+
+	/** Method opens a page, serving it from disk if the origin confirms that the cached copy is still current.
+	 *  A page which is downloaded is copied into the cache as it is read.
+	 *  @param url is the page to open
+	 *  @return Page whose body must be closed by the caller
+	 *  @throws IOException if the page cannot be opened */
+	public Page open(URL url) throws IOException {
+		String protocol = url.getProtocol();
+		if (!protocol.equals("http") && !protocol.equals("https")) {
+			return openDirect(url);
+		}
+
+		long start = System.nanoTime();
+		String key = url.toString();
+		Entry cached;
+		synchronized (this) {
+			cached = entries.get(key);
+		}
+
+		// Ask the origin whether our copy is still current
+		Map<String, String> headers = new HashMap<String, String>();
+		if (cached != null) {
+			revalidations.incrementAndGet();
+			if (cached.etag != null) {
+				headers.put("If-None-Match", cached.etag);
+			}
+			if (cached.lastModified != null) {
+				headers.put("If-Modified-Since", cached.lastModified);
+			}
+		}
+		PageFetcher.Response response = fetcher.get(toURI(url), headers);
+
+		if (cached != null && response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			response.close();
+			InputStream body = openCached(key, cached);
+			if (body != null) {
+				hits.incrementAndGet();
+				bytesFromCache.addAndGet(cached.size);
+				return new Page(key, body, cached.size, response, true, start);
+			}
+			// The file went missing: download it again without validators
+			return open(url);
+		}
+
+		misses.incrementAndGet();
+		checkStatus(url, response);
+		String etag = response.getHeader("ETag");
+		String lastModified = response.getHeader("Last-Modified");
+		String cacheControl = response.getHeader("Cache-Control");
+		long contentLength = response.getContentLength();
+		boolean storable = (etag != null || lastModified != null)
+				&& (cacheControl == null || !cacheControl.toLowerCase().contains("no-store"))
+				&& contentLength <= maxEntryBytes;
+		if (!storable) {
+			return new Page(key, response.getBody(), contentLength, response, false, start);
+		}
+		return new Page(key, new CachingInputStream(response.getBody(), key, etag, lastModified), contentLength, response, false, start);
+	}
+
+	/** Method opens a page straight from the network, bypassing any cache. http(s) pages are fetched with
+	 *  the default PageFetcher; other URLs (e.g. file:) are opened with URLConnection.
+	 *  @param url is the page to open
+	 *  @return Page whose body must be closed by the caller
+	 *  @throws IOException if the page cannot be opened */
+	public static Page openDirect(URL url) throws IOException {
+		long start = System.nanoTime();
+		String protocol = url.getProtocol();
+		if (protocol.equals("http") || protocol.equals("https")) {
+			PageFetcher.Response response = PageFetcher.getDefault().get(toURI(url), new HashMap<String, String>());
+			checkStatus(url, response);
+			return new Page(url.toString(), response.getBody(), response.getContentLength(), response, false, start);
+		}
+		URLConnection connection = url.openConnection();
+		return new Page(url.toString(), connection.getInputStream(), connection.getContentLengthLong(), null, false, start);
+	}
+
+	// Fails like HttpURLConnection.getInputStream() did for error responses
+	private static void checkStatus(URL url, PageFetcher.Response response) throws IOException {
+		int status = response.getStatusCode();
+		if (status < 200 || status >= 300) {
+			response.close();
+			throw new IOException("Server returned HTTP response code: " + status + " for URL: " + url);
+		}
+	}
+
+	private static URI toURI(URL url) throws IOException {
+		try {
+			return url.toURI();
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid URL: " + url, e);
+		}
+	}
+
+	/** Method returns the validator stored with a cached page, without contacting the origin.
+	 *  @param website is the URL of the page
+	 *  @return the ETag (or Last-Modified date) of the cached copy, or null if the page is not cached */
+	public synchronized String getValidator(String website) {
+		Entry entry = entries.get(website);
+		if (entry == null) {
+			return null;
+		}
+		return entry.etag != null ? entry.etag : entry.lastModified;
+	}
+
+	/** Method returns a snapshot of the hit/miss counters and the space in use.
+	 *  @return Stats describing the cache at the time of the call */
+	public synchronized Stats getStats() {
+		return new Stats(hits.get(), misses.get(), revalidations.get(), stores.get(), evictions.get(),
+				bytesFromCache.get(), entries.size(), totalBytes, maxBytes);
+	}
+
+	// Opens the body file of an entry and marks it as recently used
+	private InputStream openCached(String key, Entry entry) {
+		try {
+			InputStream body = Files.newInputStream(bodyFile(entry.name));
+			Files.setLastModifiedTime(metaFile(entry.name), FileTime.fromMillis(System.currentTimeMillis()));
+			return body;
+		} catch (IOException e) {
+			synchronized (this) {
+				if (entries.get(key) == entry) {
+					entries.remove(key);
+					totalBytes -= entry.size;
+				}
+			}
+			return null;
+		}
+	}
+
+	// Moves a completely downloaded body into place and evicts older pages to make room
+	private void store(String key, String etag, String lastModified, Path temp, long size) throws IOException {
+		String name = nameFor(key);
+		Entry entry = new Entry(name, etag, lastModified, size);
+
+		Properties meta = new Properties();
+		meta.setProperty("url", key);
+		meta.setProperty("size", Long.toString(size));
+		if (etag != null) {
+			meta.setProperty("etag", etag);
+		}
+		if (lastModified != null) {
+			meta.setProperty("lastModified", lastModified);
+		}
+
+		synchronized (this) {
+			Files.move(temp, bodyFile(name), StandardCopyOption.REPLACE_EXISTING);
+			try (Writer w = Files.newBufferedWriter(metaFile(name), StandardCharsets.UTF_8)) {
+				meta.store(w, null);
+			}
+			Entry previous = entries.put(key, entry);
+			if (previous != null) {
+				totalBytes -= previous.size;
+			}
+			totalBytes += size;
+			stores.incrementAndGet();
+			evict();
+		}
+	}
+
+	// Removes least recently used pages until the bodies fit in maxBytes (caller holds the lock)
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && it.hasNext()) {
+			Entry victim = it.next().getValue();
+			it.remove();
+			totalBytes -= victim.size;
+			evictions.incrementAndGet();
+			try {
+				Files.deleteIfExists(metaFile(victim.name));
+				Files.deleteIfExists(bodyFile(victim.name));
+			} catch (IOException e) {
+				System.out.println("Error evicting cached page: " + e.getMessage());
+			}
+		}
+	}
+
+	// Reads every .meta file, oldest access first, so the LRU order survives a restart
+	private void load() throws IOException {
+		List<Path> metas = new ArrayList<Path>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.meta")) {
+			for (Path file : files) {
+				metas.add(file);
+			}
+		}
+		metas.sort((a, b) -> {
+			try {
+				return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+			} catch (IOException e) {
+				return 0;
+			}
+		});
+		for (Path file : metas) {
+			Properties meta = new Properties();
+			try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				meta.load(r);
+				String name = file.getFileName().toString().replace(".meta", "");
+				long size = Long.parseLong(meta.getProperty("size"));
+				if (meta.getProperty("url") != null && Files.size(bodyFile(name)) == size) {
+					entries.put(meta.getProperty("url"), new Entry(name, meta.getProperty("etag"), meta.getProperty("lastModified"), size));
+					totalBytes += size;
+				}
+			} catch (IOException | RuntimeException e) {
+				System.out.println("Skipping unreadable cache entry " + file + ": " + e.getMessage());
+			}
+		}
+		evict();
+	}
+
+	private Path bodyFile(String name) {
+		return dir.resolve(name + ".body");
+	}
+
+	private Path metaFile(String name) {
+		return dir.resolve(name + ".meta");
+	}
+
+	// File name for a URL: hex SHA-256, so any URL maps to a safe name
+	private static String nameFor(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** A cached page: body file name, validators and size. */
+	private static final class Entry {
+		final String name;
+		final String etag;
+		final String lastModified;
+		final long size;
+
+		Entry(String name, String etag, String lastModified, long size) {
+			this.name = name;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+	}
+
+	/** Copies a downloaded body into a temp file as it is read and stores it once the whole page has been seen.
+	 *  If the reader stops early, close() reads the rest of the page so the next job can use the cached copy. */
+	private final class CachingInputStream extends FilterInputStream {
+
+		private final String key;
+		private final String etag;
+		private final String lastModified;
+		private Path temp;
+		private OutputStream copy;
+		private long size;
+		private boolean ended;
+
+		CachingInputStream(InputStream in, String key, String etag, String lastModified) throws IOException {
+			super(in);
+			this.key = key;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.temp = Files.createTempFile(dir, "fetch", ".tmp");
+			this.copy = Files.newOutputStream(temp);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b < 0) {
+				ended = true;
+			} else if (copy != null) {
+				copy.write(b);
+				grow(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n < 0) {
+				ended = true;
+			} else if (copy != null && n > 0) {
+				copy.write(b, off, n);
+				grow(n);
+			}
+			return n;
+		}
+
+		// Gives up on caching pages which turn out to be too big
+		private void grow(int n) {
+			size += n;
+			if (size > maxEntryBytes) {
+				abandon();
+			}
+		}
+
+		private void abandon() {
+			try {
+				copy.close();
+				Files.deleteIfExists(temp);
+			} catch (IOException e) {
+				System.out.println("Error discarding cached page: " + e.getMessage());
+			}
+			copy = null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				// Finish the copy so the whole page is cached
+				byte[] skip = new byte[8192];
+				while (copy != null && !ended) {
+					read(skip, 0, skip.length);
+				}
+				if (copy != null) {
+					copy.close();
+					copy = null;
+					store(key, etag, lastModified, temp, size);
+				}
+			} catch (IOException e) {
+				if (copy != null) {
+					abandon();
+				}
+				System.out.println("Error caching " + key + ": " + e.getMessage());
+			} finally {
+				super.close();
+			}
+		}
+
+	}
+
+	/** A Page is an open page body and what is known about where it came from. */
+	public static final class Page implements Closeable {
+
+		private final String url;
+		private final CountingInputStream body;
+		private final long contentLength;
+		private final PageFetcher.Response response;
+		private final boolean fromCache;
+		private final boolean caching;
+		private final long start;
+
+		Page(String url, InputStream body, long contentLength, PageFetcher.Response response, boolean fromCache, long start) {
+			this.url = url;
+			this.body = new CountingInputStream(body);
+			this.caching = body instanceof CachingInputStream;
+			this.contentLength = contentLength;
+			this.response = response;
+			this.fromCache = fromCache;
+			this.start = start;
+		}
+
+		public InputStream getBody() {
+			return body;
+		}
+
+		/** Method returns the announced length of the body.
+		 *  @return Content-Length, or -1 if unknown */
+		public long getContentLength() {
+			return contentLength;
+		}
+
+		public boolean isFromCache() {
+			return fromCache;
+		}
+
+		/** Method returns the bytes received so far: on the wire (before decompression) for downloads,
+		 *  from disk for cached pages.
+		 *  @return bytes transferred */
+		public long getBytesTransferred() {
+			return response != null && !fromCache ? response.getBytesTransferred() : body.count;
+		}
+
+		/** Method reports whether the rest of the page will be skipped once the caller closes the page early.
+		 *  Pages which are being cached keep downloading (in close()) so the cached copy is complete.
+		 *  @return true if closing now drops the rest of the page */
+		public boolean cutOff() {
+			return !fromCache && !caching;
+		}
+
+		/** Method returns the latency and transfer figures of this fetch so far.
+		 *  @return FetchStats for the page */
+		public FetchStats getStats() {
+			String source = fromCache ? "cache" : response != null ? "network" : "local";
+			long headerNanos = response != null ? response.getHeaderNanos() : 0;
+			int status = response != null ? response.getStatusCode() : 0;
+			return new FetchStats(url, source, status, headerNanos, System.nanoTime() - start,
+					getBytesTransferred(), body.count);
+		}
+
+		@Override
+		public void close() throws IOException {
+			body.close();
+		}
+
+	}
+
+	/** An InputStream wrapper which counts the bytes read. */
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+	}
+
+	/** Stats is an immutable snapshot of the cache counters. */
+	public static final class Stats {
+		public final long hits;
+		public final long misses;
+		public final long revalidations;
+		public final long stores;
+		public final long evictions;
+		public final long bytesFromCache;
+		public final int entries;
+		public final long bytes;
+		public final long maxBytes;
+
+		Stats(long hits, long misses, long revalidations, long stores, long evictions, long bytesFromCache,
+				int entries, long bytes, long maxBytes) {
+			this.hits = hits;
+			this.misses = misses;
+			this.revalidations = revalidations;
+			this.stores = stores;
+			this.evictions = evictions;
+			this.bytesFromCache = bytesFromCache;
+			this.entries = entries;
+			this.bytes = bytes;
+			this.maxBytes = maxBytes;
+		}
+
+		@Override
+		public String toString() {
+			return "FetchCache[hits=" + hits + ", misses=" + misses + ", revalidations=" + revalidations
+					+ ", stores=" + stores + ", evictions=" + evictions + ", bytesFromCache=" + bytesFromCache
+					+ ", entries=" + entries + ", bytes=" + bytes + "/" + maxBytes + "]";
+		}
+	}
+
+}
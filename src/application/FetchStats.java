@@ -0,0 +1,74 @@
+package application;
+
+import java.util.concurrent.TimeUnit;
+
+/** FetchStats is an immutable record of how one page was fetched: where it came from, how long it took
+ *  and how many bytes were transferred (on the wire, before decompression) and read (after decompression).
+ *  @author derekdileo */
+public class FetchStats {
+
+	private final String url;
+	private final String source;
+	private final int status;
+	private final long headerNanos;
+	private final long totalNanos;
+	private final long bytesTransferred;
+	private final long bytesRead;
+
+	/** Constructor
+	 *  @param url is the page which was fetched
+	 *  @param source is "network", "cache" (revalidated copy on disk) or "local" (e.g. a file: URL)
+	 *  @param status is the HTTP status (0 if not fetched over HTTP)
+	 *  @param headerNanos is the time until the response headers arrived
+	 *  @param totalNanos is the time from the request until the page was done with
+	 *  @param bytesTransferred is the number of bytes received before decompression
+	 *  @param bytesRead is the number of body bytes read after decompression */
+	public FetchStats(String url, String source, int status, long headerNanos, long totalNanos,
+			long bytesTransferred, long bytesRead) {
+		this.url = url;
+		this.source = source;
+		this.status = status;
+		this.headerNanos = headerNanos;
+		this.totalNanos = totalNanos;
+		this.bytesTransferred = bytesTransferred;
+		this.bytesRead = bytesRead;
+	}
+
+	// Getters
+	public String getUrl() {
+		return url;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public long getHeaderNanos() {
+		return headerNanos;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getBytesTransferred() {
+		return bytesTransferred;
+	}
+
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public String toString() {
+		return "Fetched " + url + " from " + source + (status > 0 ? " (HTTP " + status + ")" : "")
+				+ " in " + TimeUnit.NANOSECONDS.toMillis(totalNanos) + "ms"
+				+ " (headers " + TimeUnit.NANOSECONDS.toMillis(headerNanos) + "ms), "
+				+ bytesTransferred + " bytes transferred, " + bytesRead + " bytes read";
+	}
+
+}
@@ -0,0 +1,284 @@
+package application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** FrameCodec defines the binary wire format: a versioned handshake followed by length-prefixed frames whose
+ *  numbers (lengths, ranks, frequencies) are sent as unsigned LEB128 varints and whose Strings are UTF-8.
+ *  <pre>
+ *  handshake  Client: B1 'W' 'F' maxVersion   Server: B1 'W' 'F' chosenVersion
+ *  frame      type(1 byte) payloadLength(varint) payload
+ *  REQUEST    url, head, end (varint length + UTF-8 each), flags (varint; FLAG_TOP_ONLY, FLAG_CRAWL)
+ *  RANGE      from (0-based rank), count (1 to results.pageSize; larger counts are cut to a page)
+ *  ALL, QUIT  no payload
+ *  WORDS      total words, first rank, n, then n times: word, frequency
+ *  END        no payload (ends every response, like "pause..." in the text protocol)
+ *  ERROR      message
+ *  BUSY       retry after (seconds), message (the job queue is full; sent instead of WORDS, followed by END)
+ *  </pre>
+ *  0xB1 cannot start a UTF-8 (or ASCII) line, so the first byte tells binary Clients from text Clients.
+ *  @author derekdileo */
+public final class FrameCodec {
+
+	// First bytes of the handshake in both directions
+	private static final byte[] MAGIC = { (byte) 0xB1, 'W', 'F' };
+
+	/** Highest protocol version spoken by this server. */
+	public static final int VERSION = 1;
+
+	// Frames sent by the Client
+	public static final int REQUEST = 0x01;
+	public static final int RANGE = 0x02;
+	public static final int ALL = 0x03;
+	public static final int QUIT = 0x04;
+
+	// Frames sent by the server
+	public static final int WORDS = 0x11;
+	public static final int END = 0x12;
+	public static final int ERROR = 0x13;
+	public static final int BUSY = 0x14;
+
+	/** REQUEST flag: answer with the top ten only and wait for RANGE, ALL or QUIT. */
+	public static final int FLAG_TOP_ONLY = 1;
+
+	/** REQUEST flag: crawl same-site links from the URL and count every page reached (see SiteCrawler). */
+	public static final int FLAG_CRAWL = 2;
+
+	// Largest payload accepted from a Client
+	public static final int MAX_PAYLOAD = 64 * 1024;
+
+	private FrameCodec() {
+	}
+
+	/** Method reports whether a first byte starts a binary handshake.
+	 *  @param first is the first byte sent by the Client
+	 *  @return true for a binary Client, false for a text Client */
+	public static boolean isHandshake(int first) {
+		return (byte) first == MAGIC[0];
+	}
+
+	/** Method builds the handshake a Client sends.
+	 *  @param maxVersion is the highest version the Client speaks
+	 *  @return handshake bytes */
+	public static byte[] handshake(int maxVersion) {
+		byte[] bytes = Arrays.copyOf(MAGIC, MAGIC.length + 1);
+		bytes[MAGIC.length] = (byte) maxVersion;
+		return bytes;
+	}
+
+	/** Method checks a Client handshake and picks the version both sides speak.
+	 *  @param handshake holds the handshake bytes (MAGIC plus version)
+	 *  @return the version to use, or -1 if the handshake is malformed */
+	public static int negotiate(byte[] handshake) {
+		if (handshake.length != MAGIC.length + 1
+				|| !Arrays.equals(Arrays.copyOf(handshake, MAGIC.length), MAGIC) || handshake[MAGIC.length] < 1) {
+			return -1;
+		}
+		return Math.min(handshake[MAGIC.length], VERSION);
+	}
+
+	/** Method returns the number of bytes in a handshake.
+	 *  @return handshake length */
+	public static int handshakeLength() {
+		return MAGIC.length + 1;
+	}
+
+	/** Method writes an unsigned LEB128 varint: seven bits per byte, high bit set on all but the last byte.
+	 *  @param out receives the bytes
+	 *  @param value is a non-negative number
+	 *  @throws IOException if the stream fails */
+	public static void writeVarint(OutputStream out, int value) throws IOException {
+		if (value < 0) {
+			throw new IllegalArgumentException("Varints must not be negative: " + value);
+		}
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/** Method reads an unsigned LEB128 varint.
+	 *  @param in holds the bytes
+	 *  @return the number
+	 *  @throws IOException if the varint is malformed or the buffer ends inside it */
+	public static int readVarint(ByteBuffer in) throws IOException {
+		int value = 0;
+		try {
+			for (int shift = 0; shift < 32; shift += 7) {
+				int b = in.get();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					if (value < 0) {
+						break;
+					}
+					return value;
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Frame ended inside a varint");
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/** Method writes a String as a varint byte length followed by its UTF-8 bytes.
+	 *  @param out receives the bytes
+	 *  @param text is the String to write
+	 *  @throws IOException if the stream fails */
+	public static void writeString(OutputStream out, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		writeVarint(out, bytes.length);
+		out.write(bytes);
+	}
+
+	/** Method reads a String written by writeString().
+	 *  @param in holds the bytes
+	 *  @return the String
+	 *  @throws IOException if the buffer ends inside the String */
+	public static String readString(ByteBuffer in) throws IOException {
+		int length = readVarint(in);
+		if (length > in.remaining()) {
+			throw new EOFException("Frame ended inside a string");
+		}
+		String text = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+		return text;
+	}
+
+	/** Method writes one frame.
+	 *  @param out receives the frame
+	 *  @param type is the frame type
+	 *  @param payload holds the payload (may be empty)
+	 *  @throws IOException if the stream fails */
+	public static void writeFrame(OutputStream out, int type, ByteArrayOutputStream payload) throws IOException {
+		out.write(type);
+		writeVarint(out, payload.size());
+		payload.writeTo(out);
+	}
+
+	/** Method writes one frame without a payload.
+	 *  @param out receives the frame
+	 *  @param type is the frame type
+	 *  @throws IOException if the stream fails */
+	public static void writeFrame(OutputStream out, int type) throws IOException {
+		out.write(type);
+		out.write(0);
+	}
+
+	/** Method reads one frame from a blocking stream.
+	 *  @param in is the stream
+	 *  @return the frame, or null if the stream ended cleanly between frames
+	 *  @throws IOException if the stream fails, ends inside a frame or the payload is too long */
+	public static Frame readFrame(InputStream in) throws IOException {
+		int type = in.read();
+		if (type < 0) {
+			return null;
+		}
+		int length = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException("Stream ended inside a frame header");
+			}
+			if (shift > 28) {
+				throw new IOException("Malformed frame length");
+			}
+			length |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		if (length < 0 || length > MAX_PAYLOAD) {
+			throw new IOException("Frame payload of " + length + " bytes exceeds " + MAX_PAYLOAD);
+		}
+		byte[] payload = new byte[length];
+		int read = 0;
+		while (read < length) {
+			int n = in.read(payload, read, length - read);
+			if (n < 0) {
+				throw new EOFException("Stream ended inside a frame payload");
+			}
+			read += n;
+		}
+		return new Frame(type, ByteBuffer.wrap(payload));
+	}
+
+	/** A Frame is a frame type and its payload, positioned at the start. */
+	public static final class Frame {
+		public final int type;
+		public final ByteBuffer payload;
+
+		public Frame(int type, ByteBuffer payload) {
+			this.type = type;
+			this.payload = payload;
+		}
+	}
+
+	/** Decoder collects bytes which arrive in arbitrary pieces (e.g. from a non-blocking channel)
+	 *  and hands out complete frames. */
+	public static final class Decoder {
+
+		private byte[] pending = new byte[256];
+		private int start;
+		private int end;
+
+		/** Method appends received bytes.
+		 *  @param in holds the bytes between position and limit (all of them are consumed) */
+		public void feed(ByteBuffer in) {
+			int n = in.remaining();
+			if (end + n > pending.length) {
+				// Slide the unread bytes to the front, growing only when that is not enough
+				int unread = end - start;
+				byte[] target = unread + n > pending.length ? new byte[Math.max(pending.length * 2, unread + n)] : pending;
+				System.arraycopy(pending, start, target, 0, unread);
+				pending = target;
+				start = 0;
+				end = unread;
+			}
+			in.get(pending, end, n);
+			end += n;
+		}
+
+		/** Method returns the next complete frame.
+		 *  @return the frame, or null until more bytes arrive
+		 *  @throws IOException if the payload is too long or the length is malformed */
+		public Frame next() throws IOException {
+			int pos = start;
+			if (pos >= end) {
+				return null;
+			}
+			int type = pending[pos++] & 0xFF;
+			int length = 0;
+			for (int shift = 0; ; shift += 7) {
+				if (pos >= end) {
+					return null;
+				}
+				if (shift > 28) {
+					throw new IOException("Malformed frame length");
+				}
+				int b = pending[pos++];
+				length |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					break;
+				}
+			}
+			if (length < 0 || length > MAX_PAYLOAD) {
+				throw new IOException("Frame payload of " + length + " bytes exceeds " + MAX_PAYLOAD);
+			}
+			if (end - pos < length) {
+				return null;
+			}
+			start = pos + length;
+			return new Frame(type, ByteBuffer.wrap(Arrays.copyOfRange(pending, pos, pos + length)));
+		}
+
+	}
+
+}
@@ -0,0 +1,263 @@
+package application;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/** The FrequencyCache sits in front of Database.queryFrequency(), so a word looked up again is answered from memory
+ *  instead of a round trip to the words table. Words which are not in the table are cached too (as -1).
+ *  The cache is split into stripes, each a small LRU map under its own lock, so lookups of different words rarely
+ *  contend, and the number of entries is bounded by evicting the least recently used word of a stripe.
+ *  Every statement which changes a word invalidates it. A lookup which was already reading the table when the word
+ *  changed does not cache its (possibly stale) value: each stripe has a generation which an invalidation bumps,
+ *  and a value is only stored if the generation is the one seen before the read.
+ *  Entries also expire after a TTL, bounding how stale a word changed by another server on the same database can get.
+ *  Settings: wordfreq.frequencyCache.enabled (default true), wordfreq.frequencyCache.maxEntries (default 100000)
+ *  and wordfreq.frequencyCache.ttlSeconds (default 60, 0 for no expiry).
+ *  @author derekdileo */
+public class FrequencyCache {
+
+	// Frequency cached for a word which is not in the table
+	public static final int ABSENT = -1;
+
+	private static final int STRIPES = 16;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	private final int maxEntries;
+	private final long ttlNanos;
+
+	// Statistics
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder negativeHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+	private final LongAdder staleLoads = new LongAdder();
+
+	/** Constructor
+	 *  @param maxEntries is the most words the cache holds
+	 *  @param ttlMillis is how long a frequency may be served after it was read (0 for no expiry) */
+	public FrequencyCache(int maxEntries, long ttlMillis) {
+		this.maxEntries = Math.max(STRIPES, maxEntries);
+		this.ttlNanos = ttlMillis <= 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		int perStripe = (this.maxEntries + STRIPES - 1) / STRIPES;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe(perStripe);
+		}
+	}
+
+	/** Method returns the cache configured with wordfreq.frequencyCache.*, created on first use.
+	 *  @return the shared FrequencyCache, or null if it is disabled */
+	public static FrequencyCache getDefault() {
+		return Default.CACHE;
+	}
+
+	/** Method returns the frequency of a word, reading it with the loader (and caching it) on a miss.
+	 *  @param word is the word to look up
+	 *  @param loader reads the frequency from the table (ABSENT if the word is not there, null if the read failed)
+	 *  @return frequency of the word, ABSENT if it is not in the table, or null if the loader failed */
+	public Integer get(String word, Function<String, Integer> loader) {
+		String key = fold(word);
+		Stripe stripe = stripeOf(key);
+		long generation;
+		synchronized (stripe) {
+			Entry entry = stripe.entries.get(key);
+			if (entry != null && !entry.word.equals(word)) {
+				// Another spelling of the same row (e.g. "The" and "the") is cached, read this one from the table
+				entry = null;
+			} else if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.loaded > ttlNanos) {
+				stripe.entries.remove(key);
+				expirations.increment();
+				entry = null;
+			}
+			if (entry != null) {
+				hits.increment();
+				if (entry.frequency == ABSENT) {
+					negativeHits.increment();
+				}
+				return entry.frequency;
+			}
+			generation = stripe.generation;
+		}
+		misses.increment();
+
+		// Read outside the lock so a slow query doesn't hold up the rest of the stripe
+		Integer frequency = loader.apply(word);
+		if (frequency == null) {
+			return null;
+		}
+		synchronized (stripe) {
+			if (stripe.generation != generation) {
+				// Invalidated while the table was being read
+				staleLoads.increment();
+			} else {
+				stripe.entries.put(key, new Entry(word, frequency, System.nanoTime()));
+			}
+		}
+		return frequency;
+	}
+
+	/** Method drops a word after a statement changed (or may have changed) its row.
+	 *  @param word is the word which was posted, updated, deleted or merged */
+	public void invalidate(String word) {
+		String key = fold(word);
+		Stripe stripe = stripeOf(key);
+		synchronized (stripe) {
+			stripe.generation++;
+			stripe.entries.remove(key);
+		}
+		invalidations.increment();
+	}
+
+	/** Method drops every word (e.g. after the words table has been dropped or recreated). */
+	public void clear() {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.generation++;
+				stripe.entries.clear();
+			}
+		}
+		invalidations.increment();
+	}
+
+	/** Method returns the number of words cached.
+	 *  @return entries in all stripes */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.entries.size();
+			}
+		}
+		return size;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/** Method returns a snapshot of the hit/miss counters and the entries in use.
+	 *  @return Stats describing the cache at the time of the call */
+	public Stats getStats() {
+		return new Stats(hits.sum(), negativeHits.sum(), misses.sum(), expirations.sum(), evictions.sum(),
+				invalidations.sum(), staleLoads.sum(), size(), maxEntries);
+	}
+
+	/** Method maps a word to the key of its row. The words table compares words without regard to case or accents
+	 *  (MySQL's default collation), so every spelling of a row shares a key and an invalidation reaches all of them.
+	 *  @param word is the word as queried
+	 *  @return key of the word in the cache */
+	static String fold(String word) {
+		// Trailing spaces are ignored by the collation as well
+		int end = word.length();
+		while (end > 0 && word.charAt(end - 1) == ' ') {
+			end--;
+		}
+		String key = word.substring(0, end);
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) > 0x7F) {
+				key = Normalizer.normalize(key, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+				break;
+			}
+		}
+		return key.toLowerCase(Locale.ROOT);
+	}
+
+	private Stripe stripeOf(String key) {
+		int h = key.hashCode();
+		return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+	}
+
+	/** One lock's share of the cache: its words in LRU order and the generation bumped by every invalidation. */
+	private final class Stripe {
+		final LinkedHashMap<String, Entry> entries;
+		long generation;
+
+		Stripe(int capacity) {
+			this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+					if (size() > capacity) {
+						evictions.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+	}
+
+	/** A cached frequency with the spelling it was read for and the time it was read. */
+	private static final class Entry {
+		final String word;
+		final int frequency;
+		final long loaded;
+
+		Entry(String word, int frequency, long loaded) {
+			this.word = word;
+			this.frequency = frequency;
+			this.loaded = loaded;
+		}
+	}
+
+	/** Snapshot of the FrequencyCache counters. */
+	public static final class Stats {
+		/** Lookups answered from the cache, including negativeHits. */
+		public final long hits;
+		/** Hits on words cached as not in the table. */
+		public final long negativeHits;
+		/** Lookups which read the table. */
+		public final long misses;
+		public final long expirations;
+		public final long evictions;
+		public final long invalidations;
+		/** Reads which were not cached because the word was invalidated while they ran. */
+		public final long staleLoads;
+		public final int entries;
+		public final int maxEntries;
+
+		Stats(long hits, long negativeHits, long misses, long expirations, long evictions, long invalidations,
+				long staleLoads, int entries, int maxEntries) {
+			this.hits = hits;
+			this.negativeHits = negativeHits;
+			this.misses = misses;
+			this.expirations = expirations;
+			this.evictions = evictions;
+			this.invalidations = invalidations;
+			this.staleLoads = staleLoads;
+			this.entries = entries;
+			this.maxEntries = maxEntries;
+		}
+
+		/** Method returns the share of lookups answered from the cache.
+		 *  @return hits / (hits + misses), or 0 before the first lookup */
+		public double getHitRatio() {
+			long lookups = hits + misses;
+			return lookups == 0 ? 0 : (double) hits / lookups;
+		}
+
+		@Override
+		public String toString() {
+			return "FrequencyCache[hits=" + hits + " (" + negativeHits + " negative), misses=" + misses
+					+ String.format(Locale.ROOT, ", hitRatio=%.3f", getHitRatio()) + ", expirations=" + expirations
+					+ ", evictions=" + evictions + ", invalidations=" + invalidations + ", staleLoads=" + staleLoads
+					+ ", entries=" + entries + "/" + maxEntries + "]";
+		}
+	}
+
+	/** Holds the shared cache, so it is only configured when the first word is looked up. */
+	private static final class Default {
+		static final FrequencyCache CACHE = Settings.getBoolean("frequencyCache.enabled", true)
+				? new FrequencyCache(Settings.getInt("frequencyCache.maxEntries", 100000),
+						TimeUnit.SECONDS.toMillis(Settings.getLong("frequencyCache.ttlSeconds", 60)))
+				: null;
+	}
+
+}
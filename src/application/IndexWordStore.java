@@ -0,0 +1,107 @@
+package application;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/** IndexWordStore is the WordStore kept in a memory-mapped WordIndex file (wordfreq.store=index), so counts persist
+ *  across restarts without a database. Reads use the current mapping without locking; every merge writes a new
+ *  index next to the old one and swaps it in, so readers never see a half-written file. Merges rewrite the whole
+ *  index, so jobs should be merged in bulk rather than word by word.
+ *  Settings: wordfreq.index.file (default wordfreq.index in the working directory).
+ *  @author derekdileo */
+public class IndexWordStore implements WordStore {
+
+	private final Path file;
+	private volatile WordIndex index;
+
+	/** Constructor opens (or creates) the index file.
+	 *  @param file is the index file
+	 *  @throws IOException if the file cannot be read or created */
+	public IndexWordStore(Path file) throws IOException {
+		this.file = file;
+		this.index = WordIndex.open(file);
+	}
+
+	/** Method opens the index file configured with wordfreq.index.file.
+	 *  @return IndexWordStore for the configured file
+	 *  @throws UncheckedIOException if the file cannot be opened */
+	public static IndexWordStore fromSettings() {
+		Path file = Paths.get(Settings.getString("index.file", "wordfreq.index"));
+		try {
+			return new IndexWordStore(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open word index " + file, e);
+		}
+	}
+
+	@Override
+	public void increment(String word, int delta) {
+		WordCounter counts = new WordCounter(1);
+		counts.add(word, delta);
+		merge(counts);
+	}
+
+	@Override
+	public synchronized void merge(WordCounter counts) {
+		if (counts == null || counts.isEmpty()) {
+			return;
+		}
+		try {
+			index = WordIndex.merge(index, counts, file);
+		} catch (IOException e) {
+			System.out.println("Error merging into word index " + file + ": " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public int frequency(String word) {
+		return index.frequency(word);
+	}
+
+	@Override
+	public List<Word> top(int k) {
+		return index.top(k);
+	}
+
+	@Override
+	public List<Word> scan(int offset, int limit) {
+		return index.scan(offset, limit);
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized void clear() {
+		try {
+			index = WordIndex.write(new WordCounter(), file);
+		} catch (IOException e) {
+			System.out.println("Error clearing word index " + file + ": " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public RankedWords ranked() {
+		// Pages of one job's results all come from the index as it was when the job finished
+		WordIndex snapshot = index;
+		return new RankedWords() {
+			@Override
+			public int size() {
+				return snapshot.size();
+			}
+
+			@Override
+			public List<Word> get(int from, int count) {
+				return snapshot.scan(from, count);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,193 @@
+package application;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** JobQueue runs ScrapeJobs on a fixed pool of workers fed by a bounded queue, so the work in the server is limited
+ *  no matter how many sessions are open. A job submitted while every worker is busy and the queue is full is
+ *  rejected at once with a BusyException carrying a retry-after estimate, instead of waiting behind the others.
+ *  The time each job waits for a worker and the time it runs are recorded to size the pool.
+ *  Settings: wordfreq.jobs.workers (default the number of processors) and wordfreq.jobs.queueCapacity (default 32).
+ *  @author derekdileo */
+public class JobQueue {
+
+	private final int workers;
+	private final int capacity;
+	private final ThreadPoolExecutor pool;
+
+	// Counters since the queue was created
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LatencyHistogram waits = new LatencyHistogram();
+	private final LatencyHistogram services = new LatencyHistogram();
+
+	/** Constructor
+	 *  @param workers is the number of jobs run at once
+	 *  @param capacity is the number of jobs which may wait for a worker (0 accepts jobs only when a worker is idle) */
+	public JobQueue(int workers, int capacity) {
+		this.workers = Math.max(1, workers);
+		this.capacity = Math.max(0, capacity);
+		BlockingQueue<Runnable> queue = this.capacity == 0 ? new SynchronousQueue<Runnable>() : new ArrayBlockingQueue<Runnable>(this.capacity);
+
+		AtomicInteger counter = new AtomicInteger();
+		this.pool = new ThreadPoolExecutor(this.workers, this.workers, 0, TimeUnit.MILLISECONDS, queue, r -> {
+			Thread t = new Thread(r, "job-worker-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/** Method returns the queue configured with wordfreq.jobs.*, created on first use.
+	 *  @return the shared JobQueue */
+	public static JobQueue getDefault() {
+		return Default.QUEUE;
+	}
+
+	/** Method queues a job and waits for its result.
+	 *  @param job is the job to run
+	 *  @return JobResult of the job (null if the job failed)
+	 *  @throws BusyException if the queue is full
+	 *  @throws InterruptedException if the calling thread is interrupted while waiting (the job is cancelled) */
+	public JobResult run(ScrapeJob job) throws BusyException, InterruptedException {
+		Future<JobResult> future = submit(job::run);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		} catch (CancellationException e) {
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/** Method queues a task without waiting for it.
+	 *  @param task is the work to run on a worker
+	 *  @return Future of the task's result
+	 *  @throws BusyException if every worker is busy and the queue is full */
+	public <T> Future<T> submit(Callable<T> task) throws BusyException {
+		long enqueued = System.nanoTime();
+		try {
+			Future<T> future = pool.submit(() -> {
+				long started = System.nanoTime();
+				long wait = started - enqueued;
+				waits.record(wait);
+				ServerMetrics.record(ServerMetrics.Stage.QUEUE, wait);
+				try {
+					return task.call();
+				} finally {
+					services.record(System.nanoTime() - started);
+					completed.increment();
+				}
+			});
+			submitted.increment();
+			return future;
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			ServerMetrics.jobRejected();
+			throw new BusyException(getRetryAfterSeconds());
+		}
+	}
+
+	/** Method estimates how long a Client should wait before trying again: the time the workers need to work
+	 *  through the queued jobs at the mean service time so far (at least one second).
+	 *  @return retry-after in seconds */
+	public long getRetryAfterSeconds() {
+		long meanNanos = services.snapshot().getMeanNanos();
+		long backlogNanos = (pool.getQueue().size() + 1) * meanNanos / workers;
+		return Math.max(1, (backlogNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/** Method returns the queue's current depth and its counters.
+	 *  @return Stats snapshot */
+	public Stats getStats() {
+		return new Stats(workers, capacity, pool.getActiveCount(), pool.getQueue().size(), submitted.sum(), rejected.sum(),
+				completed.sum(), waits.snapshot(), services.snapshot());
+	}
+
+	/** Method stops the workers; queued jobs are cancelled and running jobs interrupted. */
+	public void shutdown() {
+		for (Runnable queued : pool.shutdownNow()) {
+			if (queued instanceof Future) {
+				((Future<?>) queued).cancel(false);
+			}
+		}
+	}
+
+	/** Thrown when a job cannot be queued because every worker is busy and the queue is full. */
+	public static class BusyException extends Exception {
+		private static final long serialVersionUID = 1L;
+		private final long retryAfterSeconds;
+
+		/** Constructor
+		 *  @param retryAfterSeconds is how long the Client should wait before trying again */
+		public BusyException(long retryAfterSeconds) {
+			super("Server busy, retry after " + retryAfterSeconds + " seconds");
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+
+		public long getRetryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+	}
+
+	/** Immutable snapshot of the queue. */
+	public static final class Stats {
+		public final int workers;
+		public final int capacity;
+		public final int active;
+		public final int depth;
+		public final long submitted;
+		public final long rejected;
+		public final long completed;
+		/** Time from submission until a worker started the job. */
+		public final LatencyHistogram.Snapshot waits;
+		/** Time a worker spent running the job. */
+		public final LatencyHistogram.Snapshot services;
+
+		Stats(int workers, int capacity, int active, int depth, long submitted, long rejected, long completed,
+				LatencyHistogram.Snapshot waits, LatencyHistogram.Snapshot services) {
+			this.workers = workers;
+			this.capacity = capacity;
+			this.active = active;
+			this.depth = depth;
+			this.submitted = submitted;
+			this.rejected = rejected;
+			this.completed = completed;
+			this.waits = waits;
+			this.services = services;
+		}
+
+		@Override
+		public String toString() {
+			return "Job queue: " + active + "/" + workers + " workers busy, " + depth + "/" + capacity + " queued, "
+					+ submitted + " submitted, " + rejected + " rejected, " + completed + " completed"
+					+ "\n  wait " + waits + "\n  service " + services;
+		}
+	}
+
+	/** Holds the shared queue, so its workers are only created when the first job is queued. */
+	private static final class Default {
+		static final JobQueue QUEUE = new JobQueue(Settings.getInt("jobs.workers", Runtime.getRuntime().availableProcessors()),
+				Settings.getInt("jobs.queueCapacity", 32));
+	}
+
+}
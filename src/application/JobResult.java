@@ -0,0 +1,125 @@
+package application;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+
+/** JobResult holds the formatted top ten results of a single scrape job and the ranking behind all results,
+ *  so every client session keeps its own output instead of sharing static fields.
+ *  All results are written a page at a time straight from the ranking, so the full list is never held as one String
+ *  (and a Client which only asks for the top ten never pays for it).
+ *  @author derekdileo */
+public class JobResult {
+
+	/** Words per page when all results are streamed (and per "page N"), from the results.pageSize setting. */
+	public static final int PAGE_SIZE = Math.max(1, Settings.getInt("results.pageSize", 500));
+
+	private final String topTen;
+	private final List<Word> topWords;
+	private final RankedWords ranking;
+	private final String all;
+
+	// Constructor
+	public JobResult(String topTen, String all) {
+		this.topTen = topTen;
+		this.all = all;
+		this.topWords = null;
+		this.ranking = null;
+	}
+
+	/** Constructor for a result whose other words are read from a ranking when they are requested.
+	 *  @param topWords holds the top ten words, most frequent first
+	 *  @param ranking gives access to every word in ranking order */
+	public JobResult(List<Word> topWords, RankedWords ranking) {
+		this.topTen = Main.displayTopTen(topWords);
+		this.topWords = topWords;
+		this.ranking = ranking;
+		this.all = null;
+	}
+
+	// Getters
+	public String getTopTen() {
+		return topTen;
+	}
+
+	public List<Word> getTopWords() {
+		return topWords;
+	}
+
+	public RankedWords getRanking() {
+		return ranking;
+	}
+
+	/** Method builds the complete all results String (prefer writeAll() for sending it to a Client).
+	 *  @return String of all words, one Main.buildString() line each */
+	public String getAll() {
+		if (ranking == null) {
+			return all;
+		}
+		StringWriter sw = new StringWriter();
+		try {
+			writeAll(sw, PAGE_SIZE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sw.toString();
+	}
+
+	/** Method returns the number of words in the ranking.
+	 *  @return distinct word count (0 for a result built from Strings) */
+	public int size() {
+		return ranking == null ? 0 : ranking.size();
+	}
+
+	/** Method writes all results (one Main.buildString() line each), reading and flushing one page at a time.
+	 *  @param out receives the text
+	 *  @param pageSize is the number of words read and written per page
+	 *  @throws IOException if the Client connection fails */
+	public void writeAll(Writer out, int pageSize) throws IOException {
+		if (ranking == null) {
+			out.write(String.valueOf(all));
+			return;
+		}
+		out.write("\nAll Results\n\n");
+		out.write(",");
+		int rank = 0;
+		List<Word> page;
+		while (!(page = ranking.get(rank, pageSize)).isEmpty()) {
+			rank = writeLines(out, page, rank);
+			out.flush();
+			if (page.size() < pageSize) {
+				break;
+			}
+		}
+	}
+
+	/** Method writes the words ranked from (inclusive) to to (exclusive) under a "Results a-b of n" heading.
+	 *  Lines keep their overall rank so pages read like slices of all results.
+	 *  @param out receives the text
+	 *  @param from is the 0-based rank of the first word
+	 *  @param to is the 0-based rank after the last word
+	 *  @throws IOException if the Client connection fails */
+	public void writeRange(Writer out, int from, int to) throws IOException {
+		List<Word> page = ranking == null || to <= from ? null : ranking.get(from, to - from);
+		if (page == null || page.isEmpty()) {
+			out.write("\nNo Results\n\n");
+			out.write(",");
+			return;
+		}
+		out.write("\nResults " + (from + 1) + "-" + (from + page.size()) + " of " + ranking.size() + "\n\n");
+		out.write(",");
+		writeLines(out, page, from);
+	}
+
+	// Writes one buildString() line per word and returns the rank after the last one
+	private static int writeLines(Writer out, List<Word> words, int rank) throws IOException {
+		for (Word word : words) {
+			out.write(Main.buildString(word.getWord(), word.getFrequency(), rank++));
+			out.write(",");
+		}
+		return rank;
+	}
+
+}
@@ -0,0 +1,91 @@
+package application;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** A JobStore keeps the word counts of each job in its own namespace (a job id), so concurrent or back-to-back
+ *  jobs never mix their counts and a job can be removed without touching any other. Jobs expire after
+ *  wordfreq.jobs.ttlSeconds (default 600) and are removed in bulk by a background sweep.
+ *  DatabaseJobStore keeps the namespaces in the jobs and job_words tables (wordfreq.store=mysql, behind a
+ *  WriteBehindBuffer unless wordfreq.writeBehind.enabled=false) and MemoryJobStore keeps them in process (any other store,
+ *  which only happens with wordfreq.store.scope=job set explicitly, see ScrapeJob.isJobScoped()).
+ *  @author derekdileo */
+public interface JobStore {
+
+	/** Method opens a namespace for a new job.
+	 *  @param website is the URL the job scrapes
+	 *  @return job id (or -1 if the job could not be registered) */
+	long begin(String website);
+
+	/** Method stores the counts of a job.
+	 *  @param jobId is the id from begin()
+	 *  @param counts holds each distinct word of the job and its frequency */
+	void merge(long jobId, WordCounter counts);
+
+	/** Method looks up the frequency of a word within one job.
+	 *  @param jobId is the id from begin()
+	 *  @param word is the word
+	 *  @return frequency of the word (or -1 if it is not stored for the job) */
+	int frequency(long jobId, String word);
+
+	/** Method returns the most frequent words of a job.
+	 *  @param jobId is the id from begin()
+	 *  @param k is the number of words wanted
+	 *  @return up to k words in ranking order (empty once the job has expired) */
+	List<Word> top(long jobId, int k);
+
+	/** Method returns a RankedWords view of one job's words.
+	 *  @param jobId is the id from begin()
+	 *  @return RankedWords of the job (empty once the job has expired) */
+	RankedWords ranked(long jobId);
+
+	/** Method removes every job at least maxAgeMillis old in one bulk operation.
+	 *  @param maxAgeMillis is the age after which a job expires (0 removes every job)
+	 *  @return number of jobs removed */
+	int expire(long maxAgeMillis);
+
+	/** Method returns the store matching wordfreq.store, created (with its expiry sweep) on first use.
+	 *  @return the shared JobStore */
+	static JobStore getDefault() {
+		return Default.STORE;
+	}
+
+	/** Method returns how long jobs are kept, from wordfreq.jobs.ttlSeconds.
+	 *  @return time to live in milliseconds */
+	static long getTtlMillis() {
+		return TimeUnit.SECONDS.toMillis(Math.max(1, Settings.getLong("jobs.ttlSeconds", 600)));
+	}
+
+	/** Holds the shared store and the thread which sweeps expired jobs. */
+	final class Default {
+		static final JobStore STORE = "mysql".equalsIgnoreCase(Settings.getString("store", "mysql"))
+				? WriteBehindJobStore.wrap(new DatabaseJobStore(), (jobId, counts) -> Database.insertJobWords(jobId, counts) >= 0)
+				: new MemoryJobStore();
+
+		static {
+			long ttl = getTtlMillis();
+			ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "job-expiry");
+				t.setDaemon(true);
+				return t;
+			});
+			// Sweep twice per TTL, so no job outlives it by more than half
+			sweeper.scheduleWithFixedDelay(() -> {
+				try {
+					int removed = STORE.expire(ttl);
+					if (removed > 0) {
+						System.out.println("Removed " + removed + " expired jobs");
+					}
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}, ttl / 2, ttl / 2, TimeUnit.MILLISECONDS);
+		}
+
+		private Default() {
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package application;
+
+import java.util.Collections;
+import java.util.List;
+
+/** KeysetRankedWords pages through a ranking held in the database. It remembers the last word of the page it
+ *  returned, and when the next page is asked for (the usual walk from rank 0 to the end) it reads the words
+ *  after that one with a keyset query on (frequency DESC, word). A LIMIT/OFFSET query would have to skip every
+ *  earlier row, so the walk would cost quadratic time. A jump to any other rank falls back to the offset reader.
+ *  @author derekdileo */
+public class KeysetRankedWords implements RankedWords {
+
+	/** Reads the words ranked after a given word. */
+	public interface KeysetReader {
+		/** Method reads a page of the ranking.
+		 *  @param after is the last word of the previous page (null for the first page)
+		 *  @param limit is the number of words wanted
+		 *  @return up to limit words which follow after */
+		List<Word> after(Word after, int limit);
+	}
+
+	private final RankedWords byOffset;
+	private final KeysetReader byKey;
+
+	// Last word returned and the rank which follows it
+	private Word last;
+	private int next = -1;
+
+	/** Constructor
+	 *  @param byOffset gives the size of the ranking and reads pages which don't continue the previous one
+	 *  @param byKey reads the page which follows the previous one */
+	public KeysetRankedWords(RankedWords byOffset, KeysetReader byKey) {
+		this.byOffset = byOffset;
+		this.byKey = byKey;
+	}
+
+	@Override
+	public int size() {
+		return byOffset.size();
+	}
+
+	@Override
+	public synchronized List<Word> get(int from, int count) {
+		if (count <= 0) {
+			return Collections.emptyList();
+		}
+		List<Word> page;
+		if (from == 0) {
+			page = byKey.after(null, count);
+		} else if (from == next && last != null) {
+			page = byKey.after(last, count);
+		} else {
+			page = byOffset.get(from, count);
+		}
+
+		// Remember where this page ended for the next call
+		if (page.isEmpty()) {
+			last = null;
+			next = -1;
+		} else {
+			last = page.get(page.size() - 1);
+			next = from + page.size();
+		}
+		return page;
+	}
+
+}
@@ -0,0 +1,118 @@
+package application;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A LatencyHistogram counts durations in buckets whose upper bounds double from 1 microsecond up to about
+ *  35 minutes, so percentiles are accurate to within a factor of two. Recording costs four lock-free updates
+ *  (the bucket, the count, the sum and the maximum) and no allocation. It is safe to record from any number of threads.
+ *  @author derekdileo */
+public class LatencyHistogram {
+
+	/** Number of buckets; bucket i holds durations up to 2^i microseconds and the last one everything longer. */
+	public static final int BUCKETS = 33;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sumNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	/** Method records one duration.
+	 *  @param nanos is the duration in nanoseconds (negative values are counted as 0) */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sumNanos.add(value);
+		maxNanos.accumulate(value);
+	}
+
+	/** Method returns the upper bound of a bucket.
+	 *  @param bucket is the bucket index
+	 *  @return upper bound in nanoseconds (Long.MAX_VALUE for the last bucket) */
+	public static long upperBoundNanos(int bucket) {
+		return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : TimeUnit.MICROSECONDS.toNanos(1L << bucket);
+	}
+
+	/** Method returns a copy of the counts recorded so far.
+	 *  @return Snapshot of the histogram */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new Snapshot(copy, count.sum(), sumNanos.sum(), maxNanos.get());
+	}
+
+	// Smallest bucket whose upper bound is at least nanos
+	private static int bucketOf(long nanos) {
+		long micros = (nanos + 999) / 1000;
+		if (micros <= 1) {
+			return 0;
+		}
+		int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+		return Math.min(bucket, BUCKETS - 1);
+	}
+
+	/** Snapshot of a LatencyHistogram. Because the counters are read one at a time while other threads record,
+	 *  the totals may be a few recordings apart. */
+	public static final class Snapshot {
+		public final long count;
+		public final long sumNanos;
+		public final long maxNanos;
+		private final long[] buckets;
+
+		Snapshot(long[] buckets, long count, long sumNanos, long maxNanos) {
+			this.buckets = buckets;
+			this.count = count;
+			this.sumNanos = sumNanos;
+			this.maxNanos = maxNanos;
+		}
+
+		/** Method returns the number of durations recorded in one bucket.
+		 *  @param bucket is the bucket index
+		 *  @return count of the bucket */
+		public long getBucketCount(int bucket) {
+			return buckets[bucket];
+		}
+
+		/** Method returns the mean duration.
+		 *  @return mean in nanoseconds (0 if nothing has been recorded) */
+		public long getMeanNanos() {
+			return count == 0 ? 0 : sumNanos / count;
+		}
+
+		/** Method returns an upper estimate of a percentile: the bound of the bucket holding it, capped at the maximum.
+		 *  @param quantile is between 0 and 1 (e.g. 0.99)
+		 *  @return duration in nanoseconds (0 if nothing has been recorded) */
+		public long getPercentileNanos(double quantile) {
+			long total = 0;
+			for (long c : buckets) {
+				total += c;
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * total));
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank) {
+					return Math.min(upperBoundNanos(i), maxNanos);
+				}
+			}
+			return maxNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + ", mean=" + TimeUnit.NANOSECONDS.toMicros(getMeanNanos())
+					+ "us, p50=" + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(0.5))
+					+ "us, p99=" + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(0.99))
+					+ "us, max=" + TimeUnit.NANOSECONDS.toMicros(maxNanos) + "us";
+		}
+	}
+
+}
@@ -1,13 +1,7 @@
 package application;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.sql.ResultSet;
-import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
 
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -21,28 +15,21 @@ import javafx.stage.Stage;
  *  @author derekdileo */
 public class Main extends Application {
 	
-	// String array to hold QuestionBox.display() responses from Client.
-	protected static String[] userResponses;
-	
-	// Local Lists and Maps to hold return values from Class methods
-	private String[] wordsArray;
-	
-	// Varibles used to show / hide text on GUI
-	private StringBuilder sbTen;
-	private StringBuilder sbAll;
-	
-	// These are accessed by the four Controller classes to print to GUI 
-	protected static String sbTenString;
-	protected static String sbAllString;
+	// Accepts Client connections and serves each one on its own session
+	private static WordFrequencyServer server;
 	
 	/** Main method calls launch() to start JavaFX GUI.
 	 *  @param args mandatory parameters for command line method call */
 	public static void main(String[] args) {
-		// Create wordsTable if it doesn't exist
+		// Open the configured store (creates the job tables or wordsTable if they don't exist)
 		try {
-			Database.createWordsTable("words");
+			if (ScrapeJob.isJobScoped()) {
+				JobStore.getDefault();
+			} else {
+				WordStore.getDefault();
+			}
 		} catch (Exception e) {
-			System.out.println("Error creating words table in main()!");
+			System.out.println("Error opening word store in main()!");
 			System.out.println(e.getMessage());
 			e.printStackTrace();
 		}
@@ -82,142 +69,45 @@ public class Main extends Application {
 			closeProgram();
 		});
 		
-		// Create and start an anonymous Thread to handle input from Client
-		new Thread( () -> {
-			
-			// Create ServerSocket
-			try (ServerSocket serverSocket = new ServerSocket(8000)){
-				
-				// Print start time to server TextArea
-				Platform.runLater(() -> {
-					ta.appendText("Server started at " + new Date() + '\n');
-				});
-
-				// Accept connection request from Client
-				Socket socket = serverSocket.accept();
-				
-				// Print start time to server TextArea
-				Platform.runLater(() -> {
-					ta.appendText("Client Connected" + '\n');
-				});
-
-				// Wrap input stream with a buffered reader
-				BufferedReader fromClient = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-				
-				// Wrap output stream with a print writer
-				// true = auto-flush output stream to ensure data is sent
-				PrintWriter toClient = new PrintWriter(socket.getOutputStream(), true);
-				
-				// Create String array to hold user input
-				userResponses = new String[4];
-				
-				// Infinite loop to collect input from user
-				// Not necessary here, but useful when in enclosing loop is unknown
-				while(true) {
-					
-					for(int i = 0; i < 5; i++) {
-						
-						// Read and store each response line sent by Client
-						String response = fromClient.readLine();
-
-						userResponses[i] = response; 
-						
-						// Display inputs to Server text area for troubleshooting purposes
-						ta.appendText("\n " + i + ": " + response);
-						
-						// Fourth response should terminate the infinte loop
-						if(userResponses[i].equals("quit...")) {
-							 ta.appendText("\nuserResponses == quit...");
-							 break;
-						}
-						 
-					}
-					
-					break;
-				}
-				
-				// String array created by WebScrape.parseSite() 
-				// which contains every word (and multiples)
-				wordsArray = WebScrape.parseSite(userResponses[0], userResponses[1], userResponses[2]);
-				
-				// Process wordsArray and push to database. 
-				// If word exists in DB, increment its frequency
-				WebScrape.wordsToDB(wordsArray);
-				
-				// SELECT * FROM words ORDER BY DESC and return ResultSet
-				ResultSet results = Database.getResults();
-				
-				// Use StringBuilder to Convert ResultSet into sbTen and sbAll Strings
-				displayResults(results);
-				 
-				// Send top ten results back to client
-				toClient.println(sbTenString);
-				toClient.println("pause...");
-
-				// Send all results back to client
-				toClient.println(sbAllString);
-				toClient.println("pause...");
-				 
-			} catch(IOException ex) {
-				ta.appendText("Error in Server start(): " + ex.getMessage());
-			}
-			
-		}).start();
+		// Sessions hand their scrape jobs to a fixed pool of workers behind a bounded queue (wordfreq.jobs.*)
+		JobQueue.Stats queue = JobQueue.getDefault().getStats();
+		
+		// Start the server which serves every Client on its own session.
+		// Session state (responses and results) lives in SessionProtocol, not in static fields.
+		// wordfreq.server.mode=nio selects the non-blocking selector front end. Its workers only wait on the job queue
+		// and write results, so by default there is one for every job the queue can hold (wordfreq.server.workers);
+		// a request beyond that still reaches the queue and is turned away as busy.
+		int port = Settings.getInt("server.port", 8000);
+		int maxSessions = Settings.getInt("server.maxSessions", 16);
+		Consumer<String> log = message -> Platform.runLater(() -> ta.appendText(message));
+		if ("nio".equalsIgnoreCase(Settings.getString("server.mode", "blocking"))) {
+			int workers = Settings.getInt("server.workers", queue.workers + queue.capacity);
+			server = new NioServer(port, maxSessions, Math.max(1, Math.min(workers, maxSessions)), log);
+		} else {
+			server = new SocketServer(port, maxSessions, log);
+		}
+		server.start();
+		
+		log.accept("Job queue: " + queue.workers + " workers, at most " + queue.capacity + " jobs waiting" + '\n');
+		
+		// Publish per-stage metrics over JMX and http://127.0.0.1:(wordfreq.metrics.port)/metrics
+		ServerMetrics.start();
 		
 	}
 	
-	/** Method to convert printed database contents to topTen and All windows on JavaFX GUI.
-	 *  @param rs is the ResultSet returned from Database.getResults() method. */
-	private void displayResults(ResultSet rs) {
-		try {
-			// Build a string of top 10 results to push to Main.fxml GUI
-			sbTen = new StringBuilder();
-			sbTen.append("\nTop Ten Results\n\n");
+	/** Method builds the top ten results String from words which are already in ranking order 
+	 *  (e.g. from TopWords.select() or Database.getTopResults()), in the same format as JobResult.writeAll().
+	 *  @param top holds the most frequent words, most frequent first
+	 *  @return String of (up to) the first ten words which is sent to the Client */
+	protected static String displayTopTen(List<Word> top) {
+		StringBuilder sbTen = new StringBuilder();
+		sbTen.append("\nTop Ten Results\n\n");
+		sbTen.append(",");
+		for (int i = 0; i < top.size() && i < 10; i++) {
+			sbTen.append(buildString(top.get(i).getWord(), top.get(i).getFrequency(), i));
 			sbTen.append(",");
-			
-			// Build a string of all results to push to AllResults.fxml GUI
-			sbAll = new StringBuilder();
-			sbAll.append("\nAll Results\n\n");
-			sbAll.append(",");
-			
-			// Variables for buildString()
-			String word = null;
-			int frequency = 0;
-			int wordCount = 0;
-			
-			// Scan through result set
-			while(rs.next()) {
-				word = rs.getString(1);
-				frequency = rs.getInt(2);
-			
-				String line = buildString(word, frequency, wordCount);
-			
-				// Handle top10 and all results lists
-				if (wordCount < 10) {
-					sbTen.append(line);
-					sbTen.append(",");
-					sbAll.append(line);
-					sbAll.append(",");
-				} else {
-					sbAll.append(line);
-					sbAll.append(",");
-				}
-				
-				wordCount++;
-				
-			}
-			
-			// Save results to String variables which are called from either:
-			// MainC-, MainDefaultC-, AllResultsC- or AllResultsDefaultC- ontrollers to push to GUI
-			sbTenString = sbTen.toString();
-			sbAllString = sbAll.toString();
-		
-			rs.close();
-		} catch (Exception e) {
-			System.out.println("Exception in Main.displayResults()" + e.getMessage());
-			e.printStackTrace();
 		}
-		
+		return sbTen.toString();
 	}
 	
 	/** Method to create a string for each word/frequency set in database which uses \t to account for word size 
@@ -226,7 +116,7 @@ public class Main extends Application {
 	 *  @param frequency is the number of times the word occurred on the parsed site.
 	 *  @param count keeps track of the position in the list (which is in descending order by frequency). 
 	 *  @return String to append to StringBuilder for top10 and/or all results which is pushed to GUI. */
-	private String buildString(String word, int frequency, int count) {
+	protected static String buildString(String word, int frequency, int count) {
 		
 		int size = word.length();
 		
@@ -264,9 +154,19 @@ public class Main extends Application {
        if (answer) {
            // Run any necessary code before window closes:
 		   try {
-	    		// Drop and re-create words table
-				Database.deleteTable("words");
-				Database.createWordsTable("words");
+			    // Stop accepting Clients
+			    if (server != null) {
+			    	server.stop();
+			    }
+			    JobQueue.getDefault().shutdown();
+			    ServerMetrics.stop();
+	    		// Remove every job's words in one bulk delete, or empty the shared word store 
+	    		// (drops and re-creates words table for MySQL)
+	    		if (ScrapeJob.isJobScoped()) {
+	    			JobStore.getDefault().expire(0);
+	    		} else {
+	    			WordStore.getDefault().clear();
+	    		}
 				System.out.println("Window Closed!");
 				window.close();
 		   } catch (Exception e) {
@@ -0,0 +1,260 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** MaterializedTopWords keeps the top of the words table's ranking in memory, so Database.getTopResults() is answered
+ *  from a short sorted list instead of a query. The list is an exact prefix of the ranking (frequency DESC, word)
+ *  holding up to capacity words, more than the ten a result shows, so it survives a few words dropping out.
+ *  Merged counts are applied as they are committed: a word in the list adds its delta, and since a word outside
+ *  the list had at most the frequency of the last word, the list is cut back to the words no outsider can reach
+ *  after its delta. While the list holds the whole table, new words are exact and are added too.
+ *  Statements which set a frequency (post, update, delete) and table resets invalidate the list.
+ *  When the known prefix is shorter than a request, it is read again with an indexed LIMIT query.
+ *  The list also expires a TTL after it was read, bounding how stale it gets when another server writes the same table.
+ *  Settings: wordfreq.topWords.materialized (default true), wordfreq.topWords.capacity (default 100) and
+ *  wordfreq.topWords.ttlSeconds (default 60, 0 for no expiry).
+ *  @author derekdileo */
+public class MaterializedTopWords {
+
+	// Ranking order of the words table; ties compare the way its collation does
+	private static final Comparator<Word> RANKING = Comparator.comparingInt(Word::getFrequency).reversed()
+			.thenComparing(word -> FrequencyCache.fold(word.getWord()))
+			.thenComparing(Word::getWord);
+
+	private final int capacity;
+	private final long ttlNanos;
+
+	// Exact prefix of the ranking, most frequent first
+	private List<Word> top = new ArrayList<Word>();
+	// True if top holds every word in the table
+	private boolean complete;
+	// When top was read from the table
+	private long loadedNanos;
+	// Bumped by every write, so a refill which overlapped one is not installed
+	private long version;
+	private int writesInFlight;
+
+	// Statistics
+	private long hits;
+	private long refills;
+	private long applied;
+	private long truncations;
+	private long invalidations;
+	private long expirations;
+
+	/** Constructor for a list which never expires
+	 *  @param capacity is the most words kept (requests for more are read from the table) */
+	public MaterializedTopWords(int capacity) {
+		this(capacity, 0);
+	}
+
+	/** Constructor
+	 *  @param capacity is the most words kept (requests for more are read from the table)
+	 *  @param ttlMillis is how long the list may be served after it was read (0 for no expiry) */
+	public MaterializedTopWords(int capacity, long ttlMillis) {
+		this.capacity = Math.max(1, capacity);
+		this.ttlNanos = ttlMillis <= 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+	}
+
+	/** Method returns the view configured with wordfreq.topWords.*, created on first use.
+	 *  @return the shared MaterializedTopWords of the words table, or null if it is disabled */
+	public static MaterializedTopWords getDefault() {
+		return Default.VIEW;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/** Method returns the top words if enough of the ranking is known.
+	 *  @param k is the number of words wanted
+	 *  @return copy of the first k words (fewer if the table is smaller), or null if they must be read */
+	public synchronized List<Word> get(int k) {
+		k = Math.max(k, 0);
+		if (ttlNanos > 0 && (complete || !top.isEmpty()) && System.nanoTime() - loadedNanos > ttlNanos) {
+			// Another server may have changed the table since it was read
+			top = new ArrayList<Word>();
+			complete = false;
+			expirations++;
+		}
+		if (k > top.size() && !complete) {
+			return null;
+		}
+		hits++;
+		return copy(top.subList(0, Math.min(k, top.size())));
+	}
+
+	/** Method returns the version a refill must read under (see refill()).
+	 *  @return current version, or -1 while a write is in flight (the read must not be installed) */
+	public synchronized long beginRefill() {
+		return writesInFlight > 0 ? -1 : version;
+	}
+
+	/** Method installs the top of the ranking read from the table, unless a write started or finished since
+	 *  beginRefill() (the rows may then be older or newer than the list's writes).
+	 *  @param version is the value returned by beginRefill()
+	 *  @param ranked holds the first words of the ranking as read with LIMIT capacity
+	 *  @return true if the rows were installed */
+	public synchronized boolean refill(long version, List<Word> ranked) {
+		if (version < 0 || version != this.version || writesInFlight > 0) {
+			return false;
+		}
+		top = copy(ranked.subList(0, Math.min(ranked.size(), capacity)));
+		complete = ranked.size() < capacity;
+		loadedNanos = System.nanoTime();
+		refills++;
+		return true;
+	}
+
+	/** Method marks the start of a write to the words table. Every call must be followed by applied() or invalidated(). */
+	public synchronized void beginWrite() {
+		writesInFlight++;
+		version++;
+	}
+
+	/** Method applies counts merged into the table (insert-or-increment) once they are committed.
+	 *  @param deltas holds each merged word and the number of occurrences added to its frequency */
+	public synchronized void applied(WordCounter deltas) {
+		try {
+			version++;
+			applyDeltas(deltas);
+		} finally {
+			writesInFlight--;
+		}
+	}
+
+	/** Method drops the list after a write whose effect on the ranking isn't known (it is read again when next needed). */
+	public synchronized void invalidated() {
+		version++;
+		writesInFlight--;
+		invalidate();
+	}
+
+	/** Method drops the list after the words table was dropped or created. */
+	public synchronized void invalidate() {
+		version++;
+		top = new ArrayList<Word>();
+		complete = false;
+		invalidations++;
+	}
+
+	/** Method returns a snapshot of the counters and the known prefix.
+	 *  @return Stats describing the view at the time of the call */
+	public synchronized Stats getStats() {
+		return new Stats(hits, refills, applied, truncations, invalidations, expirations, top.size(), capacity, complete);
+	}
+
+	private void applyDeltas(WordCounter deltas) {
+		int lastFrequency = top.isEmpty() ? 0 : top.get(top.size() - 1).getFrequency();
+
+		// Rows are matched the way the table's collation matches them
+		Map<String, Word> members = new HashMap<String, Word>(top.size() * 2);
+		for (Word word : top) {
+			members.put(FrequencyCache.fold(word.getWord()), word);
+		}
+
+		List<Word> next = new ArrayList<Word>(top);
+		int maxOutsideDelta = 0;
+		WordCounter.Cursor cursor = deltas.cursor();
+		while (cursor.next()) {
+			String key = FrequencyCache.fold(cursor.word());
+			Word member = members.get(key);
+			if (cursor.count() < 0 || (member != null && !member.getWord().equals(cursor.word()))) {
+				// A decrease, or a spelling which one collation merges and another keeps apart- read the table again
+				invalidate();
+				return;
+			}
+			if (member != null) {
+				member.setFrequency(member.getFrequency() + cursor.count());
+			} else if (complete) {
+				// Not in the table yet, so its frequency is exactly the delta
+				Word added = new Word(cursor.word(), cursor.count());
+				members.put(key, added);
+				next.add(added);
+			} else {
+				maxOutsideDelta = Math.max(maxOutsideDelta, cursor.count());
+			}
+		}
+		next.sort(RANKING);
+
+		if (!complete && maxOutsideDelta > 0) {
+			// Words outside had at most lastFrequency, so only words above lastFrequency + delta are still known to rank first
+			long bound = (long) lastFrequency + maxOutsideDelta;
+			int keep = 0;
+			while (keep < next.size() && next.get(keep).getFrequency() > bound) {
+				keep++;
+			}
+			if (keep < next.size()) {
+				next = new ArrayList<Word>(next.subList(0, keep));
+				truncations++;
+			}
+		}
+		if (next.size() > capacity) {
+			next = new ArrayList<Word>(next.subList(0, capacity));
+			complete = false;
+		}
+		top = next;
+		applied++;
+	}
+
+	private static List<Word> copy(List<Word> words) {
+		List<Word> copy = new ArrayList<Word>(words.size());
+		for (Word word : words) {
+			copy.add(new Word(word.getWord(), word.getFrequency()));
+		}
+		return copy;
+	}
+
+	/** Snapshot of the MaterializedTopWords counters. */
+	public static final class Stats {
+		/** Requests answered from the list. */
+		public final long hits;
+		/** Lists read from the table. */
+		public final long refills;
+		/** Merges applied to the list. */
+		public final long applied;
+		/** Merges which cut the list back. */
+		public final long truncations;
+		public final long invalidations;
+		/** Lists dropped for being older than the TTL. */
+		public final long expirations;
+		/** Words of the ranking known. */
+		public final int known;
+		public final int capacity;
+		public final boolean complete;
+
+		Stats(long hits, long refills, long applied, long truncations, long invalidations, long expirations, int known, int capacity,
+				boolean complete) {
+			this.hits = hits;
+			this.refills = refills;
+			this.applied = applied;
+			this.truncations = truncations;
+			this.invalidations = invalidations;
+			this.expirations = expirations;
+			this.known = known;
+			this.capacity = capacity;
+			this.complete = complete;
+		}
+
+		@Override
+		public String toString() {
+			return "MaterializedTopWords[hits=" + hits + ", refills=" + refills + ", applied=" + applied
+					+ ", truncations=" + truncations + ", invalidations=" + invalidations + ", expirations=" + expirations + ", known=" + known + "/" + capacity
+					+ (complete ? " (whole table)" : "") + "]";
+		}
+	}
+
+	/** Holds the shared view, so it is only configured when the words table is first used. */
+	private static final class Default {
+		static final MaterializedTopWords VIEW = Settings.getBoolean("topWords.materialized", true)
+				? new MaterializedTopWords(Settings.getInt("topWords.capacity", 100),
+						TimeUnit.SECONDS.toMillis(Settings.getLong("topWords.ttlSeconds", 60)))
+				: null;
+	}
+
+}
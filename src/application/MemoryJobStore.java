@@ -0,0 +1,90 @@
+package application;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** MemoryJobStore is an in-process JobStore: one WordCounter per job id in a concurrent map, so jobs never share a
+ *  lock or a table and expiring a job just drops its counter. Used in job scope whenever wordfreq.store is not mysql.
+ *  @author derekdileo */
+public class MemoryJobStore implements JobStore {
+
+	private final Map<Long, Job> jobs = new ConcurrentHashMap<Long, Job>();
+	private final AtomicLong nextId = new AtomicLong(1);
+
+	@Override
+	public long begin(String website) {
+		long jobId = nextId.getAndIncrement();
+		jobs.put(jobId, new Job(System.currentTimeMillis()));
+		return jobId;
+	}
+
+	@Override
+	public void merge(long jobId, WordCounter counts) {
+		Job job = jobs.get(jobId);
+		if (job == null || counts == null) {
+			return;
+		}
+		synchronized (job) {
+			job.counts.merge(counts);
+		}
+	}
+
+	@Override
+	public int frequency(long jobId, String word) {
+		Job job = jobs.get(jobId);
+		if (job == null) {
+			return -1;
+		}
+		synchronized (job) {
+			int frequency = job.counts.get(word);
+			return frequency > 0 ? frequency : -1;
+		}
+	}
+
+	@Override
+	public List<Word> top(long jobId, int k) {
+		Job job = jobs.get(jobId);
+		if (job == null) {
+			return TopWords.select(new WordCounter(), k);
+		}
+		synchronized (job) {
+			return TopWords.select(job.counts, k);
+		}
+	}
+
+	@Override
+	public RankedWords ranked(long jobId) {
+		Job job = jobs.get(jobId);
+		if (job == null) {
+			return TopWords.ranked(new WordCounter());
+		}
+		synchronized (job) {
+			return TopWords.ranked(job.counts);
+		}
+	}
+
+	@Override
+	public int expire(long maxAgeMillis) {
+		long cutoff = System.currentTimeMillis() - maxAgeMillis;
+		int removed = 0;
+		for (Map.Entry<Long, Job> entry : jobs.entrySet()) {
+			if (entry.getValue().created <= cutoff && jobs.remove(entry.getKey(), entry.getValue())) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	// One job's namespace
+	private static final class Job {
+		final long created;
+		final WordCounter counts = new WordCounter();
+
+		Job(long created) {
+			this.created = created;
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/** MemoryWordStore is an in-process WordStore: one WordCounter guarded by a read/write lock, so merging a job
+ *  costs a hash table update per distinct word instead of a database round trip. The full ranking is sorted
+ *  once and shared by every reader until the next write; the top K comes from a bounded heap when no
+ *  ranking is cached. Words are lost when the server stops.
+ *  @author derekdileo */
+public class MemoryWordStore implements WordStore {
+
+	private final WordCounter counts = new WordCounter();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// Every word in ranking order, built on demand and dropped by every write
+	private volatile List<Word> sorted;
+
+	@Override
+	public void increment(String word, int delta) {
+		lock.writeLock().lock();
+		try {
+			counts.add(word, delta);
+			sorted = null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void merge(WordCounter job) {
+		lock.writeLock().lock();
+		try {
+			counts.merge(job);
+			sorted = null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public int frequency(String word) {
+		lock.readLock().lock();
+		try {
+			int frequency = counts.get(word);
+			return frequency > 0 ? frequency : -1;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<Word> top(int k) {
+		List<Word> ranking = sorted;
+		if (ranking != null) {
+			return new ArrayList<Word>(ranking.subList(0, Math.min(Math.max(k, 0), ranking.size())));
+		}
+		lock.readLock().lock();
+		try {
+			return TopWords.select(counts, k);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<Word> scan(int offset, int limit) {
+		List<Word> ranking = ranking();
+		int start = Math.min(Math.max(offset, 0), ranking.size());
+		int end = Math.min(start + Math.max(limit, 0), ranking.size());
+		return ranking.subList(start, end);
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return counts.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			counts.clear();
+			sorted = null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Returns the cached ranking, sorting the words if a write has dropped it
+	private List<Word> ranking() {
+		List<Word> ranking = sorted;
+		if (ranking == null) {
+			lock.readLock().lock();
+			try {
+				ranking = sorted;
+				if (ranking == null) {
+					// Readers racing here sort the same snapshot; writers wait for the read lock
+					ranking = Collections.unmodifiableList(TopWords.sorted(counts));
+					sorted = ranking;
+				}
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+		return ranking;
+	}
+
+}
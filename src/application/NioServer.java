@@ -0,0 +1,635 @@
+package application;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/** The NioServer is a non-blocking alternative to SocketServer. A single selector thread accepts Clients and
+ *  reads their request lines without blocking, the scrape itself runs on a small pool of worker threads, and the
+ *  results are written back through reusable direct buffers. It speaks the same line-oriented wire format
+ *  (SessionProtocol) and binary frame format (BinarySessionProtocol) as SocketServer, so existing Clients work with either one.
+ *  As with SocketServer, at most maxSessions Clients are connected at once; further connections wait in the accept
+ *  backlog until one closes.
+ *  @author derekdileo */
+public class NioServer implements WordFrequencyServer {
+
+	// Longest request line accepted from a Client
+	private static final int MAX_LINE_LENGTH = 8192;
+
+	// Number of filled output buffers a worker may queue for one Client before it waits for the socket to drain
+	private static final int MAX_QUEUED_BUFFERS = 8;
+
+	private final int port;
+	private final int maxSessions;
+	private final int workerCount;
+	private final Consumer<String> log;
+
+	// Same charset as the InputStreamReader / PrintWriter used by SocketServer
+	private final Charset charset = Charset.defaultCharset();
+
+	private final BufferPool buffers = new BufferPool(16 * 1024, 256);
+	private final ExecutorService workers;
+
+	// Work posted by worker threads which must run on the selector thread
+	private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<Runnable>();
+
+	private volatile Selector selector;
+	private volatile boolean running;
+
+	// Connections open and the accept registration, only touched on the selector thread
+	private int openConnections;
+	private SelectionKey acceptKey;
+
+	/** Constructor
+	 *  @param port is the port to listen on
+	 *  @param maxSessions is the maximum number of Clients connected at once
+	 *  @param workerCount is the number of threads which hand requests to the JobQueue and write the results
+	 *  @param log receives messages to display on the server GUI */
+	public NioServer(int port, int maxSessions, int workerCount, Consumer<String> log) {
+		this.port = port;
+		this.maxSessions = Math.max(1, maxSessions);
+		this.workerCount = workerCount;
+		this.log = log;
+
+		AtomicInteger counter = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+			Thread t = new Thread(r, "nio-worker-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/** Method starts the selector loop on a background thread. */
+	@Override
+	public void start() {
+		running = true;
+		Thread selectorThread = new Thread(this::selectLoop, "nio-server-selector");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+
+	/** Method stops the selector loop, closes every connection and interrupts running jobs. */
+	@Override
+	public void stop() {
+		running = false;
+		Selector s = selector;
+		if (s != null) {
+			s.wakeup();
+		}
+		workers.shutdownNow();
+	}
+
+	private void selectLoop() {
+		try (Selector sel = Selector.open(); ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+			selector = sel;
+			serverChannel.configureBlocking(false);
+			serverChannel.bind(new InetSocketAddress(port));
+			acceptKey = serverChannel.register(sel, SelectionKey.OP_ACCEPT);
+
+			// Print start time to server TextArea
+			log.accept("Server started at " + new Date() + " (NIO, max " + maxSessions + " sessions, " + workerCount + " workers)" + '\n');
+
+			// Only the selector thread reads, so one direct buffer serves every connection
+			ByteBuffer readBuffer = buffers.acquire();
+			CharBuffer chars = CharBuffer.allocate(readBuffer.capacity());
+
+			while (running) {
+				sel.select();
+
+				// Run interest changes and follow-ups posted by workers
+				Runnable task;
+				while ((task = selectorTasks.poll()) != null) {
+					task.run();
+				}
+
+				Iterator<SelectionKey> it = sel.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept(serverChannel, sel);
+						continue;
+					}
+					Connection c = (Connection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							c.read(readBuffer, chars);
+						}
+						if (key.isValid() && key.isWritable()) {
+							c.write();
+						}
+					} catch (IOException e) {
+						log.accept("\nError in NioServer: " + e.getMessage());
+						c.close();
+					}
+				}
+			}
+
+			// Close every remaining Client connection
+			for (SelectionKey key : sel.keys()) {
+				if (key.attachment() instanceof Connection) {
+					((Connection) key.attachment()).close();
+				}
+			}
+		} catch (IOException ex) {
+			if (running) {
+				log.accept("Error in NioServer: " + ex.getMessage() + '\n');
+			}
+		}
+	}
+
+	private void accept(ServerSocketChannel serverChannel, Selector sel) {
+		try {
+			SocketChannel channel = serverChannel.accept();
+			if (channel == null) {
+				return;
+			}
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			Connection c = new Connection(channel);
+			c.key = channel.register(sel, SelectionKey.OP_READ, c);
+			log.accept("Client Connected: " + channel.getRemoteAddress() + '\n');
+
+			// Leave further Clients in the backlog until a session closes
+			if (++openConnections >= maxSessions) {
+				acceptKey.interestOps(0);
+			}
+		} catch (IOException e) {
+			log.accept("Error accepting Client: " + e.getMessage() + '\n');
+		}
+	}
+
+	private void runOnSelector(Runnable task) {
+		selectorTasks.add(task);
+		Selector s = selector;
+		if (s != null) {
+			s.wakeup();
+		}
+	}
+
+	/** State of one Client connection. Everything except the output queue is only touched on the selector thread. */
+	private final class Connection {
+
+		final SocketChannel channel;
+		SelectionKey key;
+		final SessionProtocol protocol = new SessionProtocol(log);
+
+		// Binary Clients are recognised by the first byte they send
+		boolean modeKnown;
+		BinarySessionProtocol binary;
+		final byte[] handshake = new byte[FrameCodec.handshakeLength()];
+		int handshakeLength;
+		final FrameCodec.Decoder frames = new FrameCodec.Decoder();
+		final Deque<FrameCodec.Frame> requests = new ArrayDeque<FrameCodec.Frame>();
+
+		// Input side
+		final CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final byte[] leftover = new byte[16];
+		int leftoverLength;
+		final StringBuilder line = new StringBuilder();
+		boolean skipLineFeed;
+		final Deque<String> lines = new ArrayDeque<String>();
+		boolean endOfInput;
+
+		// Output side, filled by a worker and drained by the selector thread
+		final Queue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<ByteBuffer>();
+		final Semaphore credits = new Semaphore(MAX_QUEUED_BUFFERS);
+
+		boolean busy;
+		volatile boolean closed;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/** Reads whatever is available, splits it into lines and feeds complete lines to the protocol. */
+		void read(ByteBuffer buffer, CharBuffer chars) throws IOException {
+			// Start with the bytes of a character split across the previous read
+			buffer.clear();
+			buffer.put(leftover, 0, leftoverLength);
+			leftoverLength = 0;
+
+			int n = channel.read(buffer);
+			if (n < 0) {
+				// A trailing line without terminator still counts (as with BufferedReader.readLine())
+				if (line.length() > 0) {
+					endLine();
+				}
+				endOfInput = true;
+				processLines();
+				return;
+			}
+
+			buffer.flip();
+			if (!modeKnown && buffer.hasRemaining()) {
+				modeKnown = true;
+				if (FrameCodec.isHandshake(buffer.get(0))) {
+					binary = new BinarySessionProtocol(log);
+				}
+			}
+			if (binary != null) {
+				readFrames(buffer);
+				return;
+			}
+
+			CoderResult result;
+			do {
+				chars.clear();
+				result = decoder.decode(buffer, chars, false);
+				chars.flip();
+				consume(chars);
+			} while (result.isOverflow());
+
+			// Keep an incomplete multi-byte character for the next read
+			leftoverLength = buffer.remaining();
+			buffer.get(leftover, 0, leftoverLength);
+
+			processLines();
+		}
+
+		/** Completes the handshake and queues the frames found in newly read bytes. */
+		private void readFrames(ByteBuffer buffer) throws IOException {
+			if (handshakeLength < handshake.length) {
+				int n = Math.min(handshake.length - handshakeLength, buffer.remaining());
+				buffer.get(handshake, handshakeLength, n);
+				handshakeLength += n;
+				if (handshakeLength < handshake.length) {
+					return;
+				}
+				// Answer with the version both sides speak
+				int version = FrameCodec.negotiate(handshake);
+				if (version < 0) {
+					throw new IOException("Malformed handshake");
+				}
+				sendNow(FrameCodec.handshake(version));
+			}
+			frames.feed(buffer);
+			FrameCodec.Frame frame;
+			while ((frame = frames.next()) != null) {
+				requests.add(frame);
+			}
+			processLines();
+		}
+
+		private void consume(CharBuffer chars) throws IOException {
+			while (chars.hasRemaining()) {
+				char ch = chars.get();
+				if (ch == '\n' && skipLineFeed) {
+					// Second half of \r\n
+					skipLineFeed = false;
+				} else if (ch == '\n' || ch == '\r') {
+					endLine();
+					skipLineFeed = ch == '\r';
+				} else {
+					skipLineFeed = false;
+					if (line.length() >= MAX_LINE_LENGTH) {
+						throw new IOException("Request line longer than " + MAX_LINE_LENGTH + " characters");
+					}
+					line.append(ch);
+				}
+			}
+		}
+
+		private void endLine() {
+			lines.add(line.toString());
+			line.setLength(0);
+		}
+
+		/** Feeds queued lines (or frames) to the protocol and hands the job to a worker once a request is complete. */
+		void processLines() {
+			if (binary != null) {
+				while (!busy && !binary.isClosed() && !requests.isEmpty()) {
+					if (binary.onFrame(requests.poll())) {
+						startBinaryWorker();
+					}
+				}
+			} else {
+				while (!busy && !protocol.isClosed() && !lines.isEmpty()) {
+					if (protocol.onLine(lines.poll())) {
+						startWorker();
+					}
+				}
+			}
+			updateInterest();
+		}
+
+		boolean isDone() {
+			return binary != null ? binary.isClosed() : protocol.isClosed();
+		}
+
+		private void startWorker() {
+			busy = true;
+			workers.execute(() -> {
+				ChannelWriter out = new ChannelWriter(this);
+				try {
+					protocol.respond(out);
+					out.close();
+				} catch (IOException e) {
+					log.accept("\nError sending results: " + e.getMessage());
+					protocol.close();
+				} catch (RuntimeException e) {
+					log.accept("\nError in scrape job: " + e.getMessage());
+					e.printStackTrace();
+					protocol.close();
+				} finally {
+					out.discard();
+					runOnSelector(() -> {
+						busy = false;
+						processLines();
+					});
+				}
+			});
+		}
+
+		private void startBinaryWorker() {
+			busy = true;
+			workers.execute(() -> {
+				ChannelOutputStream out = new ChannelOutputStream(this);
+				try {
+					binary.respond(out);
+					out.flush();
+				} catch (IOException e) {
+					log.accept("\nError sending results: " + e.getMessage());
+					binary.close();
+				} catch (RuntimeException e) {
+					log.accept("\nError in scrape job: " + e.getMessage());
+					e.printStackTrace();
+					binary.close();
+				} finally {
+					out.discard();
+					runOnSelector(() -> {
+						busy = false;
+						processLines();
+					});
+				}
+			});
+		}
+
+		/** Chooses what the selector should wait for next (or closes the connection when it is done). */
+		void updateInterest() {
+			if (closed || !key.isValid()) {
+				return;
+			}
+			if (!outgoing.isEmpty()) {
+				key.interestOps(SelectionKey.OP_WRITE);
+			} else if (busy) {
+				key.interestOps(0);
+			} else if (isDone() || endOfInput) {
+				close();
+			} else {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		/** Writes queued output buffers until the socket would block. */
+		void write() throws IOException {
+			ByteBuffer head;
+			while ((head = outgoing.peek()) != null) {
+				channel.write(head);
+				if (head.hasRemaining()) {
+					// Socket send buffer is full; wait for the next OP_WRITE
+					return;
+				}
+				outgoing.poll();
+				buffers.release(head);
+				credits.release();
+			}
+			updateInterest();
+		}
+
+		/** Queues a few bytes straight from the selector thread (e.g. the handshake reply), before any worker output. */
+		void sendNow(byte[] bytes) throws IOException {
+			if (!credits.tryAcquire()) {
+				throw new IOException("Output queue is full");
+			}
+			ByteBuffer buffer = buffers.acquire();
+			buffer.put(bytes).flip();
+			outgoing.add(buffer);
+		}
+
+		/** Queues a filled buffer for the selector thread to write. Called by the worker. */
+		void enqueue(ByteBuffer buffer) throws IOException {
+			try {
+				// Wait while this Client already has MAX_QUEUED_BUFFERS waiting to be written
+				credits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				buffers.release(buffer);
+				throw new InterruptedIOException("Interrupted while waiting for the Client to read");
+			}
+			if (closed) {
+				buffers.release(buffer);
+				throw new IOException("Connection closed");
+			}
+			outgoing.add(buffer);
+			runOnSelector(this::updateInterest);
+		}
+
+		void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			protocol.close();
+			if (binary != null) {
+				binary.close();
+			}
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				System.out.println("Error closing Client channel: " + e.getMessage());
+			}
+			ByteBuffer buffer;
+			while ((buffer = outgoing.poll()) != null) {
+				buffers.release(buffer);
+			}
+			// Wake a worker waiting for output credits
+			credits.release(MAX_QUEUED_BUFFERS);
+
+			// Accept again once below the limit
+			if (openConnections-- >= maxSessions && acceptKey.isValid()) {
+				acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+			}
+		}
+
+	}
+
+	/** Writer used by a worker thread: encodes text into pooled direct buffers and queues them on the connection. */
+	private final class ChannelWriter extends Writer {
+
+		private final Connection connection;
+		private final CharsetEncoder encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private ByteBuffer current;
+
+		// High surrogate left over from the previous write() call
+		private char pendingHigh;
+		private boolean hasPendingHigh;
+
+		ChannelWriter(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			encode(CharBuffer.wrap(cbuf, off, len), false);
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			encode(CharBuffer.wrap(str, off, off + len), false);
+		}
+
+		private void encode(CharBuffer in, boolean endOfInput) throws IOException {
+			if (hasPendingHigh) {
+				hasPendingHigh = false;
+				CharBuffer joined = CharBuffer.allocate(in.remaining() + 1);
+				joined.put(pendingHigh).put(in).flip();
+				in = joined;
+			}
+			while (true) {
+				if (current == null) {
+					current = buffers.acquire();
+				}
+				CoderResult result = encoder.encode(in, current, endOfInput);
+				if (result.isOverflow()) {
+					submit();
+					continue;
+				}
+				break;
+			}
+			// Only a lone high surrogate can be left unencoded
+			if (in.hasRemaining()) {
+				pendingHigh = in.get();
+				hasPendingHigh = true;
+			}
+		}
+
+		private void submit() throws IOException {
+			ByteBuffer full = current;
+			current = null;
+			full.flip();
+			connection.enqueue(full);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (current != null && current.position() > 0) {
+				submit();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			encode(CharBuffer.allocate(0), true);
+			if (current == null) {
+				current = buffers.acquire();
+			}
+			encoder.flush(current);
+			flush();
+		}
+
+		/** Returns an unsent buffer to the pool after a failure. */
+		void discard() {
+			if (current != null) {
+				buffers.release(current);
+				current = null;
+			}
+		}
+
+	}
+
+	/** OutputStream used by a worker thread for binary Clients: copies bytes into pooled direct buffers and queues them on the connection. */
+	private final class ChannelOutputStream extends OutputStream {
+
+		private final Connection connection;
+		private ByteBuffer current;
+
+		ChannelOutputStream(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (current == null) {
+				current = buffers.acquire();
+			}
+			current.put((byte) b);
+			if (!current.hasRemaining()) {
+				submit();
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (current == null) {
+					current = buffers.acquire();
+				}
+				int n = Math.min(len, current.remaining());
+				current.put(b, off, n);
+				off += n;
+				len -= n;
+				if (!current.hasRemaining()) {
+					submit();
+				}
+			}
+		}
+
+		private void submit() throws IOException {
+			ByteBuffer full = current;
+			current = null;
+			full.flip();
+			connection.enqueue(full);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (current != null && current.position() > 0) {
+				submit();
+			}
+		}
+
+		/** Returns an unsent buffer to the pool after a failure. */
+		void discard() {
+			if (current != null) {
+				buffers.release(current);
+				current = null;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,330 @@
+package application;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** The PageFetcher downloads pages with one shared java.net.http.HttpClient, so connections (and HTTP/2 sessions)
+ *  to a host are reused across jobs. Every request asks for gzip, has a connect timeout and a timeout for the
+ *  response headers, and the whole body must arrive within a deadline, so a slow origin cannot pin a worker thread.
+ *  The body is handed out as a stream which is decompressed as it arrives.
+ *  @author derekdileo */
+public class PageFetcher {
+
+	// Shared fetcher configured from wordfreq.fetch.*
+	private static PageFetcher defaultFetcher;
+
+	// Closes bodies whose deadline has passed
+	private static final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+		Thread t = new Thread(r, "page-fetcher-deadlines");
+		t.setDaemon(true);
+		return t;
+	});
+	static {
+		// A body closed in time cancels its deadline, which would otherwise keep the stream reachable until it fired
+		deadlines.setRemoveOnCancelPolicy(true);
+	}
+
+	private final HttpClient client;
+	private final Duration requestTimeout;
+	private final long deadlineMillis;
+
+	// Totals since the server started
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder bytesTransferred = new LongAdder();
+	private final LongAdder headerNanos = new LongAdder();
+
+	/** Constructor
+	 *  @param connectTimeout is how long to wait for a connection to the origin
+	 *  @param requestTimeout is how long to wait for the response headers
+	 *  @param deadlineMillis is how long the whole response (headers and body) may take */
+	public PageFetcher(Duration connectTimeout, Duration requestTimeout, long deadlineMillis) {
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(connectTimeout)
+				.build();
+		this.requestTimeout = requestTimeout;
+		this.deadlineMillis = deadlineMillis;
+	}
+
+	/** Method returns the fetcher configured with wordfreq.fetch.connectTimeoutMillis (default 5000),
+	 *  wordfreq.fetch.requestTimeoutMillis (default 10000) and wordfreq.fetch.deadlineMillis (default 60000).
+	 *  @return the shared PageFetcher */
+	public static synchronized PageFetcher getDefault() {
+		if (defaultFetcher == null) {
+			defaultFetcher = new PageFetcher(
+					Duration.ofMillis(Settings.getLong("fetch.connectTimeoutMillis", 5000)),
+					Duration.ofMillis(Settings.getLong("fetch.requestTimeoutMillis", 10000)),
+					Settings.getLong("fetch.deadlineMillis", 60000));
+		}
+		return defaultFetcher;
+	}
+
+	/** Method sends a GET request and returns as soon as the response headers have arrived.
+	 *  @param uri is the page to fetch
+	 *  @param headers are extra request headers (e.g. conditional GET validators)
+	 *  @return Response whose body must be closed by the caller
+	 *  @throws IOException if the request fails or times out */
+	public Response get(URI uri, Map<String, String> headers) throws IOException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+				.timeout(requestTimeout)
+				.header("Accept-Encoding", "gzip, deflate");
+		// HTTP/2 is negotiated over TLS; plain http stays on HTTP/1.1 keep-alive instead of attempting an h2c upgrade
+		if ("http".equalsIgnoreCase(uri.getScheme())) {
+			request.version(HttpClient.Version.HTTP_1_1);
+		}
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			request.header(header.getKey(), header.getValue());
+		}
+
+		long start = System.nanoTime();
+		HttpResponse<InputStream> response;
+		try {
+			response = client.send(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while fetching " + uri);
+		}
+		long headersAfter = System.nanoTime() - start;
+		requests.increment();
+		headerNanos.add(headersAfter);
+		return new Response(response, start, headersAfter);
+	}
+
+	/** Method returns the number of requests sent since the server started.
+	 *  @return request count */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/** Method returns the bytes received on the wire (before decompression) since the server started.
+	 *  @return bytes transferred */
+	public long getBytesTransferred() {
+		return bytesTransferred.sum();
+	}
+
+	/** Method returns the average time until the response headers arrived.
+	 *  @return average header latency in nanoseconds */
+	public long getAverageHeaderNanos() {
+		long n = requests.sum();
+		return n == 0 ? 0 : headerNanos.sum() / n;
+	}
+
+	/** A Response is the status and headers of a fetched page and its body, decompressed as it is read. */
+	public final class Response implements Closeable {
+
+		private final HttpResponse<InputStream> response;
+		private final long start;
+		private final long headerNanos;
+		private final WireInputStream wire;
+		private InputStream body;
+
+		Response(HttpResponse<InputStream> response, long start, long headerNanos) {
+			this.response = response;
+			this.start = start;
+			this.headerNanos = headerNanos;
+			this.wire = new WireInputStream(response.body(), Math.max(0, deadlineMillis - TimeUnit.NANOSECONDS.toMillis(headerNanos)));
+		}
+
+		public int getStatusCode() {
+			return response.statusCode();
+		}
+
+		/** Method returns a response header.
+		 *  @param name is the header name (any case)
+		 *  @return the first value, or null if the header is missing */
+		public String getHeader(String name) {
+			return response.headers().firstValue(name).orElse(null);
+		}
+
+		/** Method returns the announced length of the body as sent (compressed if the origin compressed it).
+		 *  @return Content-Length, or -1 if unknown */
+		public long getContentLength() {
+			return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+		}
+
+		/** Method returns the decompressed body. Closing it before the end aborts the download.
+		 *  @return body stream
+		 *  @throws IOException if the compressed body has a malformed header */
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				// Decompress on the fly (a 304 has no body, so this is only done when asked for)
+				String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase();
+				if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+					body = new DecodedInputStream(new GZIPInputStream(wire, 8192), wire);
+				} else if (encoding.equals("deflate")) {
+					body = new DecodedInputStream(new InflaterInputStream(wire, new Inflater(), 8192), wire);
+				} else {
+					body = wire;
+				}
+			}
+			return body;
+		}
+
+		/** Method returns the bytes received so far, before decompression.
+		 *  @return bytes transferred */
+		public long getBytesTransferred() {
+			return wire.count;
+		}
+
+		/** Method returns the time from sending the request until the headers arrived.
+		 *  @return header latency in nanoseconds */
+		public long getHeaderNanos() {
+			return headerNanos;
+		}
+
+		/** Method returns the time since the request was sent.
+		 *  @return elapsed nanoseconds */
+		public long getElapsedNanos() {
+			return System.nanoTime() - start;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (body != null) {
+				body.close();
+			}
+			wire.close();
+		}
+
+	}
+
+	/** A decompressing stream which, once it has reached the end, also reads what is left of the wire stream
+	 *  (e.g. the last chunk marker) on close, so the connection goes back to the pool instead of being aborted. */
+	private static final class DecodedInputStream extends FilterInputStream {
+
+		private final InputStream wire;
+		private boolean ended;
+		private boolean closed;
+
+		DecodedInputStream(InputStream decoded, InputStream wire) {
+			super(decoded);
+			this.wire = wire;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			ended |= b < 0;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			ended |= n < 0;
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				if (ended) {
+					byte[] rest = new byte[512];
+					for (int i = 0; i < 16 && wire.read(rest) >= 0; i++) {
+						// Only trailing framing is expected here
+					}
+				}
+			} finally {
+				super.close();
+			}
+		}
+
+	}
+
+	/** Counts the bytes received and fails reads once the deadline of the response has passed. */
+	private final class WireInputStream extends FilterInputStream {
+
+		private final ScheduledFuture<?> deadline;
+		private final long allowedMillis;
+		private volatile boolean expired;
+		private long count;
+		private boolean closed;
+
+		WireInputStream(InputStream in, long allowedMillis) {
+			super(in);
+			this.allowedMillis = allowedMillis;
+			// Closing the body unblocks a read waiting on a stalled origin
+			this.deadline = deadlines.schedule(() -> {
+				expired = true;
+				try {
+					in.close();
+				} catch (IOException e) {
+					System.out.println("Error aborting slow download: " + e.getMessage());
+				}
+			}, allowedMillis, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkDeadline();
+			int b;
+			try {
+				b = super.read();
+			} catch (IOException e) {
+				checkDeadline();
+				throw e;
+			}
+			if (b >= 0) {
+				count++;
+				bytesTransferred.increment();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkDeadline();
+			int n;
+			try {
+				n = super.read(b, off, len);
+			} catch (IOException e) {
+				checkDeadline();
+				throw e;
+			}
+			if (n > 0) {
+				count += n;
+				bytesTransferred.add(n);
+			}
+			return n;
+		}
+
+		private void checkDeadline() throws HttpTimeoutException {
+			if (expired) {
+				throw new HttpTimeoutException("Download did not complete within " + allowedMillis + "ms");
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				deadline.cancel(false);
+				super.close();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,154 @@
+package application;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** ParallelWordCount counts the words of a large captured text on a ForkJoinPool. The text is split in half
+ *  (recursively) at a separator character outside any HTML tag, each chunk is tokenized into its own WordCounter, and 
+ *  the counters are merged on the way back up. Because a split never falls inside a word or a tag, the counts 
+ *  are exactly the same as counting the whole text serially.
+ *  Settings: wordfreq.count.mode (serial or parallel), wordfreq.count.parallelThreshold (characters below which
+ *  the serial path is used) and wordfreq.count.chunkSize (characters counted by a single task).
+ *  @author derekdileo */
+public class ParallelWordCount {
+
+	private ParallelWordCount() {
+	}
+
+	/** Method reports whether parallel counting was selected with wordfreq.count.mode=parallel.
+	 *  @return true in parallel mode */
+	public static boolean isEnabled() {
+		return "parallel".equalsIgnoreCase(Settings.getString("count.mode", "serial"));
+	}
+
+	/** Method counts the words of a captured text, in parallel when it is at least 
+	 *  wordfreq.count.parallelThreshold characters long and serially otherwise.
+	 *  @param text is the captured text (tags still in place)
+	 *  @return WordCounter with every word and its occurrences */
+	public static WordCounter count(CharSequence text) {
+		if (text.length() < Settings.getInt("count.parallelThreshold", 1 << 20)) {
+			return countSerial(text);
+		}
+		return count(text, Settings.getInt("count.chunkSize", 1 << 18), ForkJoinPool.commonPool());
+	}
+
+	/** Method counts the words of a text on the given pool.
+	 *  @param text is the captured text (tags still in place)
+	 *  @param chunkSize is the number of characters below which a task stops splitting
+	 *  @param pool is the ForkJoinPool which runs the tasks
+	 *  @return WordCounter with every word and its occurrences */
+	public static WordCounter count(CharSequence text, int chunkSize, ForkJoinPool pool) {
+		return pool.invoke(new CountTask(text, 0, text.length(), Math.max(chunkSize, 1)));
+	}
+
+	/** Method counts the words of a text on the calling thread.
+	 *  @param text is the captured text (tags still in place)
+	 *  @return WordCounter with every word and its occurrences */
+	public static WordCounter countSerial(CharSequence text) {
+		return countRange(text, 0, text.length());
+	}
+
+	private static WordCounter countRange(CharSequence text, int start, int end) {
+		WordCounter counts = new WordCounter();
+		WordTokenizer tokenizer = new WordTokenizer(WebScrape.counterSink(counts));
+		tokenizer.feed(text, start, end);
+		tokenizer.finish();
+		return counts;
+	}
+
+	/** Method finds a position near middle where the text can be cut without changing the words: the character there
+	 *  separates words and is not inside a tag (every '<' before it within the range is closed before it).
+	 *  @return the split position, or -1 if the range has no safe split point */
+	static int findSplit(CharSequence text, int start, int end, int middle) {
+		int p = middle;
+		while (p < end) {
+			char c = text.charAt(p);
+			if (c == '<') {
+				// Skip the whole tag (an unclosed '<' cannot be split safely)
+				p = indexOf(text, '>', p + 1, end);
+				if (p < 0) {
+					return -1;
+				}
+				p++;
+				continue;
+			}
+			if (isSeparator(c) && !insideTag(text, start, p)) {
+				return p;
+			}
+			p++;
+		}
+		return -1;
+	}
+
+	// ASCII characters which always end a word (tags are handled separately)
+	private static boolean isSeparator(char c) {
+		return c < 0x80 && c != '<' && c != '>' && !(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z');
+	}
+
+	// A position is inside a tag when the nearest angle bracket to its left (within the range) is '<'
+	private static boolean insideTag(CharSequence text, int start, int p) {
+		for (int i = p - 1; i >= start; i--) {
+			char c = text.charAt(i);
+			if (c == '>') {
+				return false;
+			}
+			if (c == '<') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int indexOf(CharSequence text, char target, int from, int end) {
+		for (int i = from; i < end; i++) {
+			if (text.charAt(i) == target) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** Counts one range of the text, splitting it in two while it is larger than chunkSize. */
+	private static final class CountTask extends RecursiveTask<WordCounter> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CharSequence text;
+		private final int start;
+		private final int end;
+		private final int chunkSize;
+
+		CountTask(CharSequence text, int start, int end, int chunkSize) {
+			this.text = text;
+			this.start = start;
+			this.end = end;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected WordCounter compute() {
+			if (end - start <= chunkSize) {
+				return countRange(text, start, end);
+			}
+			int split = findSplit(text, start, end, start + (end - start) / 2);
+			if (split < 0) {
+				return countRange(text, start, end);
+			}
+
+			// Count the left half on another thread while this one counts the right half
+			CountTask left = new CountTask(text, start, split, chunkSize);
+			left.fork();
+			WordCounter right = new CountTask(text, split, end, chunkSize).compute();
+			return merge(left.join(), right);
+		}
+
+		private static WordCounter merge(WordCounter a, WordCounter b) {
+			// Fold the smaller counter into the larger one
+			WordCounter into = a.size() >= b.size() ? a : b;
+			into.merge(into == a ? b : a);
+			return into;
+		}
+
+	}
+
+}
@@ -0,0 +1,20 @@
+package application;
+
+import java.util.List;
+
+/** RankedWords gives page-sized access to the results of a job in ranking order (highest frequency first), 
+ *  so results can be streamed to the Client a page at a time instead of as one String holding every word.
+ *  @author derekdileo */
+public interface RankedWords {
+
+	/** Method returns the number of ranked words.
+	 *  @return distinct word count */
+	int size();
+
+	/** Method returns a slice of the ranking.
+	 *  @param from is the 0-based rank of the first word
+	 *  @param count is the maximum number of words wanted
+	 *  @return up to count words starting at rank from (empty past the end) */
+	List<Word> get(int from, int count);
+
+}
@@ -0,0 +1,198 @@
+package application;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** The ResultCache memoizes finished JobResults, keyed by a hash of the URL, the head and end markers and the
+ *  validator (ETag or Last-Modified) of the page, so a Client repeating a request gets its results back without
+ *  the page being fetched, tokenized, counted and written to the database again.
+ *  Entries expire after a TTL and the cache is bounded by an estimate of the memory its results hold,
+ *  evicting the least recently used results first.
+ *  @author derekdileo */
+public class ResultCache {
+
+	// Shared cache configured from wordfreq.results.cache.* (null when disabled)
+	private static ResultCache defaultCache;
+	private static boolean defaultLoaded;
+
+	// Rough cost of one ranked word: Word, String and array headers plus the list and counter slots
+	private static final int BYTES_PER_WORD = 96;
+
+	private final long ttlNanos;
+	private final long maxBytes;
+
+	// key -> entry, least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+	private long totalBytes;
+
+	// Statistics
+	private long hits;
+	private long misses;
+	private long expirations;
+	private long evictions;
+
+	/** Constructor
+	 *  @param ttlMillis is how long a result may be served after it was computed
+	 *  @param maxBytes is the most memory (estimated) the cached results may hold */
+	public ResultCache(long ttlMillis, long maxBytes) {
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.maxBytes = maxBytes;
+	}
+
+	/** Method returns the cache configured with wordfreq.results.cache.enabled (default true),
+	 *  wordfreq.results.cache.ttlSeconds (default 300) and wordfreq.results.cache.maxBytes (default 64MB).
+	 *  @return the shared ResultCache, or null if it is disabled */
+	public static synchronized ResultCache getDefault() {
+		if (!defaultLoaded) {
+			defaultLoaded = true;
+			if (Settings.getBoolean("results.cache.enabled", true)) {
+				defaultCache = new ResultCache(TimeUnit.SECONDS.toMillis(Settings.getLong("results.cache.ttlSeconds", 300)),
+						Settings.getLong("results.cache.maxBytes", 64L * 1024 * 1024));
+			}
+		}
+		return defaultCache;
+	}
+
+	/** Method builds the cache key of a request.
+	 *  @param website is the URL of the page
+	 *  @param sourceHead is the first line of text to be processed
+	 *  @param sourceEnd is the last line of text to be processed
+	 *  @param validator is the ETag or Last-Modified date of the page (null if the page has none)
+	 *  @return hex SHA-256 of the four fields */
+	public static String key(String website, String sourceHead, String sourceEnd, String validator) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			for (String field : new String[] { website, sourceHead, sourceEnd, validator }) {
+				// Length prefix keeps ("ab", "c") and ("a", "bc") apart
+				String value = field == null ? "" : field;
+				md.update((value.length() + ":" + value).getBytes(StandardCharsets.UTF_8));
+			}
+			byte[] digest = md.digest();
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Method estimates the memory a result ranked from a WordCounter holds once all of its words have been read.
+	 *  @param counts holds every word and its frequency
+	 *  @return estimated bytes */
+	public static long estimateBytes(WordCounter counts) {
+		long bytes = 0;
+		WordCounter.Cursor cursor = counts.cursor();
+		while (cursor.next()) {
+			bytes += BYTES_PER_WORD + 2L * cursor.word().length();
+		}
+		return bytes;
+	}
+
+	/** Method returns a cached result.
+	 *  @param key is the key from key()
+	 *  @return JobResult, or null if nothing is cached under the key or the result has expired */
+	public synchronized JobResult get(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		if (System.nanoTime() - entry.created > ttlNanos) {
+			remove(key, entry);
+			expirations++;
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.result;
+	}
+
+	/** Method caches a result and evicts the least recently used results until the cache fits in maxBytes again.
+	 *  A result larger than the whole cache is not stored.
+	 *  @param key is the key from key()
+	 *  @param result is the finished JobResult
+	 *  @param bytes is the estimated memory held by the result */
+	public synchronized void put(String key, JobResult result, long bytes) {
+		if (bytes > maxBytes) {
+			return;
+		}
+		Entry old = entries.put(key, new Entry(result, bytes, System.nanoTime()));
+		if (old != null) {
+			totalBytes -= old.bytes;
+		}
+		totalBytes += bytes;
+
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && it.hasNext()) {
+			Entry eldest = it.next().getValue();
+			it.remove();
+			totalBytes -= eldest.bytes;
+			evictions++;
+		}
+	}
+
+	/** Method drops every cached result (e.g. after the words table has been reset). */
+	public synchronized void clear() {
+		entries.clear();
+		totalBytes = 0;
+	}
+
+	/** Method returns a snapshot of the hit/miss counters and the memory in use.
+	 *  @return Stats describing the cache at the time of the call */
+	public synchronized Stats getStats() {
+		return new Stats(hits, misses, expirations, evictions, entries.size(), totalBytes, maxBytes);
+	}
+
+	private void remove(String key, Entry entry) {
+		entries.remove(key);
+		totalBytes -= entry.bytes;
+	}
+
+	/** A cached result with its size estimate and the time it was computed. */
+	private static final class Entry {
+		final JobResult result;
+		final long bytes;
+		final long created;
+
+		Entry(JobResult result, long bytes, long created) {
+			this.result = result;
+			this.bytes = bytes;
+			this.created = created;
+		}
+	}
+
+	/** Snapshot of the ResultCache counters. */
+	public static final class Stats {
+		public final long hits;
+		public final long misses;
+		public final long expirations;
+		public final long evictions;
+		public final int entries;
+		public final long bytes;
+		public final long maxBytes;
+
+		Stats(long hits, long misses, long expirations, long evictions, int entries, long bytes, long maxBytes) {
+			this.hits = hits;
+			this.misses = misses;
+			this.expirations = expirations;
+			this.evictions = evictions;
+			this.entries = entries;
+			this.bytes = bytes;
+			this.maxBytes = maxBytes;
+		}
+
+		@Override
+		public String toString() {
+			return "ResultCache[hits=" + hits + ", misses=" + misses + ", expirations=" + expirations
+					+ ", evictions=" + evictions + ", entries=" + entries + ", bytes=" + bytes + "/" + maxBytes + "]";
+		}
+	}
+
+}
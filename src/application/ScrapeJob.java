@@ -0,0 +1,209 @@
+package application;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/** A ScrapeJob runs the whole pipeline for one client request: scrape the site, push the words to the 
+ *  database and format the results. Each job owns its own state so sessions cannot clobber each other.
+ *  @author derekdileo */
+public class ScrapeJob {
+
+	// "database" ranks the stored words, "memory" (default) ranks this job's own counts
+	private static final boolean RESULTS_FROM_DATABASE = "database".equalsIgnoreCase(Settings.getString("results.source", "memory"));
+
+	// "job" stores each job's words in its own JobStore namespace, "shared" adds them to the one WordStore
+	private static final boolean JOB_SCOPE = jobScope();
+
+	// Whether jobs crawl from the Client's URL (binary Clients can also ask per request with FrameCodec.FLAG_CRAWL)
+	private static final boolean CRAWL_BY_DEFAULT = Settings.getBoolean("crawl.enabled", false);
+
+	// User-entered values sent by the Client
+	private final String website;
+	private final String sourceHead;
+	private final String sourceEnd;
+	private final boolean crawl;
+
+	// How the page was fetched (set once the page has been read)
+	private volatile FetchStats fetchStats;
+	private volatile boolean cacheHit;
+	private volatile SiteCrawler.Result crawlResult;
+
+	/** Constructor
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed
+	 *  @param sourceEnd is the last line of text to be processed */
+	public ScrapeJob(String website, String sourceHead, String sourceEnd) {
+		this(website, sourceHead, sourceEnd, CRAWL_BY_DEFAULT);
+	}
+
+	/** Constructor
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed
+	 *  @param sourceEnd is the last line of text to be processed
+	 *  @param crawl counts every same-site page reached from website with SiteCrawler instead of website alone */
+	public ScrapeJob(String website, String sourceHead, String sourceEnd, boolean crawl) {
+		this.website = website;
+		this.sourceHead = sourceHead;
+		this.sourceEnd = sourceEnd;
+		this.crawl = crawl;
+	}
+
+	/** Method scrapes the site, stores every word (in this job's JobStore namespace or the shared WordStore) and 
+	 *  builds the result Strings.
+	 *  Only the top ten is formatted here; all results are streamed from the ranking when they are requested.
+	 *  A request repeated while the page is unchanged is answered from the ResultCache without doing any of this.
+	 *  Every stage is timed in ServerMetrics.
+	 *  @return JobResult with the top ten and all results Strings */
+	public JobResult run() {
+		long start = System.nanoTime();
+		JobResult result = null;
+		try {
+			result = runStages();
+			return result;
+		} finally {
+			ServerMetrics.recordSince(ServerMetrics.Stage.JOB, start);
+			ServerMetrics.jobFinished(result != null);
+		}
+	}
+
+	// Runs each stage of the job and records how long it took
+	private JobResult runStages() {
+		// Rankings read from the shared words table change with every job, so only per-job results are memoized.
+		// A crawl's result depends on pages other than the one the key is validated against, so it is not memoized either.
+		ResultCache cache = RESULTS_FROM_DATABASE || crawl ? null : ResultCache.getDefault();
+		if (cache != null) {
+			JobResult cached = cache.get(ResultCache.key(website, sourceHead, sourceEnd, validator()));
+			if (cached != null) {
+				cacheHit = true;
+				ServerMetrics.cacheHit();
+				return cached;
+			}
+		}
+
+		// Count every word on the page (or on every page of the crawl) as it is streamed
+		long stage = System.nanoTime();
+		LongAdder bytes = new LongAdder();
+		Consumer<FetchStats> fetchListener = stats -> {
+			// A crawl fetches its start page on its own before any other
+			if (fetchStats == null) {
+				fetchStats = stats;
+			}
+			if (stats.getHeaderNanos() > 0) {
+				ServerMetrics.record(ServerMetrics.Stage.FETCH, stats.getHeaderNanos());
+			}
+			bytes.add(stats.getBytesTransferred());
+		};
+		WordCounter counts = crawl ? crawlSite(fetchListener) : WebScrape.countSite(website, sourceHead, sourceEnd, fetchListener);
+		ServerMetrics.recordSince(ServerMetrics.Stage.SCRAPE, stage);
+		if (counts == null) {
+			return null;
+		}
+		ServerMetrics.pageCounted(bytes.sum(), counts.total(), counts.size());
+		
+		// Store the counts under this job's own id, or add them to the shared word store (MySQL or in-process)
+		JobStore jobs = JOB_SCOPE ? JobStore.getDefault() : null;
+		WordStore store = JOB_SCOPE ? null : WordStore.getDefault();
+		long jobId = -1;
+		stage = System.nanoTime();
+		if (jobs != null) {
+			jobId = jobs.begin(website);
+			if (jobId >= 0) {
+				jobs.merge(jobId, counts);
+			}
+		} else {
+			store.merge(counts);
+		}
+		ServerMetrics.recordSince(ServerMetrics.Stage.DATABASE, stage);
+		
+		// Top ten comes from a bounded heap (or an indexed LIMIT query); other words are read a page at a time when asked for
+		stage = System.nanoTime();
+		JobResult result;
+		try {
+			if (RESULTS_FROM_DATABASE && jobId >= 0) {
+				result = new JobResult(jobs.top(jobId, 10), jobs.ranked(jobId));
+			} else if (RESULTS_FROM_DATABASE && store != null) {
+				result = new JobResult(store.top(10), store.ranked());
+			} else {
+				result = new JobResult(TopWords.select(counts, 10), TopWords.ranked(counts));
+			}
+		} catch (IllegalStateException e) {
+			// A write-behind store could not write the counts, so its results would leave them out
+			System.out.println("Error reading results for " + website + ": " + e.getMessage());
+			return null;
+		}
+		ServerMetrics.recordSince(ServerMetrics.Stage.RANK, stage);
+		if (cache != null) {
+			// Keyed by the validator the page was just fetched with
+			cache.put(ResultCache.key(website, sourceHead, sourceEnd, validator()), result, ResultCache.estimateBytes(counts));
+		}
+		return result;
+	}
+
+	/** Method reports whether jobs store their words in their own JobStore namespace (wordfreq.store.scope=job)
+	 *  rather than in the shared WordStore (wordfreq.store.scope=shared). The default is job for wordfreq.store=mysql
+	 *  and shared for memory and index, so the store that was asked for is the one which holds the counts.
+	 *  @return true if each job has its own namespace */
+	public static boolean isJobScoped() {
+		return JOB_SCOPE;
+	}
+
+	private static boolean jobScope() {
+		String store = Settings.getString("store", "mysql");
+		boolean mysql = "mysql".equalsIgnoreCase(store);
+		boolean job = !"shared".equalsIgnoreCase(Settings.getString("store.scope", mysql ? "job" : "shared"));
+		if (job && !mysql) {
+			// Only MySQL has job namespaces, every other store keeps them in a MemoryJobStore
+			System.out.println("wordfreq.store.scope=job keeps jobs in memory, wordfreq.store=" + store + " is not used");
+		}
+		return job;
+	}
+
+	// Counts every page reached from the website (null if the start page could not be read)
+	private WordCounter crawlSite(Consumer<FetchStats> fetchListener) {
+		try {
+			crawlResult = SiteCrawler.getDefault().crawl(website, sourceHead, sourceEnd, fetchListener);
+			return crawlResult == null ? null : crawlResult.counts;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	// ETag or Last-Modified of the copy of the page in the FetchCache (null if it is not cached)
+	private String validator() {
+		FetchCache pages = FetchCache.getDefault();
+		return pages == null ? null : pages.getValidator(website);
+	}
+
+	// Getters
+	public String getWebsite() {
+		return website;
+	}
+
+	public String getSourceHead() {
+		return sourceHead;
+	}
+
+	public String getSourceEnd() {
+		return sourceEnd;
+	}
+
+	/** Method reports whether run() returned a memoized result.
+	 *  @return true if the result came from the ResultCache */
+	public boolean isCacheHit() {
+		return cacheHit;
+	}
+
+	/** Method returns the pages counted by a crawl.
+	 *  @return SiteCrawler.Result, or null if the job did not crawl (or the crawl failed) */
+	public SiteCrawler.Result getCrawlResult() {
+		return crawlResult;
+	}
+
+	/** Method returns the fetch latency and bytes transferred for this job's page.
+	 *  @return FetchStats, or null if the page has not been fetched (or could not be opened) */
+	public FetchStats getFetchStats() {
+		return fetchStats;
+	}
+
+}
@@ -0,0 +1,361 @@
+package application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+
+/** ServerMetrics collects the counters and per-stage latency histograms of the job pipeline (see Stage) and
+ *  publishes them as MXBeans under application:type=ServerMetrics and as plain text (Prometheus exposition format)
+ *  on http://127.0.0.1:(wordfreq.metrics.port)/metrics, so a slow job can be traced to the stage it spent its time in.
+ *  Settings: wordfreq.metrics.port (default 9100, 0 to disable the endpoint) and wordfreq.metrics.jmx (default true).
+ *  @author derekdileo */
+public final class ServerMetrics {
+
+	/** Stages of a job, in the order they run. */
+	public enum Stage {
+		/** Time a job waited in the JobQueue for a worker. */
+		QUEUE,
+		/** Time until the response headers of the page arrived (network fetches and revalidations only). */
+		FETCH,
+		/** Downloading, stripping tags, tokenizing and counting the page (these are streamed together). */
+		SCRAPE,
+		/** Storing the counts (only logging and buffering them when the store is behind a WriteBehindBuffer). */
+		DATABASE,
+		/** Selecting the top ten and formatting it. */
+		RANK,
+		/** Writing results to the Client (top ten, pages or all results). */
+		RESPOND,
+		/** The whole ScrapeJob, including result cache hits. */
+		JOB;
+
+		/** Method returns the lowercase name used in metric names.
+		 *  @return e.g. "fetch" */
+		public String label() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	private static final Map<Stage, LatencyHistogram> stages = new EnumMap<Stage, LatencyHistogram>(Stage.class);
+	static {
+		for (Stage stage : Stage.values()) {
+			stages.put(stage, new LatencyHistogram());
+		}
+	}
+
+	// Counters since the server started
+	private static final LongAdder jobs = new LongAdder();
+	private static final LongAdder failedJobs = new LongAdder();
+	private static final LongAdder rejectedJobs = new LongAdder();
+	private static final LongAdder cacheHits = new LongAdder();
+	private static final LongAdder bytesFetched = new LongAdder();
+	private static final LongAdder tokens = new LongAdder();
+	private static final LongAdder distinctWords = new LongAdder();
+	private static final LongAdder dbRoundTrips = new LongAdder();
+
+	private static HttpServer endpoint;
+	private static boolean registered;
+
+	private ServerMetrics() {
+	}
+
+	/** Method records how long a stage took.
+	 *  @param stage is the stage
+	 *  @param nanos is the duration in nanoseconds */
+	public static void record(Stage stage, long nanos) {
+		stages.get(stage).record(nanos);
+	}
+
+	/** Method records a stage which started at a System.nanoTime() value and has just finished.
+	 *  @param stage is the stage
+	 *  @param startNanos is System.nanoTime() at the start of the stage */
+	public static void recordSince(Stage stage, long startNanos) {
+		stages.get(stage).record(System.nanoTime() - startNanos);
+	}
+
+	/** Method returns the histogram of a stage.
+	 *  @param stage is the stage
+	 *  @return Snapshot of the latencies recorded for the stage */
+	public static LatencyHistogram.Snapshot getStage(Stage stage) {
+		return stages.get(stage).snapshot();
+	}
+
+	/** Method counts a finished job.
+	 *  @param succeeded is false if the job returned no result */
+	public static void jobFinished(boolean succeeded) {
+		jobs.increment();
+		if (!succeeded) {
+			failedJobs.increment();
+		}
+	}
+
+	/** Method counts a job turned away because the JobQueue was full. */
+	public static void jobRejected() {
+		rejectedJobs.increment();
+	}
+
+	/** Method counts a job answered from the ResultCache. */
+	public static void cacheHit() {
+		cacheHits.increment();
+	}
+
+	/** Method adds the size of a page and the words counted on it.
+	 *  @param bytes is the number of bytes received on the wire
+	 *  @param tokenCount is the number of words counted
+	 *  @param distinct is the number of distinct words */
+	public static void pageCounted(long bytes, long tokenCount, int distinct) {
+		bytesFetched.add(bytes);
+		tokens.add(tokenCount);
+		distinctWords.add(distinct);
+	}
+
+	/** Method counts statements (or batches) sent to the database.
+	 *  @param n is the number of round trips */
+	public static void dbRoundTrips(int n) {
+		dbRoundTrips.add(n);
+	}
+
+	/** Method writes every metric in the Prometheus text exposition format.
+	 *  @param out receives the text
+	 *  @throws IOException if out cannot be written */
+	public static void writeText(Writer out) throws IOException {
+		counter(out, "wordfreq_jobs_total", "Jobs run (including result cache hits)", jobs.sum());
+		counter(out, "wordfreq_jobs_failed_total", "Jobs which returned no result", failedJobs.sum());
+		counter(out, "wordfreq_jobs_rejected_total", "Jobs rejected because the job queue was full", rejectedJobs.sum());
+		counter(out, "wordfreq_result_cache_hits_total", "Jobs answered from the result cache", cacheHits.sum());
+		counter(out, "wordfreq_bytes_fetched_total", "Bytes of pages received on the wire", bytesFetched.sum());
+		counter(out, "wordfreq_tokens_total", "Words counted", tokens.sum());
+		counter(out, "wordfreq_distinct_words_total", "Distinct words per job, summed over jobs", distinctWords.sum());
+		counter(out, "wordfreq_db_round_trips_total", "Statements and batches sent to the database", dbRoundTrips.sum());
+		JobQueue.Stats queue = JobQueue.getDefault().getStats();
+		gauge(out, "wordfreq_job_queue_depth", "Jobs waiting for a worker", queue.depth);
+		gauge(out, "wordfreq_job_queue_active", "Workers running a job", queue.active);
+		gauge(out, "wordfreq_job_queue_workers", "Workers in the job pool", queue.workers);
+		FrequencyCache frequencyCache = FrequencyCache.getDefault();
+		if (frequencyCache != null) {
+			FrequencyCache.Stats cache = frequencyCache.getStats();
+			counter(out, "wordfreq_frequency_cache_hits_total", "Word lookups answered from the frequency cache", cache.hits);
+			counter(out, "wordfreq_frequency_cache_misses_total", "Word lookups which read the words table", cache.misses);
+			counter(out, "wordfreq_frequency_cache_evictions_total", "Words evicted from the frequency cache", cache.evictions);
+			gauge(out, "wordfreq_frequency_cache_entries", "Words in the frequency cache", cache.entries);
+		}
+
+		out.write("# HELP wordfreq_stage_seconds Latency of each stage of a job\n");
+		out.write("# TYPE wordfreq_stage_seconds histogram\n");
+		for (Stage stage : Stage.values()) {
+			LatencyHistogram.Snapshot snapshot = getStage(stage);
+			long cumulative = 0;
+			for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+				cumulative += snapshot.getBucketCount(i);
+				out.write("wordfreq_stage_seconds_bucket{stage=\"" + stage.label() + "\",le=\""
+						+ seconds(LatencyHistogram.upperBoundNanos(i)) + "\"} " + cumulative + "\n");
+			}
+			cumulative += snapshot.getBucketCount(LatencyHistogram.BUCKETS - 1);
+			out.write("wordfreq_stage_seconds_bucket{stage=\"" + stage.label() + "\",le=\"+Inf\"} " + cumulative + "\n");
+			out.write("wordfreq_stage_seconds_sum{stage=\"" + stage.label() + "\"} " + seconds(snapshot.sumNanos) + "\n");
+			out.write("wordfreq_stage_seconds_count{stage=\"" + stage.label() + "\"} " + cumulative + "\n");
+		}
+	}
+
+	/** Method returns every metric as text (see writeText()).
+	 *  @return metrics text */
+	public static String toText() {
+		StringWriter sw = new StringWriter();
+		try {
+			writeText(sw);
+		} catch (IOException e) {
+			// A StringWriter does not fail
+		}
+		return sw.toString();
+	}
+
+	/** Method publishes the metrics as configured: registers the MXBeans and starts the text endpoint.
+	 *  Failures are reported and otherwise ignored, so metrics can never keep the server from starting. */
+	public static synchronized void start() {
+		if (!registered && Settings.getBoolean("metrics.jmx", true)) {
+			registered = true;
+			try {
+				MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+				mbs.registerMBean(new Counters(), new ObjectName("application:type=ServerMetrics,name=counters"));
+				for (Stage stage : Stage.values()) {
+					mbs.registerMBean(new StageLatency(stage), new ObjectName("application:type=ServerMetrics,stage=" + stage.label()));
+				}
+			} catch (JMException e) {
+				System.out.println("Cannot register metrics MXBeans: " + e.getMessage());
+			}
+		}
+		int port = Settings.getInt("metrics.port", 9100);
+		if (endpoint == null && port > 0) {
+			try {
+				endpoint = startEndpoint(port);
+				System.out.println("Metrics at http://127.0.0.1:" + endpoint.getAddress().getPort() + "/metrics");
+			} catch (IOException e) {
+				System.out.println("Metrics endpoint disabled, cannot listen on port " + port + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/** Method stops the text endpoint (the MXBeans stay registered). */
+	public static synchronized void stop() {
+		if (endpoint != null) {
+			endpoint.stop(0);
+			endpoint = null;
+		}
+	}
+
+	/** Method serves the metrics text on the loopback interface only.
+	 *  @param port is the port to listen on (0 picks a free one)
+	 *  @return the running HttpServer
+	 *  @throws IOException if the port cannot be bound */
+	public static HttpServer startEndpoint(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", exchange -> {
+			try {
+				byte[] body = toText().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			} finally {
+				exchange.close();
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	private static void counter(Writer out, String name, String help, long value) throws IOException {
+		out.write("# HELP " + name + " " + help + "\n");
+		out.write("# TYPE " + name + " counter\n");
+		out.write(name + " " + value + "\n");
+	}
+
+	private static void gauge(Writer out, String name, String help, long value) throws IOException {
+		out.write("# HELP " + name + " " + help + "\n");
+		out.write("# TYPE " + name + " gauge\n");
+		out.write(name + " " + value + "\n");
+	}
+
+	private static String seconds(long nanos) {
+		return Double.toString(nanos / 1e9);
+	}
+
+	/** Counters exposed through JMX. */
+	public interface CountersMXBean {
+		long getJobs();
+		long getFailedJobs();
+		long getRejectedJobs();
+		int getQueueDepth();
+		int getActiveWorkers();
+		long getResultCacheHits();
+		long getBytesFetched();
+		long getTokens();
+		long getDistinctWords();
+		long getDbRoundTrips();
+	}
+
+	/** Latency of one stage exposed through JMX, in milliseconds. */
+	public interface StageLatencyMXBean {
+		long getCount();
+		double getMeanMillis();
+		double getP50Millis();
+		double getP90Millis();
+		double getP99Millis();
+		double getMaxMillis();
+	}
+
+	private static final class Counters implements CountersMXBean {
+		public long getJobs() {
+			return jobs.sum();
+		}
+
+		public long getFailedJobs() {
+			return failedJobs.sum();
+		}
+
+		public long getRejectedJobs() {
+			return rejectedJobs.sum();
+		}
+
+		public int getQueueDepth() {
+			return JobQueue.getDefault().getStats().depth;
+		}
+
+		public int getActiveWorkers() {
+			return JobQueue.getDefault().getStats().active;
+		}
+
+		public long getResultCacheHits() {
+			return cacheHits.sum();
+		}
+
+		public long getBytesFetched() {
+			return bytesFetched.sum();
+		}
+
+		public long getTokens() {
+			return tokens.sum();
+		}
+
+		public long getDistinctWords() {
+			return distinctWords.sum();
+		}
+
+		public long getDbRoundTrips() {
+			return dbRoundTrips.sum();
+		}
+	}
+
+	private static final class StageLatency implements StageLatencyMXBean {
+		private final Stage stage;
+
+		StageLatency(Stage stage) {
+			this.stage = stage;
+		}
+
+		public long getCount() {
+			return getStage(stage).count;
+		}
+
+		public double getMeanMillis() {
+			return millis(getStage(stage).getMeanNanos());
+		}
+
+		public double getP50Millis() {
+			return millis(getStage(stage).getPercentileNanos(0.5));
+		}
+
+		public double getP90Millis() {
+			return millis(getStage(stage).getPercentileNanos(0.9));
+		}
+
+		public double getP99Millis() {
+			return millis(getStage(stage).getPercentileNanos(0.99));
+		}
+
+		public double getMaxMillis() {
+			return millis(getStage(stage).maxNanos);
+		}
+
+		private static double millis(long nanos) {
+			return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+package application;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Consumer;
+
+/** SessionProtocol implements the line-oriented wire format shared by every server front end. 
+ *  The Client sends the URL, the start line and the end line followed by "quit..."; the server answers 
+ *  with the top ten results and all results, each block followed by a "pause..." line.
+ *  If the JobQueue is full the only block is "Server busy, retry after N seconds" and the connection is closed.
+ *  A Client which ends the request with "top..." instead gets only the top ten, and may then send any number of
+ *  "page N" (1-based, results.pageSize words per page) or "range A B" (ranks A to B inclusive, at most a page) commands, 
+ *  followed by "all..." for all results or "quit..." to finish without them.
+ *  All results and pages are streamed from the job's ranking, so the full list is never built as one String.
+ *  The front end feeds lines in with onLine() and calls respond() (usually on a worker thread) once a request is complete.
+ *  @author derekdileo */
+public class SessionProtocol {
+
+	// Line sent by the Client after its last response
+	public static final String QUIT = "quit...";
+
+	// Request terminator for Clients which want the top ten only
+	public static final String TOP = "top...";
+
+	// Command which asks for all results after a "top..." request
+	public static final String ALL = "all...";
+
+	// Commands which ask for part of the results after a "top..." request
+	public static final String PAGE = "page";
+	public static final String RANGE = "range";
+
+	// Line sent after each block of results
+	public static final String PAUSE = "pause...";
+
+	// Line terminator used by PrintWriter.println() in the original server
+	private static final String NEWLINE = System.lineSeparator();
+
+	private final Consumer<String> log;
+
+	// String array to hold QuestionBox.display() responses from Client.
+	private final String[] userResponses = new String[4];
+	private int responseCount;
+
+	private boolean ready;
+	private boolean closed;
+
+	// Set after a "top..." request has been answered, while the Client may still ask for more results
+	private JobResult pending;
+	private String command;
+
+	/** Constructor
+	 *  @param log receives messages to display on the server GUI */
+	public SessionProtocol(Consumer<String> log) {
+		this.log = log;
+	}
+
+	/** Method stores one line sent by the Client.
+	 *  @param line is the line without its terminator
+	 *  @return true if the request is complete and respond() should be called next */
+	public boolean onLine(String line) {
+		if (closed || ready) {
+			return false;
+		}
+		
+		// After a top ten only answer the Client asks for more results or quits
+		if (pending != null) {
+			if (line.equals(QUIT)) {
+				closed = true;
+			} else {
+				command = line.trim();
+				ready = true;
+			}
+			return ready;
+		}
+		
+		userResponses[responseCount] = line;
+
+		// Display inputs to Server text area for troubleshooting purposes
+		log.accept("\n " + responseCount + ": " + line);
+		responseCount++;
+
+		// "quit..." (or a full array) terminates the request
+		if (line.equals(QUIT) || line.equals(TOP)) {
+			log.accept("\nuserResponses == " + line);
+			ready = true;
+		} else if (responseCount == userResponses.length) {
+			ready = true;
+		}
+		return ready;
+	}
+
+	/** Method runs the ScrapeJob for the collected responses and writes the results to the Client.
+	 *  @param out receives the response text; it is flushed after each block
+	 *  @throws IOException if the Client connection fails */
+	public void respond(Writer out) throws IOException {
+		boolean keepOpen = false;
+		try {
+			if (!ready) {
+				return;
+			}
+			
+			// Later round trips of a "top..." request
+			if (pending != null) {
+				ready = false;
+				keepOpen = !command.equals(ALL);
+				long start = System.nanoTime();
+				runCommand(out, command);
+				ServerMetrics.recordSince(ServerMetrics.Stage.RESPOND, start);
+				return;
+			}
+			
+			if (userResponses[2] == null || QUIT.equals(userResponses[2]) || TOP.equals(userResponses[2])) {
+				log.accept("\nIncomplete request: " + responseCount + " responses");
+				return;
+			}
+
+			// Scrape, count and format results for this session only, on a JobQueue worker
+			ScrapeJob job = new ScrapeJob(userResponses[0], userResponses[1], userResponses[2]);
+			JobResult result;
+			try {
+				result = JobQueue.getDefault().run(job);
+			} catch (JobQueue.BusyException e) {
+				// Answer at once rather than making the Client wait behind a full queue
+				log.accept("\nRejected " + userResponses[0] + ": " + e.getMessage() + "\n" + JobQueue.getDefault().getStats());
+				writeBlock(out, "\n" + e.getMessage() + "\n\n,");
+				return;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (job.isCacheHit()) {
+				log.accept("\nServed from result cache: " + userResponses[0] + "\n" + ResultCache.getDefault().getStats());
+			} else if (job.getFetchStats() != null) {
+				log.accept("\n" + job.getFetchStats());
+			}
+			if (job.getCrawlResult() != null) {
+				log.accept("\n" + job.getCrawlResult());
+			}
+			if (result == null) {
+				log.accept("\nJob failed for " + userResponses[0]);
+				return;
+			}
+
+			// Send top ten results back to client
+			long start = System.nanoTime();
+			writeBlock(out, result.getTopTen());
+
+			// Wait for commands before reading any other results
+			if (TOP.equals(userResponses[responseCount - 1])) {
+				ServerMetrics.recordSince(ServerMetrics.Stage.RESPOND, start);
+				pending = result;
+				ready = false;
+				keepOpen = true;
+				return;
+			}
+
+			// Send all results back to client
+			result.writeAll(out, JobResult.PAGE_SIZE);
+			endBlock(out);
+			ServerMetrics.recordSince(ServerMetrics.Stage.RESPOND, start);
+		} finally {
+			closed = !keepOpen;
+		}
+	}
+
+	/** Method reports whether the session has nothing more to do and the connection can be closed.
+	 *  @return true once the response has been written (or the request was abandoned) */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/** Method marks the session as finished, e.g. when the Client disconnects early. */
+	public void close() {
+		closed = true;
+	}
+
+	// Answers "all...", "page N" or "range A B" from the pending result
+	private void runCommand(Writer out, String line) throws IOException {
+		String[] parts = line.split("\\s+");
+		try {
+			if (line.equals(ALL)) {
+				pending.writeAll(out, JobResult.PAGE_SIZE);
+				endBlock(out);
+				return;
+			} else if (parts.length == 2 && parts[0].equalsIgnoreCase(PAGE)) {
+				long from = (Long.parseLong(parts[1]) - 1) * JobResult.PAGE_SIZE;
+				if (from >= 0 && from <= Integer.MAX_VALUE) {
+					pending.writeRange(out, (int) from, (int) Math.min(from + JobResult.PAGE_SIZE, Integer.MAX_VALUE));
+					endBlock(out);
+					return;
+				}
+			} else if (parts.length == 3 && parts[0].equalsIgnoreCase(RANGE)) {
+				int first = Integer.parseInt(parts[1]);
+				int last = Integer.parseInt(parts[2]);
+				if (first >= 1 && last >= first) {
+					// At most one page per reply, however wide the range asked for
+					int to = (int) Math.min(last, first - 1L + JobResult.PAGE_SIZE);
+					pending.writeRange(out, first - 1, to);
+					endBlock(out);
+					return;
+				}
+			}
+		} catch (NumberFormatException e) {
+			// Fall through to the usage message
+		}
+		log.accept("\nUnknown command: " + line);
+		writeBlock(out, "\nUnknown command: " + line + " (use page N, range A B, all... or quit...)\n\n,");
+	}
+
+	private static void writeBlock(Writer out, String text) throws IOException {
+		out.write(String.valueOf(text));
+		endBlock(out);
+	}
+
+	// Ends a block of results with the "pause..." line the Client waits for
+	private static void endBlock(Writer out) throws IOException {
+		out.write(NEWLINE);
+		out.write(PAUSE);
+		out.write(NEWLINE);
+		out.flush();
+	}
+
+}
@@ -0,0 +1,72 @@
+package application;
+
+/** The Settings class reads the tunable values of the server from Java system properties
+ *  (e.g. -Dwordfreq.db.poolSize=8) and falls back to a default when a property is missing or malformed.
+ *  @author derekdileo */
+public final class Settings {
+
+	// Prefix shared by every property read through this class
+	public static final String PREFIX = "wordfreq.";
+
+	private Settings() {
+	}
+
+	/** Method returns the String value of a setting.
+	 *  @param key is the name of the setting without the "wordfreq." prefix
+	 *  @param defaultValue is returned when the property is not set
+	 *  @return the configured value or defaultValue */
+	public static String getString(String key, String defaultValue) {
+		String value = System.getProperty(PREFIX + key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+
+	/** Method returns the int value of a setting.
+	 *  @param key is the name of the setting without the "wordfreq." prefix
+	 *  @param defaultValue is returned when the property is not set or is not a number
+	 *  @return the configured value or defaultValue */
+	public static int getInt(String key, int defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			System.out.println("Ignoring invalid value for " + PREFIX + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/** Method returns the long value of a setting.
+	 *  @param key is the name of the setting without the "wordfreq." prefix
+	 *  @param defaultValue is returned when the property is not set or is not a number
+	 *  @return the configured value or defaultValue */
+	public static long getLong(String key, long defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			System.out.println("Ignoring invalid value for " + PREFIX + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/** Method returns the boolean value of a setting.
+	 *  @param key is the name of the setting without the "wordfreq." prefix
+	 *  @param defaultValue is returned when the property is not set
+	 *  @return the configured value or defaultValue */
+	public static boolean getBoolean(String key, boolean defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value);
+	}
+
+}
@@ -0,0 +1,400 @@
+package application;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** SiteCrawler counts the words of a whole site: it starts from the Client's URL, follows same-site links breadth
+ *  first up to a depth and a page budget, and adds the sourceHead..sourceEnd regions of every page to one WordCounter.
+ *  Pages of one level are fetched concurrently on a shared pool, while each host gets at most a few connections and
+ *  a minimum gap between request starts. A fetch waits for its host in the host's queue and only takes a pool thread
+ *  when it may start, so a large crawl of one host never parks threads that crawls of other hosts could use.
+ *  Visited URLs are remembered as 64-bit fingerprints rather than Strings. Words are counted in the regions selected
+ *  by wordfreq.scrape.capture, as for a single page, and links are read from every line of a page.
+ *  Settings: wordfreq.crawl.depth (default 2), wordfreq.crawl.maxPages (default 50), wordfreq.crawl.threads
+ *  (default 8), wordfreq.crawl.hostConnections (default 2), wordfreq.crawl.hostDelayMillis (default 250) and
+ *  wordfreq.crawl.scope = directory (default, links below the start page's directory) or host.
+ *  @author derekdileo */
+public class SiteCrawler {
+
+	// href="..." or href='...' in any tag
+	private static final Pattern HREF = Pattern.compile("href\\s*=\\s*[\"']([^\"'#]*)", Pattern.CASE_INSENSITIVE);
+
+	// Links which cannot hold text worth counting
+	private static final Pattern SKIPPED = Pattern.compile(".*\\.(?:css|js|jpe?g|png|gif|svg|ico|zip|gz|pdf|epub|mobi|mp3|mp4)$",
+			Pattern.CASE_INSENSITIVE);
+
+	private final int maxDepth;
+	private final int maxPages;
+	private final int hostConnections;
+	private final long hostDelayMillis;
+	private final boolean sameDirectory;
+	private final ExecutorService fetchers;
+	// Starts fetches whose host asked for a gap since its previous request
+	private final ScheduledExecutorService timer;
+
+	// Politeness state per host, shared by every crawl on this crawler
+	private final Map<String, Host> hosts = new ConcurrentHashMap<String, Host>();
+
+	/** Constructor
+	 *  @param maxDepth is the number of links followed from the start page (0 counts the start page only)
+	 *  @param maxPages is the most pages fetched per crawl
+	 *  @param threads is the number of pages fetched at once over all crawls
+	 *  @param hostConnections is the number of pages fetched at once from one host
+	 *  @param hostDelayMillis is the minimum time between the starts of two requests to one host
+	 *  @param sameDirectory limits links to the start page's directory (false allows the whole host) */
+	public SiteCrawler(int maxDepth, int maxPages, int threads, int hostConnections, long hostDelayMillis, boolean sameDirectory) {
+		this.maxDepth = Math.max(0, maxDepth);
+		this.maxPages = Math.max(1, maxPages);
+		this.hostConnections = Math.max(1, hostConnections);
+		this.hostDelayMillis = Math.max(0, hostDelayMillis);
+		this.sameDirectory = sameDirectory;
+
+		AtomicInteger counter = new AtomicInteger();
+		this.fetchers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread t = new Thread(r, "crawl-fetcher-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "crawl-timer");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/** Method returns the crawler configured with wordfreq.crawl.*, created on first use.
+	 *  @return the shared SiteCrawler */
+	public static SiteCrawler getDefault() {
+		return Default.CRAWLER;
+	}
+
+	/** Method crawls from a start page and counts the words of every page reached.
+	 *  @param website is the start page
+	 *  @param sourceHead is the first line of text to be processed on each page
+	 *  @param sourceEnd is the last line of text to be processed on each page
+	 *  @param fetchListener receives the FetchStats of every page (called from the fetch threads; may be null)
+	 *  @return Result with the aggregated counts (null if the start page could not be read)
+	 *  @throws InterruptedException if the calling thread is interrupted (the pending fetches are cancelled) */
+	public Result crawl(String website, String sourceHead, String sourceEnd, Consumer<FetchStats> fetchListener)
+			throws InterruptedException {
+		URI start = normalize(website, null);
+		if (start == null) {
+			return null;
+		}
+		String scope = scopeOf(start);
+		SeenSet seen = new SeenSet(maxPages * 4);
+		seen.add(start.toString());
+
+		WordCounter total = new WordCounter();
+		int fetched = 0;
+		int failed = 0;
+		int links = 0;
+		boolean startRead = false;
+		List<URI> level = new ArrayList<URI>();
+		level.add(start);
+
+		for (int depth = 0; depth <= maxDepth && !level.isEmpty() && fetched < maxPages; depth++) {
+			// Fetch every page of this level (within the budget) at once
+			boolean follow = depth < maxDepth;
+			List<Future<Page>> pages = new ArrayList<Future<Page>>();
+			for (URI uri : level) {
+				if (fetched == maxPages) {
+					break;
+				}
+				fetched++;
+				pages.add(submit(uri, sourceHead, sourceEnd, follow, fetchListener));
+			}
+
+			// Merge the counts in order and collect the next level from the links found
+			List<URI> next = new ArrayList<URI>();
+			try {
+				for (Future<Page> future : pages) {
+					Page page = future.get();
+					if (page.counts == null) {
+						failed++;
+						continue;
+					}
+					startRead |= depth == 0;
+					total.merge(page.counts);
+					for (String href : page.links) {
+						URI link = normalize(href, page.uri);
+						if (link != null && link.toString().startsWith(scope) && seen.add(link.toString())) {
+							links++;
+							next.add(link);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				for (Future<Page> future : pages) {
+					future.cancel(true);
+				}
+				throw e;
+			} catch (ExecutionException e) {
+				// fetch() handles its own errors, so this is a bug
+				throw new IllegalStateException(e.getCause());
+			}
+			level = next;
+		}
+		return startRead ? new Result(total, fetched, failed, links) : null;
+	}
+
+	/** Method stops the fetch threads. */
+	public void shutdown() {
+		timer.shutdownNow();
+		fetchers.shutdownNow();
+	}
+
+	// Queues the fetch of one page behind its host's limits (local files need no politeness)
+	private Future<Page> submit(URI uri, String sourceHead, String sourceEnd, boolean follow, Consumer<FetchStats> fetchListener) {
+		FutureTask<Page> task = new FutureTask<Page>(() -> fetch(uri, sourceHead, sourceEnd, follow, fetchListener));
+		if (uri.getAuthority() == null) {
+			fetchers.execute(task);
+		} else {
+			hosts.computeIfAbsent(uri.getAuthority(), key -> new Host()).offer(task);
+		}
+		return task;
+	}
+
+	// Fetches and counts one page
+	private Page fetch(URI uri, String sourceHead, String sourceEnd, boolean follow, Consumer<FetchStats> fetchListener) {
+		WordCounter counts = new WordCounter();
+		List<String> links = new ArrayList<String>();
+		boolean read = WebScrape.parseSite(uri.toString(), sourceHead, sourceEnd, CaptureMode.fromSettings(),
+				WebScrape.counterSink(counts), follow ? line -> findLinks(line, links) : null, fetchListener);
+		return new Page(uri, read ? counts : null, links);
+	}
+
+	/** Method adds the target of every href attribute on a line to links.
+	 *  @param line is one line of HTML
+	 *  @param links receives the link targets as written (relative or absolute) */
+	public static void findLinks(String line, List<String> links) {
+		if (line.indexOf('=') < 0) {
+			return;
+		}
+		Matcher matcher = HREF.matcher(line);
+		while (matcher.find()) {
+			String href = matcher.group(1).trim();
+			if (!href.isEmpty() && !SKIPPED.matcher(href).matches()) {
+				links.add(href.replace("&amp;", "&"));
+			}
+		}
+	}
+
+	/** Method resolves a link and puts it in the form used for de-duplication: lowercase scheme and host,
+	 *  no default port, no fragment and "/" for an empty path. Only http, https and file links are kept.
+	 *  @param link is the link as written on the page
+	 *  @param base is the page the link was found on (null for an absolute URL)
+	 *  @return normalized URI, or null if the link is invalid or not crawlable */
+	public static URI normalize(String link, URI base) {
+		try {
+			URI uri = base == null ? new URI(link) : base.resolve(new URI(link));
+			String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+			if (!"http".equals(scheme) && !"https".equals(scheme) && !"file".equals(scheme)) {
+				return null;
+			}
+			String host = uri.getHost() == null ? null : uri.getHost().toLowerCase(Locale.ROOT);
+			int port = uri.getPort();
+			if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+				port = -1;
+			}
+			String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+			if (host == null) {
+				return new URI(scheme + ":" + path + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery()));
+			}
+			return new URI(scheme + "://" + host + (port == -1 ? "" : ":" + port) + path
+					+ (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery()));
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	// Prefix every followed link must start with
+	private String scopeOf(URI start) {
+		String path = start.getRawPath();
+		String prefix = sameDirectory ? path.substring(0, path.lastIndexOf('/') + 1) : "/";
+		return start.getScheme() + ":" + (start.getRawAuthority() == null ? "" : "//" + start.getRawAuthority()) + prefix;
+	}
+
+	/** Outcome of one crawl. */
+	public static final class Result {
+		public final WordCounter counts;
+		public final int pagesFetched;
+		public final int pagesFailed;
+		public final int linksFollowed;
+
+		Result(WordCounter counts, int pagesFetched, int pagesFailed, int linksFollowed) {
+			this.counts = counts;
+			this.pagesFetched = pagesFetched;
+			this.pagesFailed = pagesFailed;
+			this.linksFollowed = linksFollowed;
+		}
+
+		@Override
+		public String toString() {
+			return "Crawled " + pagesFetched + " pages (" + pagesFailed + " failed, " + linksFollowed + " new links), "
+					+ counts.size() + " distinct words";
+		}
+	}
+
+	// One fetched page
+	private static final class Page {
+		final URI uri;
+		final WordCounter counts;
+		final List<String> links;
+
+		Page(URI uri, WordCounter counts, List<String> links) {
+			this.uri = uri;
+			this.counts = counts;
+			this.links = links;
+		}
+	}
+
+	// Connection limit and request spacing of one host: fetches wait here until one may start, then run on the pool
+	private final class Host {
+		private final Deque<FutureTask<Page>> waiting = new ArrayDeque<FutureTask<Page>>();
+		private int active;
+		private long nextStartNanos;
+		private boolean timerSet;
+
+		void offer(FutureTask<Page> task) {
+			synchronized (this) {
+				waiting.add(task);
+			}
+			dispatch();
+		}
+
+		// Starts waiting fetches while a connection is free, or sets the timer for the next gap to pass
+		private synchronized void dispatch() {
+			while (active < hostConnections && !waiting.isEmpty()) {
+				if (waiting.peek().isCancelled()) {
+					waiting.poll();
+					continue;
+				}
+				long now = System.nanoTime();
+				if (now < nextStartNanos) {
+					if (!timerSet) {
+						timerSet = true;
+						timer.schedule(this::wake, nextStartNanos - now, TimeUnit.NANOSECONDS);
+					}
+					return;
+				}
+				FutureTask<Page> task = waiting.poll();
+				active++;
+				nextStartNanos = now + TimeUnit.MILLISECONDS.toNanos(hostDelayMillis);
+				fetchers.execute(() -> {
+					started();
+					try {
+						task.run();
+					} finally {
+						finished();
+					}
+				});
+			}
+		}
+
+		// The gap counts from the request's actual start, which can be later than its dispatch
+		private synchronized void started() {
+			nextStartNanos = Math.max(nextStartNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hostDelayMillis));
+		}
+
+		private void wake() {
+			synchronized (this) {
+				timerSet = false;
+			}
+			dispatch();
+		}
+
+		private void finished() {
+			synchronized (this) {
+				active--;
+			}
+			dispatch();
+		}
+	}
+
+	/** Set of URL fingerprints: an open-addressing table of 64-bit FNV-1a hashes, 8 bytes per URL instead of a String
+	 *  and a hash set entry. Two different URLs share a fingerprint with a probability of about n^2 / 2^65, which is
+	 *  negligible for a crawl's page budget. Used by one crawl thread only. */
+	static final class SeenSet {
+		private long[] slots;
+		private int size;
+
+		SeenSet(int expected) {
+			slots = new long[Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1];
+		}
+
+		/** Method adds a URL.
+		 *  @return true if the URL was not in the set yet */
+		boolean add(String url) {
+			long hash = fingerprint(url);
+			int mask = slots.length - 1;
+			for (int i = (int) (hash ^ (hash >>> 32)) & mask; ; i = (i + 1) & mask) {
+				if (slots[i] == hash) {
+					return false;
+				}
+				if (slots[i] == 0) {
+					slots[i] = hash;
+					if (++size * 2 > slots.length) {
+						grow();
+					}
+					return true;
+				}
+			}
+		}
+
+		int size() {
+			return size;
+		}
+
+		private void grow() {
+			long[] old = slots;
+			slots = new long[old.length * 2];
+			int mask = slots.length - 1;
+			for (long hash : old) {
+				if (hash != 0) {
+					int i = (int) (hash ^ (hash >>> 32)) & mask;
+					while (slots[i] != 0) {
+						i = (i + 1) & mask;
+					}
+					slots[i] = hash;
+				}
+			}
+		}
+
+		// 0 marks an empty slot, so it is never returned
+		private static long fingerprint(String url) {
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0; i < url.length(); i++) {
+				hash ^= url.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+			return hash == 0 ? 1 : hash;
+		}
+	}
+
+	/** Holds the shared crawler, so its threads are only created when the first crawl runs. */
+	private static final class Default {
+		static final SiteCrawler CRAWLER = new SiteCrawler(Settings.getInt("crawl.depth", 2), Settings.getInt("crawl.maxPages", 50),
+				Settings.getInt("crawl.threads", 8), Settings.getInt("crawl.hostConnections", 2),
+				Settings.getLong("crawl.hostDelayMillis", 250), !"host".equalsIgnoreCase(Settings.getString("crawl.scope", "directory")));
+	}
+
+}
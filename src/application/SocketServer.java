@@ -0,0 +1,115 @@
+package application;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/** The SocketServer accepts Client connections in a loop and serves each one on its own ClientSession task. 
+ *  At most maxSessions sessions run at once; further connections wait in the accept backlog until a session finishes.
+ *  @author derekdileo */
+public class SocketServer implements WordFrequencyServer {
+
+	private final int port;
+	private final int maxSessions;
+	private final Consumer<String> log;
+
+	// Limits the number of sessions being served at once
+	private final Semaphore sessionPermits;
+	private final ExecutorService sessions;
+
+	private volatile ServerSocket serverSocket;
+	private volatile boolean running;
+
+	/** Constructor
+	 *  @param port is the port to listen on
+	 *  @param maxSessions is the maximum number of Clients served concurrently
+	 *  @param log receives messages to display on the server GUI */
+	public SocketServer(int port, int maxSessions, Consumer<String> log) {
+		this.port = port;
+		this.maxSessions = maxSessions;
+		this.log = log;
+		this.sessionPermits = new Semaphore(maxSessions);
+
+		AtomicInteger counter = new AtomicInteger();
+		this.sessions = Executors.newFixedThreadPool(maxSessions, r -> {
+			Thread t = new Thread(r, "client-session-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/** Method starts the accept loop on a background thread. */
+	@Override
+	public void start() {
+		running = true;
+		Thread acceptor = new Thread(this::acceptLoop, "socket-server-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/** Method stops accepting connections and interrupts running sessions. */
+	@Override
+	public void stop() {
+		running = false;
+		try {
+			if (serverSocket != null) {
+				serverSocket.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Error closing server socket: " + e.getMessage());
+		}
+		sessions.shutdownNow();
+	}
+
+	/** Method returns the number of sessions currently being served.
+	 *  @return active session count */
+	public int getActiveSessions() {
+		return maxSessions - sessionPermits.availablePermits();
+	}
+
+	private void acceptLoop() {
+		// Create ServerSocket
+		try (ServerSocket ss = new ServerSocket(port)) {
+			serverSocket = ss;
+
+			// Print start time to server TextArea
+			log.accept("Server started at " + new Date() + " (max " + maxSessions + " sessions)" + '\n');
+
+			while (running) {
+				// Wait for a free session slot before accepting the next Client
+				sessionPermits.acquire();
+				Socket socket;
+				try {
+					socket = ss.accept();
+				} catch (IOException e) {
+					sessionPermits.release();
+					throw e;
+				}
+
+				log.accept("Client Connected: " + socket.getRemoteSocketAddress() + '\n');
+
+				ClientSession session = new ClientSession(socket, log);
+				sessions.execute(() -> {
+					try {
+						session.run();
+					} finally {
+						sessionPermits.release();
+					}
+				});
+			}
+		} catch (IOException ex) {
+			if (running) {
+				log.accept("Error in SocketServer: " + ex.getMessage() + '\n');
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
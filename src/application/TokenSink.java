@@ -0,0 +1,14 @@
+package application;
+
+/** A TokenSink receives the words produced by WordTokenizer. The characters are only valid for the duration 
+ *  of the call (the tokenizer reuses its buffer), so a sink must copy them or count them straight away.
+ *  @author derekdileo */
+public interface TokenSink {
+
+	/** Method is called once for every word found.
+	 *  @param buffer holds the lowercase characters of the word
+	 *  @param offset is the index of the first character in buffer
+	 *  @param length is the number of characters in the word */
+	void token(char[] buffer, int offset, int length);
+
+}
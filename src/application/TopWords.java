@@ -0,0 +1,95 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** TopWords picks the most frequent words out of a WordCounter with a bounded min-heap of size K, so the top ten 
+ *  costs O(n log K) without sorting (or copying) the whole vocabulary. A Word object is only created for words 
+ *  which make it into the heap.
+ *  @author derekdileo */
+public class TopWords {
+
+	/** Ranking used for results: highest frequency first, ties in alphabetical order. */
+	public static final Comparator<Word> RANKING = Comparator.comparingInt(Word::getFrequency).reversed()
+			.thenComparing(Word::getWord);
+
+	private TopWords() {
+	}
+
+	/** Method returns the k most frequent words.
+	 *  @param counts holds every word and its frequency
+	 *  @param k is the number of words wanted
+	 *  @return up to k words in RANKING order */
+	public static List<Word> select(WordCounter counts, int k) {
+		if (k <= 0 || counts.isEmpty()) {
+			return new ArrayList<Word>();
+		}
+
+		// Min-heap: the weakest of the current top k sits at the head
+		PriorityQueue<Word> heap = new PriorityQueue<Word>(Math.min(k, counts.size()) + 1, RANKING.reversed());
+		WordCounter.Cursor cursor = counts.cursor();
+		while (cursor.next()) {
+			int frequency = cursor.count();
+			if (heap.size() < k) {
+				heap.add(new Word(cursor.word(), frequency));
+			} else if (beats(cursor.word(), frequency, heap.peek())) {
+				heap.poll();
+				heap.add(new Word(cursor.word(), frequency));
+			}
+		}
+
+		// Drain weakest first, then flip into ranking order
+		List<Word> top = new ArrayList<Word>(heap.size());
+		while (!heap.isEmpty()) {
+			top.add(heap.poll());
+		}
+		Collections.reverse(top);
+		return top;
+	}
+
+	/** Method returns every word in ranking order (used for the all results view).
+	 *  @param counts holds every word and its frequency
+	 *  @return all words in RANKING order */
+	public static List<Word> sorted(WordCounter counts) {
+		List<Word> all = new ArrayList<Word>(counts.size());
+		counts.forEach((word, frequency) -> all.add(new Word(word, frequency)));
+		all.sort(RANKING);
+		return all;
+	}
+
+	/** Method returns a RankedWords view of the counts. The vocabulary is only sorted the first time a page is asked for.
+	 *  @param counts holds every word and its frequency (it must not change afterwards)
+	 *  @return RankedWords in RANKING order */
+	public static RankedWords ranked(WordCounter counts) {
+		return new RankedWords() {
+			private List<Word> sorted;
+
+			@Override
+			public int size() {
+				return counts.size();
+			}
+
+			@Override
+			public synchronized List<Word> get(int from, int count) {
+				if (sorted == null) {
+					sorted = sorted(counts);
+				}
+				int start = Math.min(Math.max(from, 0), sorted.size());
+				int end = Math.min(start + Math.max(count, 0), sorted.size());
+				return sorted.subList(start, end);
+			}
+		};
+	}
+
+	// True if (word, frequency) ranks ahead of the weakest word in the heap
+	private static boolean beats(String word, int frequency, Word weakest) {
+		if (frequency != weakest.getFrequency()) {
+			return frequency > weakest.getFrequency();
+		}
+		return word.compareTo(weakest.getWord()) < 0;
+	}
+
+}
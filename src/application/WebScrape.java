@@ -1,107 +1,338 @@
 package application;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.net.URL;
-import java.util.Scanner;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /** A Class that will scrape text from given URL, strip HTML tags, split and add all words to a String array, and
  *  finally, add each word to a database with frequency of 1 (if already in db, frequency is incremented). 
+ *  Pages are tokenized as they are read by WordTokenizer, so the selected text is never held in memory as a whole.
+ *  Pages are fetched through the FetchCache, which serves unchanged pages from disk.
  *  @author derekdileo */
 public class WebScrape {
 	
+	// Early cutoff statistics (see parseSite with a CaptureMode)
+	private static final LongAdder earlyCutoffs = new LongAdder();
+	private static final LongAdder bytesSaved = new LongAdder();
+	
 	/** A Method for scrubbing text from a user-requested URL which removes HTML tags from each line, 
 	 *  splits each line into individual words, adds all to a String array and, finally, returns the array for later processing.   
+	 *  Blank tokens are not included.
 	 *  @param website is the URL that the user wants to process
 	 *  @param sourceHead is the first line of text to be processed by the application
 	 *  @param sourceEnd is the last line of text to be processed by the application
-	 *  @throws IOException
-	 *  @return String[] which contains every word on the requested site
+	 *  @return String[] which contains every word on the requested site (or null if not successful)
 	 *  @author Derek DiLeo */
 	public static String[] parseSite(String website, String sourceHead, String sourceEnd) {
+		// Collect every word the tokenizer emits
+		List<String> words = new ArrayList<String>();
+		boolean parsed = parseSite(website, sourceHead, sourceEnd, 
+				(buffer, offset, length) -> words.add(new String(buffer, offset, length)));
+		return parsed ? words.toArray(new String[0]) : null;
+	}
+	
+	/** A Method which streams the words of a user-requested URL to a TokenSink as the page is read, 
+	 *  without holding the page (or the selected section) in memory. Regions are captured according to
+	 *  the CaptureMode configured with wordfreq.scrape.capture.
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param sink receives every word between sourceHead and sourceEnd
+	 *  @return true if the page was read successfully */
+	public static boolean parseSite(String website, String sourceHead, String sourceEnd, TokenSink sink) {
+		return parseSite(website, sourceHead, sourceEnd, CaptureMode.fromSettings(), sink);
+	}
+	
+	/** A Method which streams the words of a user-requested URL to a TokenSink and closes the connection
+	 *  as soon as the CaptureMode is satisfied, instead of downloading the rest of the page.
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param mode decides how many regions are captured
+	 *  @param sink receives every word between sourceHead and sourceEnd
+	 *  @return true if the page was read successfully */
+	public static boolean parseSite(String website, String sourceHead, String sourceEnd, CaptureMode mode, TokenSink sink) {
+		return parseSite(website, sourceHead, sourceEnd, mode, sink, null);
+	}
+	
+	/** A Method which streams the words of a user-requested URL to a TokenSink, as parseSite() with a CaptureMode, 
+	 *  and reports how the page was fetched.
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param mode decides how many regions are captured
+	 *  @param sink receives every word between sourceHead and sourceEnd
+	 *  @param fetchListener receives the latency and bytes of the fetch once the page is done with (may be null)
+	 *  @return true if the page was read successfully */
+	public static boolean parseSite(String website, String sourceHead, String sourceEnd, CaptureMode mode, TokenSink sink,
+			Consumer<FetchStats> fetchListener) {
 		try {
-		// Instantiate the URL class
-		URL url = new URL(website);
+			// Retrieve the contents of the page (from the fetch cache when it is still current)
+			FetchCache.Page page = FetchCache.fetch(website);
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(page.getBody(), StandardCharsets.UTF_8));
+				if (parse(reader, sourceHead, sourceEnd, mode, sink) && page.cutOff()) {
+					// Capture is complete: closing the page drops the connection rather than draining the rest of it
+					recordEarlyCutoff(page.getContentLength(), page.getBytesTransferred());
+				}
+			} finally {
+				page.close();
+				report(page, fetchListener);
+			}
+			return true;
+		} catch (IOException e) {
+			System.out.println("IOException in WebScrape.parseSite(): " + e);
+			e.printStackTrace();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
 		
-		// Retrieve the contents of the page
-		Scanner sc = new Scanner(url.openStream());
+		return false;
+	}
+	
+	/** A Method which streams the words of a page to a TokenSink, as parseSite() with a CaptureMode, and also passes every
+	 *  line of the page (selected or not) to lineListener, so SiteCrawler can read links from the same download. The page
+	 *  is read to the end for its links even after the capture is complete.
+	 *  @param website is the URL of the page
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param mode decides how many regions are captured
+	 *  @param sink receives every word between sourceHead and sourceEnd
+	 *  @param lineListener receives each line of the page as it is read (null reads no further than the capture)
+	 *  @param fetchListener receives the latency and bytes of the fetch once the page is done with (may be null)
+	 *  @return true if the page was read successfully */
+	public static boolean parseSite(String website, String sourceHead, String sourceEnd, CaptureMode mode, TokenSink sink,
+			Consumer<String> lineListener, Consumer<FetchStats> fetchListener) {
+		if (lineListener == null) {
+			return parseSite(website, sourceHead, sourceEnd, mode, sink, fetchListener);
+		}
+		try {
+			FetchCache.Page page = FetchCache.fetch(website);
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(page.getBody(), StandardCharsets.UTF_8)) {
+					@Override
+					public String readLine() throws IOException {
+						String line = super.readLine();
+						if (line != null) {
+							lineListener.accept(line);
+						}
+						return line;
+					}
+				};
+				if (parse(reader, sourceHead, sourceEnd, mode, sink)) {
+					// Words are captured, the rest of the page is only read for its lines
+					while (reader.readLine() != null) {
+					}
+				}
+			} finally {
+				page.close();
+				report(page, fetchListener);
+			}
+			return true;
+		} catch (IOException e) {
+			System.out.println("IOException in WebScrape.parseSite(): " + e);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
 		
-		// Instantiate the StringBuffer class to hold the result
-		StringBuffer sb = new StringBuffer();
+		return false;
+	}
+	
+	/** A Method which selects the lines from each line containing sourceHead up to (and including) the next line containing 
+	 *  sourceEnd and tokenizes them with WordTokenizer. Selected lines are joined with a space, as the original parser did.
+	 *  Every region on the page is captured.
+	 *  @param reader supplies the page one line at a time
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param sink receives every word in the selected lines
+	 *  @throws IOException if the page cannot be read */
+	public static void parse(BufferedReader reader, String sourceHead, String sourceEnd, TokenSink sink) throws IOException {
+		parse(reader, sourceHead, sourceEnd, CaptureMode.all(), sink);
+	}
+	
+	/** A Method which selects the lines from each line containing sourceHead up to (and including) the next line containing 
+	 *  sourceEnd and tokenizes them with WordTokenizer, stopping as soon as mode has captured enough regions.
+	 *  @param reader supplies the page one line at a time
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param mode decides how many regions are captured
+	 *  @param sink receives every word in the selected lines
+	 *  @return true if reading stopped early because the capture was complete (false if the whole page was read)
+	 *  @throws IOException if the page cannot be read */
+	public static boolean parse(BufferedReader reader, String sourceHead, String sourceEnd, CaptureMode mode, TokenSink sink) throws IOException {
+		WordTokenizer tokenizer = new WordTokenizer(sink);
+		boolean stoppedEarly = select(reader, sourceHead, sourceEnd, mode, line -> {
+			tokenizer.feed(' ');
+			tokenizer.feed(line);
+		});
+		tokenizer.finish();
+		return stoppedEarly;
+	}
+	
+	/** A Method which copies the selected lines of a user-requested URL into one String (lines joined with a space, 
+	 *  tags still in place) so the text can be split into chunks and counted in parallel.
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param mode decides how many regions are captured
+	 *  @return the captured text (or null if not successful) */
+	public static String captureSite(String website, String sourceHead, String sourceEnd, CaptureMode mode) {
+		return captureSite(website, sourceHead, sourceEnd, mode, null);
+	}
+	
+	/** A Method which copies the selected lines of a user-requested URL into one String, as captureSite() with a
+	 *  CaptureMode, and reports how the page was fetched.
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param mode decides how many regions are captured
+	 *  @param fetchListener receives the latency and bytes of the fetch once the page is done with (may be null)
+	 *  @return the captured text (or null if not successful) */
+	public static String captureSite(String website, String sourceHead, String sourceEnd, CaptureMode mode,
+			Consumer<FetchStats> fetchListener) {
+		try {
+			FetchCache.Page page = FetchCache.fetch(website);
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(page.getBody(), StandardCharsets.UTF_8));
+				StringBuilder sb = new StringBuilder();
+				if (select(reader, sourceHead, sourceEnd, mode, line -> sb.append(' ').append(line)) && page.cutOff()) {
+					recordEarlyCutoff(page.getContentLength(), page.getBytesTransferred());
+				}
+				return sb.toString();
+			} finally {
+				page.close();
+				report(page, fetchListener);
+			}
+		} catch (IOException e) {
+			System.out.println("IOException in WebScrape.captureSite(): " + e);
+			e.printStackTrace();
+		}
 		
-		while(sc.hasNextLine()) {
-			
-			String line = sc.nextLine();
+		return null;
+	}
+	
+	/** A Method which passes each line from a line containing sourceHead up to (and including) the next line containing 
+	 *  sourceEnd to lineConsumer, stopping as soon as mode has captured enough regions.
+	 *  @return true if reading stopped early because the capture was complete (false if the whole page was read) */
+	private static boolean select(BufferedReader reader, String sourceHead, String sourceEnd, CaptureMode mode,
+			Consumer<String> lineConsumer) throws IOException {
+		int regions = 0;
+		String line;
+		while((line = reader.readLine()) != null) {
 			
 			// Detect user-indicated start
-			if(line.toString().contains(sourceHead)) {
+			if(line.contains(sourceHead)) {
 				
-				//System.out.println("Line containing sourceHead: " + line);
-				sb.append(" " + line);
+				lineConsumer.accept(line);
 				
-				while(sc.hasNextLine()) {
+				while((line = reader.readLine()) != null) {
 					
-					line = sc.nextLine();
-					sb.append(" " + line);
+					lineConsumer.accept(line);
 					
 					// Reached the user-indicated end
-					if(line.toString().contains(sourceEnd)) {
+					if(line.contains(sourceEnd)) {
+						regions++;
 						break;
 					}
 					
 				}
 				
+				// Stop reading once enough regions have been captured
+				if (line != null && mode.isComplete(regions)) {
+					return true;
+				}
+				
 			}
 			
 		}
-		
-		// Retrieve the String from the StringBuffer object
-		String result = sb.toString();
-		String[] words = null;
-		
-		// Remove the HTML tags
-		String nohtml = result.toLowerCase().replaceAll("\\<.*?>", "");
-		
-		// Split string, ignoring all but letters of alphabet and apostrophe (to allow contractions)
-		words = nohtml.split("[^a-zA-Z’]+"); 
-
-        sc.close();
-        return words;
-        
-		} catch (IOException e) {
-			System.out.println("IOException in WebScrape.parseSite(): " + e);
-			e.printStackTrace();
-		} catch (Exception e) {
-			e.printStackTrace();
+		return false;
+	}
+	
+	/** A Method which returns the number of pages whose download was cut off once the capture was complete.
+	 *  @return number of early cutoffs since the server started */
+	public static long getEarlyCutoffCount() {
+		return earlyCutoffs.sum();
+	}
+	
+	/** A Method which returns how many bytes were not downloaded thanks to early cutoffs. Only pages which
+	 *  announce a Content-Length are counted.
+	 *  @return bytes saved since the server started */
+	public static long getBytesSavedByEarlyCutoff() {
+		return bytesSaved.sum();
+	}
+	
+	private static void report(FetchCache.Page page, Consumer<FetchStats> fetchListener) {
+		if (fetchListener != null) {
+			fetchListener.accept(page.getStats());
+		}
+	}
+	
+	private static void recordEarlyCutoff(long contentLength, long bytesRead) {
+		earlyCutoffs.increment();
+		if (contentLength > bytesRead) {
+			bytesSaved.add(contentLength - bytesRead);
+			System.out.println("Capture complete after " + bytesRead + " of " + contentLength + " bytes");
+		}
+	}
+	
+	/** A Method which counts the words of a user-requested URL. By default words are counted as they are streamed, 
+	 *  without building a String array. With wordfreq.count.mode=parallel the selected text is captured first and, 
+	 *  if it is at least wordfreq.count.parallelThreshold characters long, counted on a ForkJoinPool by ParallelWordCount.
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @return WordCounter with every word and its occurrences (or null if not successful) */
+	public static WordCounter countSite(String website, String sourceHead, String sourceEnd) {
+		return countSite(website, sourceHead, sourceEnd, null);
+	}
+	
+	/** A Method which counts the words of a user-requested URL, as countSite(), and reports how the page was fetched.
+	 *  @param website is the URL that the user wants to process
+	 *  @param sourceHead is the first line of text to be processed by the application
+	 *  @param sourceEnd is the last line of text to be processed by the application
+	 *  @param fetchListener receives the latency and bytes of the fetch once the page is done with (may be null)
+	 *  @return WordCounter with every word and its occurrences (or null if not successful) */
+	public static WordCounter countSite(String website, String sourceHead, String sourceEnd, Consumer<FetchStats> fetchListener) {
+		if (ParallelWordCount.isEnabled()) {
+			String text = captureSite(website, sourceHead, sourceEnd, CaptureMode.fromSettings(), fetchListener);
+			return text == null ? null : ParallelWordCount.count(text);
 		}
 		
-		return null;
+		// Words are counted straight from the tokenizer's buffer
+		WordCounter counts = new WordCounter();
+		boolean parsed = parseSite(website, sourceHead, sourceEnd, CaptureMode.fromSettings(), counterSink(counts), fetchListener);
+		return parsed ? counts : null;
+	}
+	
+	/** A Method which returns a TokenSink that counts every countable word into a WordCounter. 
+	 *  A String is only created the first time a word is seen.
+	 *  @param counts receives the words
+	 *  @return TokenSink for WordTokenizer */
+	public static TokenSink counterSink(WordCounter counts) {
+		return (buffer, offset, length) -> {
+			if (isCountable(buffer, offset, length)) {
+				counts.increment(buffer, offset, length);
+			}
+		};
 	}
 	
 	/** A Method which uses String array from parseSite() to push words to database. 
+	 *  Every word is counted in memory first and the distinct words are then written with 
+	 *  WordStore.merge(), which increments the frequency of words already in the store.
 	 *  @param words is a string array created by parseSite() method which 
 	 *  contains every word (and its multiples) that was parsed. */
 	public static void wordsToDB(String[] words) {
 		try {
-			for (String word : words) {
-				// Do not allow white blank white space or "mdash"
-				if (word.toString() != "" && word.toString() != " " && !word.toString().contains("mdash")
-						&& !word.toString().contains("	")) {
-					
-					// Check if word exists in db (-1 if not)
-					int frequency = Database.queryFrequency(word);
-					
-					// If word already in database...
-					if (frequency != -1) {
-						// Increment the frequency
-						Database.update(word, ++frequency);
-					} else {
-						// Add to database
-						Database.post(word, 1);
-					}
-					
-				}
-				
-			}
+			// Count every word before touching the database
+			WordCounter counts = countWords(words);
+			
+			// Push all distinct words in one bulk merge (a few batched round trips for MySQL)
+			WordStore.getDefault().merge(counts);
 			
 		} catch (Exception e) {
 			System.out.println("Error in WebScrape.wordsToDB: " + e.getMessage());
@@ -110,4 +341,44 @@ public class WebScrape {
 		
 	}
 	
+	/** A Method which counts the occurrences of each word in the String array created by parseSite().
+	 *  @param words is a string array created by parseSite() method which 
+	 *  contains every word (and its multiples) that was parsed.
+	 *  @return WordCounter with every word and its occurrences */
+	public static WordCounter countWords(String[] words) {
+		WordCounter counts = new WordCounter();
+		for (String word : words) {
+			// Do not allow white blank white space or "mdash"
+			if (isCountable(word)) {
+				counts.add(word, 1);
+			}
+		}
+		return counts;
+	}
+	
+	/** A Method which decides whether a parsed token should be counted as a word.
+	 *  @param word is a single token created by parseSite()
+	 *  @return true unless the token is blank, contains a tab or is left over from an "&amp;mdash;" entity */
+	public static boolean isCountable(String word) {
+		return !word.isEmpty() && !word.equals(" ") && !word.contains("mdash") && !word.contains("	");
+	}
+	
+	/** A Method which decides whether a token held in a char range should be counted, without creating a String.
+	 *  WordTokenizer only emits letters and apostrophes, so only the "mdash" check applies.
+	 *  @param buffer holds the characters of the token
+	 *  @param offset is the index of the first character
+	 *  @param length is the number of characters
+	 *  @return true unless the token is empty or is left over from an "&amp;mdash;" entity */
+	public static boolean isCountable(char[] buffer, int offset, int length) {
+		if (length == 0) {
+			return false;
+		}
+		for (int i = offset, end = offset + length - 4; i < end; i++) {
+			if (buffer[i] == 'm' && buffer[i + 1] == 'd' && buffer[i + 2] == 'a' && buffer[i + 3] == 's' && buffer[i + 4] == 'h') {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 }
@@ -0,0 +1,294 @@
+package application;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/** WordCounter is a hash table built for counting words. Keys are kept in an open-addressing (linear probing) table
+ *  next to their hash codes and int counts in primitive arrays, so counting a word which is already present does not
+ *  allocate anything: no boxed Integer and no map entry. Words can be looked up straight from a char range (as handed
+ *  out by WordTokenizer), so a String is only created the first time a word is seen.
+ *  WordCounter is not thread-safe; count on one thread per counter and merge() the results.
+ *  @author derekdileo */
+public class WordCounter {
+
+	// The table is grown when it is more than this full
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private String[] keys;
+	private int[] hashes;
+	private int[] counts;
+	private int mask;
+	private int size;
+	private int resizeAt;
+	private long total;
+
+	/** Constructor for an empty counter with room for a few hundred words. */
+	public WordCounter() {
+		this(256);
+	}
+
+	/** Constructor for an empty counter.
+	 *  @param expectedWords is the number of distinct words expected (the table grows beyond it as needed) */
+	public WordCounter(int expectedWords) {
+		int capacity = 16;
+		while (capacity * LOAD_FACTOR < expectedWords) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/** Method adds one occurrence of the word held in a char range.
+	 *  @param buffer holds the characters of the word
+	 *  @param offset is the index of the first character
+	 *  @param length is the number of characters
+	 *  @return the new count of the word */
+	public int increment(char[] buffer, int offset, int length) {
+		return add(buffer, offset, length, 1);
+	}
+
+	/** Method adds occurrences of the word held in a char range.
+	 *  @param buffer holds the characters of the word
+	 *  @param offset is the index of the first character
+	 *  @param length is the number of characters
+	 *  @param delta is the number of occurrences to add
+	 *  @return the new count of the word */
+	public int add(char[] buffer, int offset, int length, int delta) {
+		int hash = hash(buffer, offset, length);
+		int slot = find(buffer, offset, length, hash);
+		if (keys[slot] == null) {
+			return insert(slot, new String(buffer, offset, length), hash, delta);
+		}
+		total += delta;
+		return counts[slot] += delta;
+	}
+
+	/** Method adds occurrences of a word.
+	 *  @param word is the word to count
+	 *  @param delta is the number of occurrences to add
+	 *  @return the new count of the word */
+	public int add(String word, int delta) {
+		int hash = word.hashCode();
+		int slot = find(word, hash);
+		if (keys[slot] == null) {
+			return insert(slot, word, hash, delta);
+		}
+		total += delta;
+		return counts[slot] += delta;
+	}
+
+	/** Method returns the count of a word.
+	 *  @param word is the word to look up
+	 *  @return the number of occurrences (0 if the word has not been counted) */
+	public int get(String word) {
+		int slot = find(word, word.hashCode());
+		return keys[slot] == null ? 0 : counts[slot];
+	}
+
+	/** Method returns the count of the word held in a char range.
+	 *  @param buffer holds the characters of the word
+	 *  @param offset is the index of the first character
+	 *  @param length is the number of characters
+	 *  @return the number of occurrences (0 if the word has not been counted) */
+	public int get(char[] buffer, int offset, int length) {
+		int slot = find(buffer, offset, length, hash(buffer, offset, length));
+		return keys[slot] == null ? 0 : counts[slot];
+	}
+
+	/** Method returns the number of distinct words.
+	 *  @return distinct word count */
+	public int size() {
+		return size;
+	}
+
+	/** Method reports whether no word has been counted.
+	 *  @return true if the counter is empty */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Method returns the total number of occurrences of all words.
+	 *  @return sum of all counts */
+	public long total() {
+		return total;
+	}
+
+	/** Method adds every count of another counter to this one.
+	 *  @param other is the counter to merge in (it is not changed) */
+	public void merge(WordCounter other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			String key = other.keys[i];
+			if (key != null) {
+				int slot = find(key, other.hashes[i]);
+				if (keys[slot] == null) {
+					insert(slot, key, other.hashes[i], other.counts[i]);
+				} else {
+					counts[slot] += other.counts[i];
+					total += other.counts[i];
+				}
+			}
+		}
+	}
+
+	/** Method passes every word and its count to an action, in no particular order, without boxing.
+	 *  @param action receives each word and its count */
+	public void forEach(ObjIntConsumer<String> action) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) {
+				action.accept(keys[i], counts[i]);
+			}
+		}
+	}
+
+	/** Method returns a cursor over the words and counts, for loops which cannot use a lambda 
+	 *  (e.g. because they throw checked exceptions). The counter must not be changed while the cursor is in use.
+	 *  @return a Cursor positioned before the first word */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/** Method copies the counts into a HashMap.
+	 *  @return Map with key=word and value=occurrences */
+	public Map<String, Integer> toMap() {
+		Map<String, Integer> map = new HashMap<String, Integer>(size * 2);
+		forEach(map::put);
+		return map;
+	}
+
+	/** Method creates a counter holding the counts of a Map.
+	 *  @param map with key=word and value=occurrences
+	 *  @return a new WordCounter with the same counts */
+	public static WordCounter of(Map<String, Integer> map) {
+		WordCounter counter = new WordCounter(map.size());
+		for (Map.Entry<String, Integer> entry : map.entrySet()) {
+			counter.add(entry.getKey(), entry.getValue());
+		}
+		return counter;
+	}
+
+	/** Method removes every word. */
+	public void clear() {
+		allocate(16);
+	}
+
+	// Same value as String.hashCode(), so String keys can use their cached hash
+	private static int hash(char[] buffer, int offset, int length) {
+		int h = 0;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			h = 31 * h + buffer[i];
+		}
+		return h;
+	}
+
+	// Spread the high bits so similar words do not cluster in neighbouring slots
+	private int indexFor(int hash) {
+		int h = hash * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private int find(char[] buffer, int offset, int length, int hash) {
+		int slot = indexFor(hash);
+		while (true) {
+			String key = keys[slot];
+			if (key == null || (hashes[slot] == hash && matches(key, buffer, offset, length))) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private int find(String word, int hash) {
+		int slot = indexFor(hash);
+		while (true) {
+			String key = keys[slot];
+			if (key == null || (hashes[slot] == hash && key.equals(word))) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static boolean matches(String key, char[] buffer, int offset, int length) {
+		if (key.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key.charAt(i) != buffer[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int insert(int slot, String word, int hash, int count) {
+		keys[slot] = word;
+		hashes[slot] = hash;
+		counts[slot] = count;
+		total += count;
+		if (++size > resizeAt) {
+			resize();
+		}
+		return count;
+	}
+
+	private void allocate(int capacity) {
+		keys = new String[capacity];
+		hashes = new int[capacity];
+		counts = new int[capacity];
+		mask = capacity - 1;
+		resizeAt = (int) (capacity * LOAD_FACTOR);
+		size = 0;
+		total = 0;
+	}
+
+	private void resize() {
+		String[] oldKeys = keys;
+		int[] oldHashes = hashes;
+		int[] oldCounts = counts;
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = find(oldKeys[i], oldHashes[i]);
+				keys[slot] = oldKeys[i];
+				hashes[slot] = oldHashes[i];
+				counts[slot] = oldCounts[i];
+				total += oldCounts[i];
+				size++;
+			}
+		}
+	}
+
+	/** Cursor walks the table of a WordCounter without allocating an entry per word. */
+	public final class Cursor {
+
+		private int slot = -1;
+
+		private Cursor() {
+		}
+
+		/** Method moves to the next word.
+		 *  @return false when there are no more words */
+		public boolean next() {
+			while (++slot < keys.length) {
+				if (keys[slot] != null) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/** Method returns the current word.
+		 *  @return word at the cursor */
+		public String word() {
+			return keys[slot];
+		}
+
+		/** Method returns the count of the current word.
+		 *  @return count at the cursor */
+		public int count() {
+			return counts[slot];
+		}
+
+	}
+
+}
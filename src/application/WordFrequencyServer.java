@@ -0,0 +1,14 @@
+package application;
+
+/** Common interface of the server front ends (blocking SocketServer and non-blocking NioServer) 
+ *  so Main can start and stop whichever one is configured.
+ *  @author derekdileo */
+public interface WordFrequencyServer {
+
+	/** Method starts accepting Client connections on a background thread. */
+	void start();
+
+	/** Method stops accepting Client connections and releases the server's threads. */
+	void stop();
+
+}
@@ -0,0 +1,319 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A WordIndex is a read-only word count file accessed through a MappedByteBuffer, so only the pages a lookup
+ *  touches are read from disk and the counts never have to be loaded into the heap. The file holds:
+ *  <ul>
+ *  <li>a 64 byte header (magic, version, term count, total occurrences and the offset of each section)</li>
+ *  <li>the terms block: every word in UTF-8, sorted by unsigned byte order and stored back to back</li>
+ *  <li>the dictionary block: the offset of each term in the terms block (plus the end offset), so term i is found
+ *  in O(1) and a word in O(log n) by binary search</li>
+ *  <li>the frequency column: the frequency of each term, in term order</li>
+ *  <li>the rank section: term numbers in ranking order (frequency DESC, then word), so the top K is the first K entries</li>
+ *  </ul>
+ *  New job counts are merged in by streaming the sorted terms of the old file past the sorted words of the job into a
+ *  new file, which then replaces the old one. Only the job and 8 bytes per term (to sort the rank section) are held
+ *  in the heap. An index must fit in one mapping (2GB).
+ *  @author derekdileo */
+public class WordIndex {
+
+	private static final int MAGIC = 0x57464958; // "WFIX"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 64;
+
+	private final Path file;
+	private final MappedByteBuffer buffer;
+	private final int terms;
+	private final long total;
+	private final int termsOffset;
+	private final int dictOffset;
+	private final int freqOffset;
+	private final int rankOffset;
+
+	private WordIndex(Path file, MappedByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a word index");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(file + " has unsupported index version " + buffer.getInt(4));
+		}
+		this.terms = buffer.getInt(8);
+		this.total = buffer.getLong(16);
+		this.termsOffset = (int) buffer.getLong(24);
+		this.dictOffset = (int) buffer.getLong(32);
+		this.freqOffset = (int) buffer.getLong(40);
+		this.rankOffset = (int) buffer.getLong(48);
+		if (buffer.getLong(56) != buffer.capacity()) {
+			throw new IOException(file + " is truncated");
+		}
+	}
+
+	/** Method maps an index file, creating an empty index first if the file does not exist.
+	 *  @param file is the index file
+	 *  @return WordIndex reading the file
+	 *  @throws IOException if the file cannot be read or is not a word index */
+	public static WordIndex open(Path file) throws IOException {
+		if (!Files.exists(file)) {
+			write(new WordCounter(), file);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is larger than 2GB");
+			}
+			return new WordIndex(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/** Method writes the counts of a WordCounter as a new index file (replacing any file already there).
+	 *  @param counts holds each word and its frequency
+	 *  @param file is the index file
+	 *  @return WordIndex reading the new file
+	 *  @throws IOException if the file cannot be written */
+	public static WordIndex write(WordCounter counts, Path file) throws IOException {
+		return merge(null, counts, file);
+	}
+
+	/** Method merges job counts into an existing index and writes the result to a file. The old index is streamed
+	 *  term by term, so it is never loaded into the heap; file may be the file of base, which is replaced atomically.
+	 *  @param base is the existing index (null for none)
+	 *  @param job holds each word and the number of occurrences to add
+	 *  @param file is the index file to write
+	 *  @return WordIndex reading the new file
+	 *  @throws IOException if the file cannot be written */
+	public static WordIndex merge(WordIndex base, WordCounter job, Path file) throws IOException {
+		// Sort the job's words the way the terms block is sorted
+		byte[][] words = new byte[job.size()][];
+		int[] counts = new int[job.size()];
+		Integer[] order = new Integer[job.size()];
+		WordCounter.Cursor cursor = job.cursor();
+		for (int i = 0; cursor.next(); i++) {
+			words[i] = cursor.word().getBytes(StandardCharsets.UTF_8);
+			counts[i] = cursor.count();
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> compareBytes(words[a], words[b]));
+
+		// First pass: size of the merged terms block and number of terms
+		int baseTerms = base == null ? 0 : base.terms;
+		long termBytes = 0;
+		int merged = 0;
+		int i = 0;
+		int j = 0;
+		while (i < baseTerms || j < order.length) {
+			int cmp = i == baseTerms ? 1 : j == order.length ? -1 : base.compareTerm(i, words[order[j]]);
+			if (cmp <= 0) {
+				termBytes += base.termEnd(i) - base.termStart(i);
+				i++;
+				if (cmp == 0) {
+					j++;
+				}
+			} else {
+				termBytes += words[order[j]].length;
+				j++;
+			}
+			merged++;
+		}
+
+		// Layout: header, terms (padded to 4 bytes), dictionary (terms + 1 offsets), frequencies, ranks
+		long termsStart = HEADER_BYTES;
+		long dictStart = termsStart + ((termBytes + 3) & ~3L);
+		long freqStart = dictStart + 4L * (merged + 1);
+		long rankStart = freqStart + 4L * merged;
+		long length = rankStart + 4L * merged;
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Word index would be larger than 2GB");
+		}
+
+		// Second pass: write every section through a mapping of the new file
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		long[] ranking = new long[merged];
+		long occurrences = 0;
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+			int termPos = (int) termsStart;
+			i = 0;
+			j = 0;
+			for (int t = 0; t < merged; t++) {
+				int cmp = i == baseTerms ? 1 : j == order.length ? -1 : base.compareTerm(i, words[order[j]]);
+				int frequency;
+				out.putInt((int) dictStart + 4 * t, termPos - (int) termsStart);
+				if (cmp <= 0) {
+					ByteBuffer term = base.buffer.duplicate();
+					term.limit(base.termEnd(i)).position(base.termStart(i));
+					out.position(termPos);
+					out.put(term);
+					termPos = out.position();
+					frequency = base.frequencyAt(i);
+					if (cmp == 0) {
+						frequency = saturatedAdd(frequency, counts[order[j]]);
+						j++;
+					}
+					i++;
+				} else {
+					out.position(termPos);
+					out.put(words[order[j]]);
+					termPos = out.position();
+					frequency = counts[order[j]];
+					j++;
+				}
+				out.putInt((int) freqStart + 4 * t, frequency);
+				occurrences += frequency;
+				// Ascending order of this key is frequency DESC, then term number (word order) ASC; ~frequency is
+				// -frequency - 1 without overflow, so negative frequencies (from negative deltas) rank last
+				ranking[t] = ((long) ~frequency << 32) | t;
+			}
+			out.putInt((int) dictStart + 4 * merged, termPos - (int) termsStart);
+
+			Arrays.sort(ranking);
+			for (int r = 0; r < merged; r++) {
+				out.putInt((int) rankStart + 4 * r, (int) ranking[r]);
+			}
+
+			out.putInt(0, MAGIC);
+			out.putInt(4, VERSION);
+			out.putInt(8, merged);
+			out.putInt(12, 0);
+			out.putLong(16, occurrences);
+			out.putLong(24, termsStart);
+			out.putLong(32, dictStart);
+			out.putLong(40, freqStart);
+			out.putLong(48, rankStart);
+			out.putLong(56, length);
+			out.force();
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return open(file);
+	}
+
+	/** Method looks up the frequency of a word with a binary search of the dictionary.
+	 *  @param word is the word
+	 *  @return frequency of the word (or -1 if it is not in the index) */
+	public int frequency(String word) {
+		int id = find(word.getBytes(StandardCharsets.UTF_8));
+		return id < 0 ? -1 : frequencyAt(id);
+	}
+
+	/** Method returns the most frequent words from the rank section.
+	 *  @param k is the number of words wanted
+	 *  @return up to k words in ranking order */
+	public List<Word> top(int k) {
+		return scan(0, k);
+	}
+
+	/** Method returns a slice of the rank section.
+	 *  @param offset is the 0-based rank of the first word
+	 *  @param limit is the maximum number of words wanted
+	 *  @return up to limit words in ranking order (empty past the end) */
+	public List<Word> scan(int offset, int limit) {
+		int start = Math.min(Math.max(offset, 0), terms);
+		int end = (int) Math.min((long) start + Math.max(limit, 0), terms);
+		List<Word> words = new ArrayList<Word>(end - start);
+		for (int r = start; r < end; r++) {
+			int id = buffer.getInt(rankOffset + 4 * r);
+			words.add(new Word(termAt(id), frequencyAt(id)));
+		}
+		return words;
+	}
+
+	/** Method returns the number of distinct words.
+	 *  @return term count */
+	public int size() {
+		return terms;
+	}
+
+	/** Method returns the sum of all frequencies.
+	 *  @return total occurrences */
+	public long total() {
+		return total;
+	}
+
+	/** Method returns the file this index was read from.
+	 *  @return index file */
+	public Path getFile() {
+		return file;
+	}
+
+	// Binary search of the sorted terms; returns the term number or -1
+	private int find(byte[] key) {
+		int lo = 0;
+		int hi = terms - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int cmp = compareTerm(mid, key);
+			if (cmp < 0) {
+				lo = mid + 1;
+			} else if (cmp > 0) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	// Compares term id with key by unsigned bytes, without decoding the term
+	private int compareTerm(int id, byte[] key) {
+		int start = termStart(id);
+		int length = termEnd(id) - start;
+		int n = Math.min(length, key.length);
+		for (int k = 0; k < n; k++) {
+			int cmp = (buffer.get(start + k) & 0xFF) - (key[k] & 0xFF);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return length - key.length;
+	}
+
+	private int termStart(int id) {
+		return termsOffset + buffer.getInt(dictOffset + 4 * id);
+	}
+
+	private int termEnd(int id) {
+		return termsOffset + buffer.getInt(dictOffset + 4 * (id + 1));
+	}
+
+	private int frequencyAt(int id) {
+		return buffer.getInt(freqOffset + 4 * id);
+	}
+
+	private String termAt(int id) {
+		ByteBuffer term = buffer.duplicate();
+		term.limit(termEnd(id)).position(termStart(id));
+		byte[] bytes = new byte[term.remaining()];
+		term.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int compareBytes(byte[] a, byte[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int k = 0; k < n; k++) {
+			int cmp = (a[k] & 0xFF) - (b[k] & 0xFF);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return a.length - b.length;
+	}
+
+	private static int saturatedAdd(int a, int b) {
+		long sum = (long) a + b;
+		return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+	}
+
+}
@@ -1,30 +1,49 @@
 package application;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 
 /** The WordManager Class was created strictly to following along with a JUnit tutorial and uses the Word Class which has not
- *  been necessary since this application began using a database.
+ *  been necessary since this application began using a database. Words and frequencies are kept in a WordCounter,
+ *  so occurrences can also be counted straight from the tokenizer's buffer with countWord().
  * @author derekdileo */
 public class WordManager {
 	
-	Map<String, Word> wordList = new ConcurrentHashMap<String, Word>();
+	private final WordCounter counter = new WordCounter();
 	
-	public void addWord(String word, int frequency) {
+	public synchronized void addWord(String word, int frequency) {
 		Word newWord = new Word(word, frequency);
 		validateWord(newWord);
 		checkIfWordAlreadyExists(newWord);
-		wordList.put(generateKey(newWord), newWord);
+		counter.add(newWord.getWord(), newWord.getFrequency());
+	}
+	
+	/** Method adds one occurrence of the word held in a char range (no String is created for known words).
+	 * @param buffer holds the characters of the word
+	 * @param offset is the index of the first character
+	 * @param length is the number of characters
+	 * @return the new frequency of the word */
+	public synchronized int countWord(char[] buffer, int offset, int length) {
+		return counter.increment(buffer, offset, length);
+	}
+	
+	/** Method returns the frequency of a word.
+	 * @param word is the word to look up
+	 * @return frequency of the word (0 if not present) */
+	public synchronized int getFrequency(String word) {
+		return counter.get(word);
 	}
 
-	public Collection<Word> getAllWords() {
-		return wordList.values();
+	public synchronized Collection<Word> getAllWords() {
+		List<Word> words = new ArrayList<Word>(counter.size());
+		counter.forEach((word, frequency) -> words.add(new Word(word, frequency)));
+		return words;
 	}
 	
 	private void checkIfWordAlreadyExists(Word newWord) {
-		if(wordList.containsKey(generateKey(newWord))) {
+		if(counter.get(newWord.getWord()) > 0) {
 			throw new RuntimeException("Word Already Exists");
 		}
 	}
@@ -34,8 +53,4 @@ public class WordManager {
 		newWord.validateFrequency();
 	}
 	
-    private String generateKey(Word newWord) {
-        return String.format("%s-%d", newWord.getWord(), newWord.getFrequency());
-    }
-	
 }
@@ -0,0 +1,91 @@
+package application;
+
+import java.util.List;
+
+/** A WordStore keeps the running frequency of every word scraped by the server. The implementations are the MySQL
+ *  words table (DatabaseWordStore), an in-process store (MemoryWordStore) and a memory-mapped index file
+ *  (IndexWordStore), chosen with wordfreq.store=mysql (default), memory or index, so the server can run without
+ *  an external database. The mysql and index stores sit behind a WriteBehindBuffer unless
+ *  wordfreq.writeBehind.enabled=false.
+ *  Every ordered method ranks words by frequency (highest first) and then alphabetically, as TopWords.RANKING does.
+ *  @author derekdileo */
+public interface WordStore {
+
+	/** Method adds occurrences of one word, inserting the word if it is new.
+	 *  @param word is the word
+	 *  @param delta is the number of occurrences to add */
+	void increment(String word, int delta);
+
+	/** Method adds every count of a job to the store in one bulk operation.
+	 *  @param counts holds each distinct word and the number of occurrences to add */
+	void merge(WordCounter counts);
+
+	/** Method looks up the frequency of one word.
+	 *  @param word is the word
+	 *  @return frequency of the word (or -1 if it is not in the store) */
+	int frequency(String word);
+
+	/** Method returns the most frequent words.
+	 *  @param k is the number of words wanted
+	 *  @return up to k words in ranking order */
+	List<Word> top(int k);
+
+	/** Method returns a slice of all words in ranking order.
+	 *  @param offset is the 0-based rank of the first word
+	 *  @param limit is the maximum number of words wanted
+	 *  @return up to limit words (empty past the end) */
+	List<Word> scan(int offset, int limit);
+
+	/** Method returns the number of distinct words.
+	 *  @return size of the store */
+	int size();
+
+	/** Method removes every word. */
+	void clear();
+
+	/** Method returns a RankedWords view of the store which reads a page with scan() when it is asked for one.
+	 *  @return RankedWords backed by the store */
+	default RankedWords ranked() {
+		WordStore store = this;
+		return new RankedWords() {
+			@Override
+			public int size() {
+				return store.size();
+			}
+
+			@Override
+			public List<Word> get(int from, int count) {
+				return store.scan(from, count);
+			}
+		};
+	}
+
+	/** Method returns the store selected with wordfreq.store, created on first use.
+	 *  @return the shared WordStore */
+	static WordStore getDefault() {
+		return Default.STORE;
+	}
+
+	/** Holds the shared store, so it is only created (and the database only contacted) when it is first used. */
+	final class Default {
+		static final WordStore STORE = create(Settings.getString("store", "mysql"));
+
+		private Default() {
+		}
+
+		private static WordStore create(String name) {
+			if ("memory".equalsIgnoreCase(name)) {
+				return new MemoryWordStore();
+			} else if ("index".equalsIgnoreCase(name)) {
+				// Buffered jobs are merged into the index together, so the file is rewritten once per flush
+				IndexWordStore index = IndexWordStore.fromSettings();
+				return WriteBehindWordStore.wrap(index, (namespace, counts) -> {
+					index.merge(counts);
+					return true;
+				});
+			}
+			return WriteBehindWordStore.wrap(new DatabaseWordStore(), (namespace, counts) -> Database.bulkUpsert(counts) >= 0);
+		}
+	}
+
+}
@@ -0,0 +1,142 @@
+package application;
+
+import java.util.Locale;
+
+/** WordTokenizer splits text into lowercase words in a single pass over the characters. It produces the same words as
+ *  the original parseSite() pipeline (toLowerCase(), replaceAll("\\<.*?>", "") and split("[^a-zA-Z’]+")) without
+ *  building the whole document: characters are fed in as they are read, HTML tags are skipped, and each word is handed
+ *  to a TokenSink as soon as it ends. Memory is bounded by the longest word (plus the longest tag, which is kept in
+ *  case its closing '>' never arrives).
+ *  @author derekdileo */
+public class WordTokenizer {
+
+	// Right single quotation mark, kept inside words to allow contractions
+	private static final char APOSTROPHE = '’';
+
+	private final TokenSink sink;
+
+	// Characters of the word being built
+	private char[] token = new char[32];
+	private int tokenLength;
+
+	// Text seen since an unmatched '<' (the regex only removes a tag once its '>' is found)
+	private boolean inTag;
+	private final StringBuilder tagText = new StringBuilder();
+
+	// ASCII letters can only be lowercased with (c | 0x20) when the default locale has no special casing rules
+	private final boolean asciiFastPath;
+
+	/** Constructor
+	 *  @param sink receives every word found in the text */
+	public WordTokenizer(TokenSink sink) {
+		this.sink = sink;
+		String language = Locale.getDefault().getLanguage();
+		this.asciiFastPath = !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+	}
+
+	/** Method feeds a block of text to the tokenizer.
+	 *  @param text is the next part of the document */
+	public void feed(CharSequence text) {
+		for (int i = 0, n = text.length(); i < n; i++) {
+			feed(text.charAt(i));
+		}
+	}
+
+	/** Method feeds part of a CharSequence to the tokenizer without copying it.
+	 *  @param text holds the next part of the document
+	 *  @param start is the index of the first character to read
+	 *  @param end is the index after the last character to read */
+	public void feed(CharSequence text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			feed(text.charAt(i));
+		}
+	}
+
+	/** Method feeds part of a char array to the tokenizer.
+	 *  @param buffer holds the next part of the document
+	 *  @param offset is the index of the first character to read
+	 *  @param length is the number of characters to read */
+	public void feed(char[] buffer, int offset, int length) {
+		for (int i = offset, end = offset + length; i < end; i++) {
+			feed(buffer[i]);
+		}
+	}
+
+	/** Method feeds a single character to the tokenizer.
+	 *  @param c is the next character of the document */
+	public void feed(char c) {
+		if (inTag) {
+			if (c == '>') {
+				// Tag is complete: drop it, text on both sides joins up (as replaceAll does)
+				inTag = false;
+				tagText.setLength(0);
+			} else {
+				tagText.append(c);
+			}
+			return;
+		}
+		if (c == '<') {
+			inTag = true;
+			return;
+		}
+		text(c);
+	}
+
+	/** Method must be called after the last character: it emits the final word and
+	 *  treats an unclosed '<' as ordinary text, exactly as the regex would. */
+	public void finish() {
+		while (inTag) {
+			// '<' itself is not a letter, so it ends the current word
+			inTag = false;
+			endToken();
+			String pending = tagText.toString();
+			tagText.setLength(0);
+			feed(pending);
+		}
+		endToken();
+	}
+
+	private void text(char c) {
+		// Fast path for plain ASCII
+		if (c < 0x80 && (asciiFastPath || c < 'A' || c > 'Z')) {
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				append((char) (c | 0x20));
+			} else {
+				endToken();
+			}
+			return;
+		}
+		if (c == APOSTROPHE) {
+			append(c);
+			return;
+		}
+		// Anything else is lowercased the way String.toLowerCase() does it, since a few
+		// characters (e.g. the Kelvin sign or a dotted capital I) become ASCII letters
+		String lower = String.valueOf(c).toLowerCase();
+		for (int i = 0; i < lower.length(); i++) {
+			char l = lower.charAt(i);
+			if ((l >= 'a' && l <= 'z') || l == APOSTROPHE) {
+				append(l);
+			} else {
+				endToken();
+			}
+		}
+	}
+
+	private void append(char c) {
+		if (tokenLength == token.length) {
+			char[] bigger = new char[token.length * 2];
+			System.arraycopy(token, 0, bigger, 0, tokenLength);
+			token = bigger;
+		}
+		token[tokenLength++] = c;
+	}
+
+	private void endToken() {
+		if (tokenLength > 0) {
+			sink.token(token, 0, tokenLength);
+			tokenLength = 0;
+		}
+	}
+
+}
@@ -0,0 +1,438 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+/** WriteBehindBuffer collects word count deltas in memory and a background flusher writes them to a store in
+ *  batches, so a job does not wait for its counts to reach the database before the Client gets its reply.
+ *  Deltas are kept per namespace (a job id, or SHARED for the shared WordStore) and are appended to a local
+ *  write-ahead log before they are acknowledged; the log is replayed into the buffer when the server restarts.
+ *  <p>The log is a sequence of segment files (wal-(seq).log) of records: length, CRC32 and payload (namespace,
+ *  then word/delta pairs). Every flush starts a new segment, and the segments before it are deleted once all of
+ *  its batches have been written, so the log only holds deltas which may not have reached the store. A crash
+ *  between a batch reaching the store and the delete replays that batch again (at-least-once). A torn record
+ *  at the end of a segment is ignored on replay.</p>
+ *  Settings: wordfreq.writeBehind.enabled (default true), .walDir (default wordfreq-wal), .flushIntervalMillis
+ *  (default 200), .batchSize (words per store write, default 5000), .maxUnflushed (pending occurrences before
+ *  writers flush themselves, default 1000000) and .sync (fsync every append, default true).
+ *  @author derekdileo */
+public class WriteBehindBuffer implements Closeable {
+
+	/** Namespace of the shared WordStore. */
+	public static final long SHARED = 0;
+
+	/** Writes one batch of buffered counts to the backing store. */
+	public interface Sink {
+		/** Method writes a batch.
+		 *  @param namespace is the job id (or SHARED) the counts belong to
+		 *  @param counts holds the deltas to add
+		 *  @return true if the batch reached the store (false keeps it buffered for the next flush) */
+		boolean write(long namespace, WordCounter counts);
+	}
+
+	private final Sink sink;
+	private final Path dir;
+	private final int batchSize;
+	private final long maxUnflushed;
+	private final boolean sync;
+	private final ScheduledExecutorService flusher;
+
+	// Deltas not yet handed to the sink, and the sum of their occurrences
+	private Map<Long, WordCounter> pending = new HashMap<Long, WordCounter>();
+	private long pendingDelta;
+
+	// Current log segment
+	private long segment;
+	private FileChannel log;
+
+	// Only one flush at a time, so a reader which flushes also waits for a flush in progress
+	private final Object flushLock = new Object();
+
+	// Counters since the buffer was opened
+	private long flushes;
+	private long flushedWords;
+	private long failedBatches;
+	private long replayedRecords;
+
+	/** Constructor replays any log left in dir into the buffer and starts the background flusher.
+	 *  @param name names the flusher thread
+	 *  @param sink receives the batches
+	 *  @param dir holds the write-ahead log segments
+	 *  @param flushIntervalMillis is the time between background flushes
+	 *  @param batchSize is the most words handed to the sink in one write
+	 *  @param maxUnflushed is the number of pending occurrences above which append() flushes before returning
+	 *  @param sync forces every append to disk before it returns
+	 *  @throws IOException if the log cannot be read or created */
+	public WriteBehindBuffer(String name, Sink sink, Path dir, long flushIntervalMillis, int batchSize, long maxUnflushed, boolean sync)
+			throws IOException {
+		this.sink = sink;
+		this.dir = dir;
+		this.batchSize = Math.max(1, batchSize);
+		this.maxUnflushed = Math.max(1, maxUnflushed);
+		this.sync = sync;
+		Files.createDirectories(dir);
+		segment = replay() + 1;
+		log = openSegment(segment);
+
+		this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "write-behind-" + name);
+			t.setDaemon(true);
+			return t;
+		});
+		// Whatever was replayed is written straight away
+		long interval = Math.max(1, flushIntervalMillis);
+		flusher.scheduleWithFixedDelay(() -> {
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}, replayedRecords > 0 ? 0 : interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/** Method creates a buffer configured with wordfreq.writeBehind.*, logging to a subdirectory of the walDir.
+	 *  @param name is the subdirectory (and thread) name
+	 *  @param sink receives the batches
+	 *  @return WriteBehindBuffer
+	 *  @throws IOException if the log cannot be read or created */
+	public static WriteBehindBuffer fromSettings(String name, Sink sink) throws IOException {
+		return new WriteBehindBuffer(name, sink, Paths.get(Settings.getString("writeBehind.walDir", "wordfreq-wal"), name),
+				Settings.getLong("writeBehind.flushIntervalMillis", 200), Settings.getInt("writeBehind.batchSize", 5000),
+				Settings.getLong("writeBehind.maxUnflushed", 1000000), Settings.getBoolean("writeBehind.sync", true));
+	}
+
+	/** Method reports whether stores should be wrapped in a write-behind buffer (wordfreq.writeBehind.enabled).
+	 *  @return true unless disabled */
+	public static boolean isEnabled() {
+		return Settings.getBoolean("writeBehind.enabled", true);
+	}
+
+	/** Method logs a job's counts and adds them to the buffer. If more than maxUnflushed occurrences are
+	 *  pending afterwards, the caller flushes them itself, which slows writers down to the store's pace.
+	 *  @param namespace is the job id (or SHARED)
+	 *  @param counts holds the deltas to add
+	 *  @throws IOException if the log cannot be written (the counts are then not buffered) */
+	public void append(long namespace, WordCounter counts) throws IOException {
+		if (counts == null || counts.isEmpty()) {
+			return;
+		}
+		byte[] record = encode(namespace, counts);
+		boolean full;
+		synchronized (this) {
+			ByteBuffer buffer = ByteBuffer.wrap(record);
+			while (buffer.hasRemaining()) {
+				log.write(buffer);
+			}
+			if (sync) {
+				log.force(false);
+			}
+			add(namespace, counts);
+			full = pendingDelta > maxUnflushed;
+		}
+		if (full) {
+			flush();
+		}
+	}
+
+	/** Method writes every pending delta to the sink now. Batches which fail stay buffered for the next flush.
+	 *  @return true if every pending delta reached the store (false if some are still buffered) */
+	public boolean flush() {
+		synchronized (flushLock) {
+			Map<Long, WordCounter> taken;
+			long flushedSegment;
+			synchronized (this) {
+				if (pending.isEmpty()) {
+					return true;
+				}
+				taken = pending;
+				pending = new HashMap<Long, WordCounter>();
+				pendingDelta = 0;
+				flushedSegment = segment;
+				try {
+					// Later appends go to a new segment, so the old ones hold only what is being written now
+					log.close();
+					log = openSegment(++segment);
+				} catch (IOException e) {
+					System.out.println("Error starting write-ahead log segment in " + dir + ": " + e.getMessage());
+					e.printStackTrace();
+				}
+			}
+
+			boolean complete = true;
+			long words = 0;
+			for (Map.Entry<Long, WordCounter> entry : taken.entrySet()) {
+				for (WordCounter batch : split(entry.getValue())) {
+					boolean written;
+					try {
+						written = sink.write(entry.getKey(), batch);
+					} catch (RuntimeException e) {
+						e.printStackTrace();
+						written = false;
+					}
+					if (written) {
+						words += batch.size();
+					} else {
+						complete = false;
+						synchronized (this) {
+							failedBatches++;
+							add(entry.getKey(), batch);
+						}
+					}
+				}
+			}
+
+			synchronized (this) {
+				flushes++;
+				flushedWords += words;
+			}
+			// Logged deltas are only dropped once everything they cover is in the store
+			if (complete) {
+				deleteSegmentsThrough(flushedSegment);
+			}
+			return complete;
+		}
+	}
+
+	/** Method flushes and reads a word's frequency from the store, adding whatever delta is still buffered for it
+	 *  (a batch which failed, or counts appended since), so the result includes every append which has returned.
+	 *  @param namespace is the job id (or SHARED)
+	 *  @param word is the word
+	 *  @param store reads the word's frequency from the store (-1 if it is not stored)
+	 *  @return frequency of the word (or -1 if it is neither stored nor buffered) */
+	public int frequency(long namespace, String word, ToIntFunction<String> store) {
+		// No flush can move the pending delta into the store between the two reads
+		synchronized (flushLock) {
+			flush();
+			int stored = store.applyAsInt(word);
+			int delta = pending(namespace, word);
+			if (delta == 0) {
+				return stored;
+			}
+			return Math.max(stored, 0) + delta;
+		}
+	}
+
+	/** Method returns the pending delta of a word, for reads which want to include buffered counts.
+	 *  @param namespace is the job id (or SHARED)
+	 *  @param word is the word
+	 *  @return occurrences not yet written to the store */
+	public synchronized int pending(long namespace, String word) {
+		WordCounter counts = pending.get(namespace);
+		return counts == null ? 0 : counts.get(word);
+	}
+
+	/** Method reports whether any delta is waiting to be written.
+	 *  @return true if nothing is pending */
+	public synchronized boolean isEmpty() {
+		return pending.isEmpty();
+	}
+
+	/** Method returns the buffer's size and counters.
+	 *  @return Stats snapshot */
+	public synchronized Stats getStats() {
+		int words = 0;
+		for (WordCounter counts : pending.values()) {
+			words += counts.size();
+		}
+		return new Stats(words, pendingDelta, flushes, flushedWords, failedBatches, replayedRecords);
+	}
+
+	/** Method stops the background flusher, writes what is pending and closes the log. */
+	@Override
+	public void close() throws IOException {
+		flusher.shutdownNow();
+		flush();
+		synchronized (this) {
+			log.close();
+		}
+	}
+
+	// Adds counts to the pending map (caller holds the lock)
+	private void add(long namespace, WordCounter counts) {
+		WordCounter target = pending.get(namespace);
+		if (target == null) {
+			target = new WordCounter(counts.size());
+			pending.put(namespace, target);
+		}
+		target.merge(counts);
+		pendingDelta += counts.total();
+	}
+
+	// Splits counts into batches of at most batchSize words
+	private List<WordCounter> split(WordCounter counts) {
+		if (counts.size() <= batchSize) {
+			return Collections.singletonList(counts);
+		}
+		List<WordCounter> batches = new ArrayList<WordCounter>();
+		WordCounter batch = new WordCounter(batchSize);
+		WordCounter.Cursor cursor = counts.cursor();
+		while (cursor.next()) {
+			batch.add(cursor.word(), cursor.count());
+			if (batch.size() == batchSize) {
+				batches.add(batch);
+				batch = new WordCounter(batchSize);
+			}
+		}
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+	// Record: payload length, CRC32 of the payload, payload (namespace, word count, then word/delta pairs)
+	private static byte[] encode(long namespace, WordCounter counts) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(16 + counts.size() * 12);
+		DataOutputStream out = new DataOutputStream(payload);
+		out.writeLong(namespace);
+		out.writeInt(counts.size());
+		WordCounter.Cursor cursor = counts.cursor();
+		while (cursor.next()) {
+			out.writeUTF(cursor.word());
+			out.writeInt(cursor.count());
+		}
+		out.flush();
+		byte[] bytes = payload.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+
+		ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.length + 8);
+		DataOutputStream header = new DataOutputStream(record);
+		header.writeInt(bytes.length);
+		header.writeInt((int) crc.getValue());
+		header.write(bytes);
+		header.flush();
+		return record.toByteArray();
+	}
+
+	// Reads every segment into the buffer and returns the highest segment number found (0 if none)
+	private long replay() throws IOException {
+		long last = 0;
+		for (long seq : segments()) {
+			last = seq;
+			try (InputStream file = Files.newInputStream(segmentPath(seq))) {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+				while (true) {
+					byte[] payload;
+					int crc;
+					try {
+						int length = in.readInt();
+						crc = in.readInt();
+						if (length < 12 || length > 1 << 28) {
+							break;
+						}
+						payload = new byte[length];
+						in.readFully(payload);
+					} catch (EOFException e) {
+						break;
+					}
+					CRC32 check = new CRC32();
+					check.update(payload);
+					if ((int) check.getValue() != crc) {
+						System.out.println("Ignoring damaged write-ahead log record in " + segmentPath(seq));
+						break;
+					}
+					DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+					long namespace = record.readLong();
+					int n = record.readInt();
+					WordCounter counts = new WordCounter(n);
+					for (int i = 0; i < n; i++) {
+						counts.add(record.readUTF(), record.readInt());
+					}
+					add(namespace, counts);
+					replayedRecords++;
+				}
+			}
+		}
+		if (replayedRecords > 0) {
+			System.out.println("Replayed " + replayedRecords + " write-ahead log records from " + dir);
+		}
+		return last;
+	}
+
+	// Segment numbers in dir, in ascending order
+	private List<Long> segments() throws IOException {
+		List<Long> found = new ArrayList<Long>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "wal-*.log")) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					found.add(Long.parseLong(name.substring(4, name.length() - 4)));
+				} catch (NumberFormatException e) {
+					// Not one of ours
+				}
+			}
+		}
+		Collections.sort(found);
+		return found;
+	}
+
+	private void deleteSegmentsThrough(long last) {
+		try {
+			for (long seq : segments()) {
+				if (seq <= last) {
+					Files.deleteIfExists(segmentPath(seq));
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Error deleting write-ahead log segments in " + dir + ": " + e.getMessage());
+		}
+	}
+
+	private FileChannel openSegment(long seq) throws IOException {
+		return FileChannel.open(segmentPath(seq), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private Path segmentPath(long seq) {
+		return dir.resolve(String.format("wal-%019d.log", seq));
+	}
+
+	/** Immutable snapshot of the buffer. */
+	public static final class Stats {
+		public final int pendingWords;
+		public final long pendingDelta;
+		public final long flushes;
+		public final long flushedWords;
+		public final long failedBatches;
+		public final long replayedRecords;
+
+		Stats(int pendingWords, long pendingDelta, long flushes, long flushedWords, long failedBatches, long replayedRecords) {
+			this.pendingWords = pendingWords;
+			this.pendingDelta = pendingDelta;
+			this.flushes = flushes;
+			this.flushedWords = flushedWords;
+			this.failedBatches = failedBatches;
+			this.replayedRecords = replayedRecords;
+		}
+
+		@Override
+		public String toString() {
+			return "WriteBehindBuffer[pendingWords=" + pendingWords + ", pendingDelta=" + pendingDelta + ", flushes=" + flushes
+					+ ", flushedWords=" + flushedWords + ", failedBatches=" + failedBatches + ", replayedRecords=" + replayedRecords + "]";
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package application;
+
+import java.io.IOException;
+import java.util.List;
+
+/** WriteBehindJobStore puts a WriteBehindBuffer in front of a JobStore, with each job id as the buffer namespace:
+ *  a job's counts are logged and buffered and merge() returns at once, so the Client's reply does not wait for
+ *  them to reach the database. Reads and expiry flush first, so they see every merge which has returned:
+ *  frequency() adds whatever delta a failed flush left buffered, top() and ranked() throw an IllegalStateException
+ *  rather than answer without it, and expire() removes nothing until the buffer could be written.
+ *  @author derekdileo */
+public class WriteBehindJobStore implements JobStore {
+
+	private final JobStore store;
+	private final WriteBehindBuffer buffer;
+
+	/** Constructor
+	 *  @param store is the backing store
+	 *  @param buffer is the buffer whose sink writes to store */
+	public WriteBehindJobStore(JobStore store, WriteBehindBuffer buffer) {
+		this.store = store;
+		this.buffer = buffer;
+	}
+
+	/** Method wraps a store in a buffer configured with wordfreq.writeBehind.* (logging to the "jobs" subdirectory),
+	 *  unless write-behind is disabled or its log cannot be opened.
+	 *  @param store is the backing store
+	 *  @param sink writes a batch to store and reports whether it succeeded
+	 *  @return WriteBehindJobStore, or store itself */
+	public static JobStore wrap(JobStore store, WriteBehindBuffer.Sink sink) {
+		if (!WriteBehindBuffer.isEnabled()) {
+			return store;
+		}
+		try {
+			return new WriteBehindJobStore(store, WriteBehindBuffer.fromSettings("jobs", sink));
+		} catch (IOException e) {
+			System.out.println("Write-behind disabled, cannot open write-ahead log: " + e.getMessage());
+			return store;
+		}
+	}
+
+	@Override
+	public long begin(String website) {
+		return store.begin(website);
+	}
+
+	@Override
+	public void merge(long jobId, WordCounter counts) {
+		try {
+			buffer.append(jobId, counts);
+		} catch (IOException e) {
+			// Without the log the counts are written straight through
+			System.out.println("Error logging counts, writing them directly: " + e.getMessage());
+			store.merge(jobId, counts);
+		}
+	}
+
+	@Override
+	public int frequency(long jobId, String word) {
+		return buffer.frequency(jobId, word, w -> store.frequency(jobId, w));
+	}
+
+	@Override
+	public List<Word> top(long jobId, int k) {
+		flush();
+		return store.top(jobId, k);
+	}
+
+	@Override
+	public RankedWords ranked(long jobId) {
+		flush();
+		return store.ranked(jobId);
+	}
+
+	@Override
+	public int expire(long maxAgeMillis) {
+		// Counts still buffered for an expiring job would otherwise arrive after it is gone
+		if (!buffer.flush()) {
+			System.out.println("Not expiring jobs, buffered counts could not be written: " + buffer.getStats());
+			return 0;
+		}
+		return store.expire(maxAgeMillis);
+	}
+
+	/** Method returns the buffer in front of the store.
+	 *  @return WriteBehindBuffer */
+	public WriteBehindBuffer getBuffer() {
+		return buffer;
+	}
+
+	// Writes every buffered merge, or fails the read which would otherwise miss some
+	private void flush() {
+		if (!buffer.flush()) {
+			throw new IllegalStateException("Buffered counts could not be written to the job store: " + buffer.getStats());
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package application;
+
+import java.io.IOException;
+import java.util.List;
+
+/** WriteBehindWordStore puts a WriteBehindBuffer in front of a WordStore: merges are logged and buffered and
+ *  return at once, and the buffer's flusher writes them to the store in batches. Reads flush first, so they
+ *  still see every merge which has returned: frequency() adds whatever delta a failed flush left buffered, and
+ *  the other reads throw an IllegalStateException rather than answer without it. A ranked() view flushes once
+ *  when it is created, and a walk through scan() pages flushes at its first page.
+ *  @author derekdileo */
+public class WriteBehindWordStore implements WordStore {
+
+	private final WordStore store;
+	private final WriteBehindBuffer buffer;
+
+	/** Constructor
+	 *  @param store is the backing store
+	 *  @param buffer is the buffer whose sink writes to store */
+	public WriteBehindWordStore(WordStore store, WriteBehindBuffer buffer) {
+		this.store = store;
+		this.buffer = buffer;
+	}
+
+	/** Method wraps a store in a buffer configured with wordfreq.writeBehind.* (logging to the "words" subdirectory),
+	 *  unless write-behind is disabled or its log cannot be opened.
+	 *  @param store is the backing store
+	 *  @param sink writes a batch to store and reports whether it succeeded
+	 *  @return WriteBehindWordStore, or store itself */
+	public static WordStore wrap(WordStore store, WriteBehindBuffer.Sink sink) {
+		if (!WriteBehindBuffer.isEnabled()) {
+			return store;
+		}
+		try {
+			return new WriteBehindWordStore(store, WriteBehindBuffer.fromSettings("words", sink));
+		} catch (IOException e) {
+			System.out.println("Write-behind disabled, cannot open write-ahead log: " + e.getMessage());
+			return store;
+		}
+	}
+
+	@Override
+	public void increment(String word, int delta) {
+		WordCounter counts = new WordCounter(1);
+		counts.add(word, delta);
+		merge(counts);
+	}
+
+	@Override
+	public void merge(WordCounter counts) {
+		try {
+			buffer.append(WriteBehindBuffer.SHARED, counts);
+		} catch (IOException e) {
+			// Without the log the counts are written straight through
+			System.out.println("Error logging counts, writing them directly: " + e.getMessage());
+			store.merge(counts);
+		}
+	}
+
+	@Override
+	public int frequency(String word) {
+		return buffer.frequency(WriteBehindBuffer.SHARED, word, store::frequency);
+	}
+
+	@Override
+	public List<Word> top(int k) {
+		flush();
+		return store.top(k);
+	}
+
+	@Override
+	public List<Word> scan(int offset, int limit) {
+		// Later pages read what the first one flushed, so a walk does not wait behind every new merge
+		if (offset == 0) {
+			flush();
+		}
+		return store.scan(offset, limit);
+	}
+
+	@Override
+	public int size() {
+		flush();
+		return store.size();
+	}
+
+	@Override
+	public void clear() {
+		flush();
+		store.clear();
+	}
+
+	@Override
+	public RankedWords ranked() {
+		flush();
+		return store.ranked();
+	}
+
+	/** Method returns the buffer in front of the store.
+	 *  @return WriteBehindBuffer */
+	public WriteBehindBuffer getBuffer() {
+		return buffer;
+	}
+
+	// Writes every buffered merge, or fails the read which would otherwise miss some
+	private void flush() {
+		if (!buffer.flush()) {
+			throw new IllegalStateException("Buffered counts could not be written to the word store: " + buffer.getStats());
+		}
+	}
+
+}
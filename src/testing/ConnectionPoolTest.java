@@ -0,0 +1,114 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.ConnectionPool;
+
+/** Tests for the ConnectionPool against an in-memory H2 database.
+ *  @author derekdileo */
+class ConnectionPoolTest {
+
+	private static final String URL = "jdbc:h2:mem:pool-test;DB_CLOSE_DELAY=-1";
+
+	private ConnectionPool pool;
+
+	@AfterEach
+	void tearDown() {
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
+	@Test
+	@DisplayName("A released connection should be handed out again instead of opening a new one")
+	void shouldReuseReleasedConnection() throws Exception {
+		pool = new ConnectionPool(URL, "sa", "", 2, 60000, 1000, 5000);
+		Connection first = pool.borrow();
+		assertEquals(1, pool.getStats().inUse);
+		pool.release(first);
+		assertEquals(0, pool.getStats().inUse);
+		assertEquals(1, pool.getStats().idle);
+
+		Connection second = pool.borrow();
+		assertSame(first, second);
+		pool.release(second);
+		assertEquals(1, pool.getStats().created);
+		assertEquals(2, pool.getStats().borrowed);
+	}
+
+	@Test
+	@DisplayName("Borrowing from an exhausted pool should time out")
+	void shouldTimeOutWhenExhausted() throws Exception {
+		pool = new ConnectionPool(URL, "sa", "", 1, 60000, 100, 5000);
+		Connection held = pool.borrow();
+
+		long start = System.nanoTime();
+		assertThrows(SQLException.class, () -> pool.borrow());
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+		assertEquals(1, pool.getStats().timeouts);
+
+		pool.release(held);
+		pool.release(pool.borrow());
+	}
+
+	@Test
+	@DisplayName("Broken and long idle connections should be replaced or evicted")
+	void shouldDiscardBrokenAndIdleConnections() throws Exception {
+		pool = new ConnectionPool(URL, "sa", "", 2, 60000, 1000, 0);
+		Connection broken = pool.borrow();
+		pool.release(broken);
+		broken.close();
+
+		Connection fresh = pool.borrow();
+		assertNotSame(broken, fresh);
+		assertFalse(fresh.isClosed());
+		assertEquals(1, pool.getStats().invalidated);
+		pool.release(fresh);
+		pool.close();
+
+		// The evictor runs at least every second
+		pool = new ConnectionPool(URL, "sa", "", 2, 50, 1000, 5000);
+		Connection idle = pool.borrow();
+		pool.release(idle);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (pool.getStats().evicted == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(1, pool.getStats().evicted);
+		assertEquals(0, pool.getStats().idle);
+		assertTrue(idle.isClosed());
+	}
+
+	@Test
+	@DisplayName("Releasing a connection twice or one from elsewhere should not let the pool grow")
+	void shouldIgnoreDoubleAndForeignRelease() throws Exception {
+		pool = new ConnectionPool(URL, "sa", "", 1, 60000, 100, 5000);
+		Connection conn = pool.borrow();
+		pool.release(conn);
+		pool.release(conn);
+		try (Connection foreign = DriverManager.getConnection(URL, "sa", "")) {
+			pool.release(foreign);
+		}
+		assertEquals(0, pool.getStats().inUse);
+		assertEquals(1, pool.getStats().idle);
+
+		Connection held = pool.borrow();
+		assertThrows(SQLException.class, () -> pool.borrow());
+		pool.release(held);
+	}
+
+}
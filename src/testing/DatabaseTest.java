@@ -4,8 +4,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
@@ -24,6 +26,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import application.Database;
+import application.RankedWords;
+import application.Word;
 
 class DatabaseTest {
 
@@ -85,6 +89,41 @@ class DatabaseTest {
 		assertNotEquals(5, frequency);
 	}
 	
+	@DisplayName("Streaming and keyset pages should walk the table in ranking order")
+	@Test
+	void shouldStreamResultsInRankingOrder() {
+		Database.bulkUpsert(Map.of("nevermore", 9, "quoth", 3, "raven", 3, "door", 1));
+		try {
+			List<String> streamed = new ArrayList<String>();
+			int rows = Database.streamResults(null, 0, word -> streamed.add(word.getWord() + "=" + word.getFrequency()));
+			assertEquals(streamed.size(), rows);
+			assertEquals(Arrays.asList("nevermore=9", "The=5", "quoth=3", "raven=3", "door=1"), streamed.subList(0, 5));
+			assertEquals("nevermore", Database.getTopResults(1).get(0).getWord());
+			
+			// Pages of two, continued from the last word of each page
+			List<String> walked = new ArrayList<String>();
+			RankedWords ranked = Database.getRankedWords();
+			for (int from = 0; from < ranked.size(); from += 2) {
+				for (Word word : ranked.get(from, 2)) {
+					walked.add(word.getWord() + "=" + word.getFrequency());
+				}
+			}
+			assertEquals(streamed, walked);
+			
+			List<Word> after = Database.getResultsPageAfter(new Word("quoth", 3), 2);
+			assertEquals("raven", after.get(0).getWord());
+			assertEquals("door", after.get(1).getWord());
+		} finally {
+			for (String word : new String[] { "nevermore", "quoth", "raven", "door" }) {
+				try {
+					Database.delete(word);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+	
 	@Nested
 	class RepeatedTests {
 		@DisplayName("Search for words not in table")
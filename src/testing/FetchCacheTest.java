@@ -0,0 +1,176 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+import application.FetchCache;
+
+/** Tests for the on-disk FetchCache against an in-process HTTP server which honours If-None-Match.
+ *  @author derekdileo */
+class FetchCacheTest {
+
+	@TempDir
+	Path dir;
+
+	private HttpServer server;
+	private final Map<String, String> pages = new ConcurrentHashMap<String, String>();
+	private final AtomicInteger fullResponses = new AtomicInteger();
+	private final AtomicInteger notModified = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			String body = pages.get(exchange.getRequestURI().getPath());
+			if (body == null) {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+				return;
+			}
+			String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+			exchange.getResponseHeaders().set("ETag", etag);
+			if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				notModified.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+			fullResponses.incrementAndGet();
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		server.stop(0);
+	}
+
+	@Test
+	@DisplayName("An unchanged page should be revalidated and served from disk")
+	void shouldServeUnchangedPageFromDisk() throws IOException {
+		pages.put("/raven", "Once upon a midnight dreary");
+		FetchCache cache = new FetchCache(dir, 1 << 20);
+
+		assertEquals("Once upon a midnight dreary", read(cache, "/raven"));
+		assertEquals("Once upon a midnight dreary", read(cache, "/raven"));
+		assertEquals(1, fullResponses.get());
+		assertEquals(1, notModified.get());
+		FetchCache.Stats stats = cache.getStats();
+		assertEquals(1, stats.hits);
+		assertEquals(1, stats.misses);
+		assertEquals(1, stats.entries);
+
+		// A changed page is downloaded again
+		pages.put("/raven", "Quoth the Raven");
+		assertEquals("Quoth the Raven", read(cache, "/raven"));
+		assertEquals(2, fullResponses.get());
+		assertEquals("Quoth the Raven", read(cache, "/raven"));
+		assertEquals(2, cache.getStats().hits);
+	}
+
+	@Test
+	@DisplayName("A page read only partly should still be cached whole")
+	void shouldCachePartlyReadPage() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			sb.append("nevermore ");
+		}
+		pages.put("/long", sb.toString());
+		FetchCache cache = new FetchCache(dir, 1 << 20);
+
+		try (FetchCache.Page page = cache.open(url("/long"))) {
+			assertEquals('n', page.getBody().read());
+			assertFalse(page.cutOff());
+		}
+		assertEquals(sb.toString(), read(cache, "/long"));
+		assertEquals(1, fullResponses.get());
+	}
+
+	@Test
+	@DisplayName("Least recently used pages should be evicted first")
+	void shouldEvictLeastRecentlyUsed() throws IOException {
+		String body = new String(new char[100]).replace('\0', 'x');
+		pages.put("/a", body);
+		pages.put("/b", body);
+		pages.put("/c", body);
+		FetchCache cache = new FetchCache(dir, 250);
+		read(cache, "/a");
+		read(cache, "/b");
+		read(cache, "/a");
+		read(cache, "/c");
+
+		FetchCache.Stats stats = cache.getStats();
+		assertEquals(1, stats.evictions);
+		assertEquals(200, stats.bytes);
+
+		// "/b" was the least recently used, so it is downloaded again
+		int before = fullResponses.get();
+		read(cache, "/a");
+		assertEquals(before, fullResponses.get());
+		read(cache, "/b");
+		assertEquals(before + 1, fullResponses.get());
+	}
+
+	@Test
+	@DisplayName("Cached pages should survive a restart")
+	void shouldReloadFromDisk() throws IOException {
+		pages.put("/raven", "Nevermore");
+		read(new FetchCache(dir, 1 << 20), "/raven");
+
+		FetchCache reopened = new FetchCache(dir, 1 << 20);
+		assertEquals(1, reopened.getStats().entries);
+		assertEquals("Nevermore", read(reopened, "/raven"));
+		assertEquals(1, reopened.getStats().hits);
+		assertEquals(1, fullResponses.get());
+	}
+
+	@Test
+	@DisplayName("Non-HTTP pages should bypass the cache")
+	void shouldBypassFileUrls() throws IOException {
+		FetchCache cache = new FetchCache(dir, 1 << 20);
+		URL file = FetchCacheTest.class.getResource("/application/scrape.txt");
+		try (FetchCache.Page page = cache.open(file)) {
+			assertFalse(page.isFromCache());
+			assertTrue(page.getBody().read() >= 0);
+		}
+		assertEquals(0, cache.getStats().misses);
+		assertNull(pages.get("/missing"));
+	}
+
+	private String read(FetchCache cache, String path) throws IOException {
+		try (FetchCache.Page page = cache.open(url(path)); InputStream in = page.getBody()) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private URL url(String path) throws IOException {
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+}
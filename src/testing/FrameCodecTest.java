@@ -0,0 +1,111 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import application.Encoder;
+import application.FrameCodec;
+
+/** Tests for the binary frame format and the Encoder built on it.
+ *  @author derekdileo */
+class FrameCodecTest {
+
+	@ParameterizedTest
+	@DisplayName("Varints should round trip and use one byte per seven bits")
+	@ValueSource(ints = {0, 1, 127, 128, 16383, 16384, 2097151, Integer.MAX_VALUE})
+	void shouldRoundTripVarints(int value) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FrameCodec.writeVarint(out, value);
+		int expectedLength = value == 0 ? 1 : (31 - Integer.numberOfLeadingZeros(value)) / 7 + 1;
+		assertEquals(expectedLength, out.size());
+		assertEquals(value, FrameCodec.readVarint(ByteBuffer.wrap(out.toByteArray())));
+	}
+
+	@Test
+	@DisplayName("Decoder should rebuild frames split at every byte boundary")
+	void shouldDecodeSplitFrames() throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (int i = 0; i < 5; i++) {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			FrameCodec.writeString(payload, "nevermore’" + i);
+			FrameCodec.writeVarint(payload, 300 * i);
+			FrameCodec.writeFrame(stream, FrameCodec.WORDS, payload);
+			FrameCodec.writeFrame(stream, FrameCodec.END);
+		}
+		byte[] bytes = stream.toByteArray();
+
+		for (int split = 1; split < bytes.length; split++) {
+			FrameCodec.Decoder decoder = new FrameCodec.Decoder();
+			List<FrameCodec.Frame> frames = new ArrayList<FrameCodec.Frame>();
+			for (int off = 0; off < bytes.length; off += split) {
+				decoder.feed(ByteBuffer.wrap(bytes, off, Math.min(split, bytes.length - off)));
+				FrameCodec.Frame frame;
+				while ((frame = decoder.next()) != null) {
+					frames.add(frame);
+				}
+			}
+			assertEquals(10, frames.size());
+			assertEquals(FrameCodec.WORDS, frames.get(4).type);
+			assertEquals("nevermore’2", FrameCodec.readString(frames.get(4).payload));
+			assertEquals(600, FrameCodec.readVarint(frames.get(4).payload));
+			assertEquals(FrameCodec.END, frames.get(5).type);
+		}
+
+		// The blocking reader sees the same frames
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+		int count = 0;
+		while (FrameCodec.readFrame(in) != null) {
+			count++;
+		}
+		assertEquals(10, count);
+	}
+
+	@Test
+	@DisplayName("Handshake should settle on the lower of the two versions")
+	void shouldNegotiateVersion() {
+		assertTrue(FrameCodec.isHandshake(FrameCodec.handshake(1)[0]));
+		assertFalse(FrameCodec.isHandshake('h'));
+		assertEquals(1, FrameCodec.negotiate(FrameCodec.handshake(1)));
+		assertEquals(FrameCodec.VERSION, FrameCodec.negotiate(FrameCodec.handshake(100)));
+		assertEquals(-1, FrameCodec.negotiate(FrameCodec.handshake(0)));
+		assertEquals(-1, FrameCodec.negotiate("http".getBytes()));
+	}
+
+	@Test
+	@DisplayName("Oversized payloads should be rejected before they are buffered")
+	void shouldRejectOversizedFrames() throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		stream.write(FrameCodec.REQUEST);
+		FrameCodec.writeVarint(stream, FrameCodec.MAX_PAYLOAD + 1);
+		FrameCodec.Decoder decoder = new FrameCodec.Decoder();
+		decoder.feed(ByteBuffer.wrap(stream.toByteArray()));
+		assertThrows(IOException.class, decoder::next);
+		assertThrows(IOException.class, () -> FrameCodec.readFrame(new ByteArrayInputStream(stream.toByteArray())));
+		assertNull(new FrameCodec.Decoder().next());
+	}
+
+	@Test
+	@DisplayName("Encoder should round trip fields which contain commas")
+	void shouldEncodeFieldsWithCommas() throws IOException {
+		Encoder encoder = new Encoder();
+		String[] fields = { "https://example.com/a,b", "<h1>Once, upon</h1>", "end" };
+		assertArrayEquals(fields, encoder.decode(encoder.encode(fields)));
+	}
+
+}
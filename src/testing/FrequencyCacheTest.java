@@ -0,0 +1,116 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.FrequencyCache;
+
+/** Tests for the read-through FrequencyCache, with a map standing in for the words table.
+ *  @author derekdileo */
+class FrequencyCacheTest {
+
+	private final Map<String, Integer> table = new HashMap<String, Integer>();
+	private final AtomicInteger reads = new AtomicInteger();
+	private final Function<String, Integer> loader = word -> {
+		reads.incrementAndGet();
+		Integer frequency = table.get(word);
+		return frequency == null ? FrequencyCache.ABSENT : frequency;
+	};
+
+	@Test
+	@DisplayName("Words present and absent should be read once and then served from the cache")
+	void shouldCacheHitsAndAbsentWords() {
+		FrequencyCache cache = new FrequencyCache(100, 0);
+		table.put("raven", 3);
+
+		assertEquals(3, cache.get("raven", loader));
+		assertEquals(3, cache.get("raven", loader));
+		assertEquals(-1, cache.get("lenore", loader));
+		assertEquals(-1, cache.get("lenore", loader));
+		assertEquals(2, reads.get());
+
+		// A failed read is passed on but not cached
+		assertNull(cache.get("door", word -> null));
+		assertEquals(-1, cache.get("door", loader));
+
+		FrequencyCache.Stats stats = cache.getStats();
+		assertEquals(2, stats.hits);
+		assertEquals(1, stats.negativeHits);
+		assertEquals(4, stats.misses);
+		assertEquals(0.333, stats.getHitRatio(), 0.001);
+	}
+
+	@Test
+	@DisplayName("Invalidating a word should drop every spelling of its row")
+	void shouldInvalidate() {
+		FrequencyCache cache = new FrequencyCache(100, 0);
+		assertEquals(-1, cache.get("The", loader));
+		table.put("The", 5);
+		cache.invalidate("the");
+		assertEquals(5, cache.get("The", loader));
+
+		table.put("The", 7);
+		cache.clear();
+		assertEquals(7, cache.get("The", loader));
+		assertEquals(3, reads.get());
+	}
+
+	@Test
+	@DisplayName("A read overtaken by an invalidation should not cache its stale value")
+	void shouldNotCacheStaleRead() throws Exception {
+		FrequencyCache cache = new FrequencyCache(100, 0);
+		table.put("quoth", 1);
+		CountDownLatch reading = new CountDownLatch(1);
+		CountDownLatch written = new CountDownLatch(1);
+		ExecutorService reader = Executors.newSingleThreadExecutor();
+		try {
+			Future<Integer> stale = reader.submit(() -> cache.get("quoth", word -> {
+				int frequency = table.get(word);
+				reading.countDown();
+				try {
+					written.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return frequency;
+			}));
+			assertTrue(reading.await(5, TimeUnit.SECONDS));
+			table.put("quoth", 2);
+			cache.invalidate("quoth");
+			written.countDown();
+
+			assertEquals(1, stale.get(5, TimeUnit.SECONDS));
+			assertEquals(2, cache.get("quoth", loader));
+			assertEquals(1, cache.getStats().staleLoads);
+		} finally {
+			reader.shutdownNow();
+		}
+	}
+
+	@Test
+	@DisplayName("The cache should stay within its bound by evicting the least recently used words")
+	void shouldEvict() {
+		FrequencyCache cache = new FrequencyCache(64, 0);
+		for (int i = 0; i < 1000; i++) {
+			cache.get("word" + i, loader);
+		}
+		FrequencyCache.Stats stats = cache.getStats();
+		assertTrue(stats.entries <= 64, "entries " + stats.entries);
+		assertEquals(1000 - stats.entries, stats.evictions);
+	}
+
+}
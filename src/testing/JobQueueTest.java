@@ -0,0 +1,89 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.JobQueue;
+
+/** Tests for the bounded JobQueue.
+ *  @author derekdileo */
+class JobQueueTest {
+
+	private JobQueue queue;
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		if (queue != null) {
+			queue.shutdown();
+		}
+	}
+
+	@Test
+	@DisplayName("A full queue should reject jobs at once with a retry-after estimate")
+	void shouldRejectWhenFull() throws Exception {
+		queue = new JobQueue(1, 2);
+		CountDownLatch started = new CountDownLatch(1);
+		Future<String> running = queue.submit(() -> {
+			started.countDown();
+			release.await();
+			return "first";
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		Future<String> second = queue.submit(() -> "second");
+		Future<String> third = queue.submit(() -> "third");
+
+		JobQueue.Stats stats = queue.getStats();
+		assertEquals(1, stats.active);
+		assertEquals(2, stats.depth);
+
+		long start = System.nanoTime();
+		JobQueue.BusyException busy = assertThrows(JobQueue.BusyException.class, () -> queue.submit(() -> "fourth"));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertTrue(busy.getRetryAfterSeconds() >= 1);
+
+		release.countDown();
+		assertEquals("first", running.get(5, TimeUnit.SECONDS));
+		assertEquals("second", second.get(5, TimeUnit.SECONDS));
+		assertEquals("third", third.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	@DisplayName("Stats should count every job and its wait and service times")
+	void shouldRecordStats() throws Exception {
+		queue = new JobQueue(2, 4);
+		for (int i = 0; i < 6; i++) {
+			queue.submit(() -> {
+				release.await();
+				Thread.sleep(5);
+				return null;
+			});
+		}
+		assertThrows(JobQueue.BusyException.class, () -> queue.submit(() -> null));
+		release.countDown();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (queue.getStats().completed < 6 && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		JobQueue.Stats stats = queue.getStats();
+		assertEquals(6, stats.submitted);
+		assertEquals(1, stats.rejected);
+		assertEquals(6, stats.completed);
+		assertEquals(0, stats.depth);
+		assertEquals(6, stats.waits.count);
+		assertEquals(6, stats.services.count);
+		assertTrue(stats.services.getMeanNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+	}
+
+}
@@ -0,0 +1,71 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import application.JobResult;
+import application.TopWords;
+import application.WordCounter;
+
+/** Tests that all results streamed page by page read the same as one complete list.
+ *  @author derekdileo */
+class JobResultTest {
+
+	private static JobResult result;
+
+	@BeforeAll
+	static void setUpBeforeClass() throws Exception {
+		WordCounter counts = new WordCounter();
+		Random random = new Random(11);
+		for (int i = 0; i < 20000; i++) {
+			counts.add("word" + random.nextInt(1500), 1);
+		}
+		result = new JobResult(TopWords.select(counts, 10), TopWords.ranked(counts));
+	}
+
+	@ParameterizedTest
+	@DisplayName("All results should not depend on the page size")
+	@ValueSource(ints = {1, 7, 100, 100000})
+	void shouldStreamSameTextForAnyPageSize(int pageSize) throws IOException {
+		StringWriter sw = new StringWriter();
+		result.writeAll(sw, pageSize);
+		assertEquals(result.getAll(), sw.toString());
+		assertTrue(sw.toString().startsWith("\nAll Results\n\n,"));
+	}
+
+	@Test
+	@DisplayName("Pages should be slices of all results")
+	void shouldSliceAllResults() throws IOException {
+		String all = result.getAll();
+		StringBuilder lines = new StringBuilder();
+		int size = result.size();
+		for (int from = 0; from < size; from += 250) {
+			StringWriter sw = new StringWriter();
+			result.writeRange(sw, from, from + 250);
+			String page = sw.toString();
+			String heading = "\nResults " + (from + 1) + "-" + Math.min(from + 250, size) + " of " + size + "\n\n,";
+			assertTrue(page.startsWith(heading), page.substring(0, 40));
+			lines.append(page.substring(heading.length()));
+		}
+		assertEquals(all.substring("\nAll Results\n\n,".length()), lines.toString());
+	}
+
+	@Test
+	@DisplayName("Ranges past the end should be empty")
+	void shouldReturnNoResultsPastTheEnd() throws IOException {
+		StringWriter sw = new StringWriter();
+		result.writeRange(sw, result.size(), result.size() + 10);
+		assertEquals("\nNo Results\n\n,", sw.toString());
+	}
+
+}
@@ -0,0 +1,81 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.KeysetRankedWords;
+import application.RankedWords;
+import application.Word;
+
+/** Tests for KeysetRankedWords over a list standing in for the ranked words table.
+ *  @author derekdileo */
+class KeysetRankedWordsTest {
+
+	private final List<Word> table = new ArrayList<Word>();
+	private final List<String> reads = new ArrayList<String>();
+	private RankedWords ranked;
+
+	@BeforeEach
+	void setUp() {
+		String[] words = { "nevermore", "quoth", "raven", "door", "lenore" };
+		int[] frequencies = { 9, 3, 3, 2, 1 };
+		for (int i = 0; i < words.length; i++) {
+			table.add(new Word(words[i], frequencies[i]));
+		}
+
+		RankedWords byOffset = new RankedWords() {
+			@Override
+			public int size() {
+				return table.size();
+			}
+
+			@Override
+			public List<Word> get(int from, int count) {
+				reads.add("offset " + from);
+				return new ArrayList<Word>(table.subList(Math.min(from, table.size()), Math.min(from + count, table.size())));
+			}
+		};
+		ranked = new KeysetRankedWords(byOffset, (after, limit) -> {
+			reads.add("after " + (after == null ? null : after.getWord()));
+			// Rows after (frequency, word) in ORDER BY frequency DESC, word
+			List<Word> page = new ArrayList<Word>();
+			for (Word word : table) {
+				if (page.size() < limit && (after == null || word.getFrequency() < after.getFrequency()
+						|| (word.getFrequency() == after.getFrequency() && word.getWord().compareTo(after.getWord()) > 0))) {
+					page.add(word);
+				}
+			}
+			return page;
+		});
+	}
+
+	@Test
+	@DisplayName("Walking the pages in order should continue from the last word instead of an offset")
+	void shouldWalkByKeyset() {
+		List<String> walked = new ArrayList<String>();
+		for (int from = 0; from < ranked.size(); from += 2) {
+			for (Word word : ranked.get(from, 2)) {
+				walked.add(word.getWord());
+			}
+		}
+		assertEquals(List.of("nevermore", "quoth", "raven", "door", "lenore"), walked);
+		assertEquals(List.of("after null", "after quoth", "after door"), reads);
+	}
+
+	@Test
+	@DisplayName("A jump to another rank should read by offset and the walk should continue from there")
+	void shouldFallBackToOffset() {
+		assertEquals("raven", ranked.get(2, 1).get(0).getWord());
+		assertEquals("door", ranked.get(3, 1).get(0).getWord());
+		assertEquals("quoth", ranked.get(1, 1).get(0).getWord());
+		assertEquals(0, ranked.get(5, 2).size());
+		assertEquals(List.of("offset 2", "after raven", "offset 1", "offset 5"), reads);
+	}
+
+}
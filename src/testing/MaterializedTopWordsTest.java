@@ -0,0 +1,128 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.MaterializedTopWords;
+import application.Word;
+import application.WordCounter;
+
+/** Tests for MaterializedTopWords against a map standing in for the words table.
+ *  @author derekdileo */
+class MaterializedTopWordsTest {
+
+	private final Map<String, Integer> table = new HashMap<String, Integer>();
+
+	@Test
+	@DisplayName("The top words should match the table after every merge")
+	void shouldStayConsistentWithMerges() {
+		MaterializedTopWords top = new MaterializedTopWords(20);
+		Random random = new Random(42);
+		int refills = 0;
+		for (int round = 0; round < 500; round++) {
+			// Zipf-like merges: a few common words and a long tail
+			WordCounter deltas = new WordCounter();
+			for (int i = 0; i < 50; i++) {
+				int rank = (int) Math.floor(Math.pow(400, random.nextDouble()));
+				deltas.add("w" + rank, 1 + random.nextInt(3));
+			}
+			top.beginWrite();
+			WordCounter.Cursor cursor = deltas.cursor();
+			while (cursor.next()) {
+				table.merge(cursor.word(), cursor.count(), Integer::sum);
+			}
+			top.applied(deltas);
+
+			List<Word> words = top.get(10);
+			if (words == null) {
+				assertTrue(top.refill(top.beginRefill(), ranking(20)));
+				words = top.get(10);
+				refills++;
+			}
+			assertEquals(names(ranking(10)), names(words), "round " + round);
+		}
+		assertTrue(refills < 250, "refills " + refills);
+	}
+
+	@Test
+	@DisplayName("New words should be added while the whole table is known, and set frequencies should invalidate")
+	void shouldTrackSmallTable() {
+		MaterializedTopWords top = new MaterializedTopWords(10);
+		assertNull(top.get(3));
+		assertTrue(top.refill(top.beginRefill(), ranking(10)));
+		assertEquals(0, top.get(3).size());
+
+		WordCounter deltas = new WordCounter();
+		deltas.add("raven", 3);
+		deltas.add("door", 1);
+		top.beginWrite();
+		top.applied(deltas);
+		assertEquals(List.of("raven=3", "door=1"), names(top.get(3)));
+		assertTrue(top.getStats().complete);
+
+		top.beginWrite();
+		top.invalidated();
+		assertNull(top.get(1));
+	}
+
+	@Test
+	@DisplayName("A refill which overlapped a write should not be installed")
+	void shouldNotInstallStaleRefill() {
+		MaterializedTopWords top = new MaterializedTopWords(10);
+		long version = top.beginRefill();
+		top.beginWrite();
+		assertEquals(-1, top.beginRefill());
+		WordCounter deltas = new WordCounter();
+		deltas.add("raven", 1);
+		top.applied(deltas);
+
+		assertFalse(top.refill(version, new ArrayList<Word>()));
+		assertNull(top.get(1));
+	}
+
+	@Test
+	@DisplayName("The list should expire after the TTL, so changes made by another server are read")
+	void shouldExpire() throws InterruptedException {
+		MaterializedTopWords top = new MaterializedTopWords(10, 50);
+		table.put("raven", 3);
+		assertTrue(top.refill(top.beginRefill(), ranking(10)));
+		assertEquals(List.of("raven=3"), names(top.get(1)));
+
+		// Written by another server, so this one's list is not told
+		table.put("nevermore", 5);
+		Thread.sleep(80);
+		assertNull(top.get(1));
+		assertEquals(1, top.getStats().expirations);
+		assertTrue(top.refill(top.beginRefill(), ranking(10)));
+		assertEquals(List.of("nevermore=5", "raven=3"), names(top.get(2)));
+	}
+
+	private List<Word> ranking(int limit) {
+		List<Word> ranked = new ArrayList<Word>();
+		for (Map.Entry<String, Integer> entry : table.entrySet()) {
+			ranked.add(new Word(entry.getKey(), entry.getValue()));
+		}
+		ranked.sort((a, b) -> a.getFrequency() != b.getFrequency() ? b.getFrequency() - a.getFrequency() : a.getWord().compareTo(b.getWord()));
+		return new ArrayList<Word>(ranked.subList(0, Math.min(limit, ranked.size())));
+	}
+
+	private static List<String> names(List<Word> words) {
+		List<String> names = new ArrayList<String>();
+		for (Word word : words) {
+			names.add(word.getWord() + "=" + word.getFrequency());
+		}
+		return names;
+	}
+
+}
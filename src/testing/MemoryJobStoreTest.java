@@ -0,0 +1,63 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static testing.WordFixtures.counts;
+import static testing.WordFixtures.words;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.JobStore;
+import application.MemoryJobStore;
+
+/** Tests for the in-process MemoryJobStore.
+ *  @author derekdileo */
+class MemoryJobStoreTest {
+
+	private JobStore jobs;
+
+	@BeforeEach
+	void setUp() {
+		jobs = new MemoryJobStore();
+	}
+
+	@Test
+	@DisplayName("Each job should only see its own counts")
+	void shouldIsolateJobs() {
+		long raven = jobs.begin("https://example.com/raven");
+		long bells = jobs.begin("https://example.com/bells");
+		assertNotEquals(raven, bells);
+
+		jobs.merge(raven, counts("raven", 3, "nevermore", 2));
+		jobs.merge(bells, counts("bells", 5, "nevermore", 1));
+
+		assertEquals(2, jobs.frequency(raven, "nevermore"));
+		assertEquals(1, jobs.frequency(bells, "nevermore"));
+		assertEquals(-1, jobs.frequency(raven, "bells"));
+		assertEquals("[raven, nevermore]", words(jobs.top(raven, 10)));
+		assertEquals("[bells, nevermore]", words(jobs.ranked(bells).get(0, 10)));
+		assertEquals(2, jobs.ranked(bells).size());
+	}
+
+	@Test
+	@DisplayName("Expiry should remove old jobs and keep recent ones")
+	void shouldExpireJobs() {
+		long first = jobs.begin("https://example.com/a");
+		jobs.merge(first, counts("raven", 1));
+		long second = jobs.begin("https://example.com/b");
+		jobs.merge(second, counts("lenore", 1));
+
+		assertEquals(0, jobs.expire(60_000));
+		assertEquals(1, jobs.frequency(first, "raven"));
+
+		assertEquals(2, jobs.expire(0));
+		assertEquals(-1, jobs.frequency(first, "raven"));
+		assertTrue(jobs.top(second, 10).isEmpty());
+		assertEquals(0, jobs.ranked(second).size());
+		assertEquals(0, jobs.expire(0));
+	}
+
+}
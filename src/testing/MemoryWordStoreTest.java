@@ -0,0 +1,111 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.MemoryWordStore;
+import application.RankedWords;
+import application.Word;
+import application.WordCounter;
+import application.WordStore;
+
+/** Tests for the in-process MemoryWordStore.
+ *  @author derekdileo */
+class MemoryWordStoreTest {
+
+	private WordStore store;
+
+	@BeforeEach
+	void setUp() {
+		store = new MemoryWordStore();
+	}
+
+	@Test
+	@DisplayName("Increments and merges should add up, and missing words should return -1")
+	void shouldAddCounts() {
+		store.increment("raven", 2);
+		WordCounter job = new WordCounter();
+		job.add("raven", 3);
+		job.add("nevermore", 1);
+		store.merge(job);
+
+		assertEquals(5, store.frequency("raven"));
+		assertEquals(1, store.frequency("nevermore"));
+		assertEquals(-1, store.frequency("lenore"));
+		assertEquals(2, store.size());
+	}
+
+	@Test
+	@DisplayName("Top K and scans should follow the ranking, and writes should be visible to the next read")
+	void shouldRankWords() {
+		WordCounter job = new WordCounter();
+		job.add("the", 9);
+		job.add("raven", 4);
+		job.add("door", 4);
+		job.add("lenore", 1);
+		store.merge(job);
+
+		assertEquals(words("the", "door"), words(store.top(2)));
+		assertEquals(words("door", "raven", "lenore"), words(store.scan(1, 10)));
+		assertTrue(store.scan(10, 5).isEmpty());
+
+		// A write after a scan must not leave the old ranking behind
+		store.increment("lenore", 10);
+		assertEquals(words("lenore", "the"), words(store.top(2)));
+		RankedWords ranked = store.ranked();
+		assertEquals(4, ranked.size());
+		assertEquals(words("lenore", "the", "door", "raven"), words(ranked.get(0, 4)));
+
+		store.clear();
+		assertEquals(0, store.size());
+		assertTrue(store.top(10).isEmpty());
+	}
+
+	@Test
+	@DisplayName("Concurrent merges should not lose counts")
+	void shouldMergeConcurrently() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		for (int t = 0; t < 8; t++) {
+			pool.execute(() -> {
+				for (int i = 0; i < 1000; i++) {
+					WordCounter job = new WordCounter();
+					job.add("raven", 1);
+					job.add("word" + (i % 10), 1);
+					store.merge(job);
+					store.top(3);
+				}
+			});
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+		assertEquals(8000, store.frequency("raven"));
+		assertEquals(800, store.frequency("word7"));
+	}
+
+	private static List<String> words(String... words) {
+		List<String> list = new ArrayList<String>();
+		for (String word : words) {
+			list.add(word);
+		}
+		return list;
+	}
+
+	private static List<String> words(List<Word> ranked) {
+		List<String> list = new ArrayList<String>();
+		for (Word word : ranked) {
+			list.add(word.getWord());
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,132 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import application.PageFetcher;
+
+/** Tests for the HttpClient based PageFetcher against an in-process HTTP server.
+ *  @author derekdileo */
+class PageFetcherTest {
+
+	private static final String POEM = "Once upon a midnight dreary, while I pondered, weak and weary, ";
+
+	private HttpServer server;
+	private PageFetcher fetcher;
+	private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/gzip", exchange -> {
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+				for (int i = 0; i < 1000; i++) {
+					out.write(POEM.getBytes(StandardCharsets.UTF_8));
+				}
+				out.write(String.valueOf(accepted).getBytes(StandardCharsets.UTF_8));
+			}
+		});
+		server.createContext("/stall", exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			out.write(POEM.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			sleep(5000);
+			exchange.close();
+		});
+		server.createContext("/slowHeaders", exchange -> {
+			sleep(5000);
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.start();
+		fetcher = new PageFetcher(Duration.ofSeconds(2), Duration.ofMillis(500), 1000);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		server.stop(0);
+	}
+
+	@Test
+	@DisplayName("Should ask for gzip and decompress the body as it is read")
+	void shouldDecompressGzip() throws IOException {
+		try (PageFetcher.Response response = fetcher.get(uri("/gzip"), Collections.emptyMap())) {
+			assertEquals(200, response.getStatusCode());
+			String body = new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+			assertTrue(body.startsWith(POEM));
+			assertTrue(body.endsWith("gzip, deflate"));
+			assertTrue(response.getBytesTransferred() < body.length() / 10, "compressed " + response.getBytesTransferred());
+		}
+	}
+
+	@Test
+	@DisplayName("Should reuse the connection for requests to the same host")
+	void shouldReuseConnections() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			try (PageFetcher.Response response = fetcher.get(uri("/gzip"), Collections.emptyMap());
+					InputStream body = response.getBody()) {
+				body.readAllBytes();
+			}
+		}
+		assertEquals(1, clientPorts.size());
+		assertEquals(3, fetcher.getRequestCount());
+	}
+
+	@Test
+	@DisplayName("A body which stalls should fail once the deadline has passed")
+	void shouldEnforceDeadline() throws IOException {
+		long start = System.nanoTime();
+		try (PageFetcher.Response response = fetcher.get(uri("/stall"), Collections.emptyMap())) {
+			InputStream body = response.getBody();
+			assertThrows(HttpTimeoutException.class, body::readAllBytes);
+		}
+		assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 4000);
+	}
+
+	@Test
+	@DisplayName("Headers which do not arrive in time should time out")
+	void shouldTimeOutWaitingForHeaders() {
+		assertThrows(HttpTimeoutException.class, () -> fetcher.get(uri("/slowHeaders"), Collections.emptyMap()));
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
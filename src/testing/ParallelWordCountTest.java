@@ -0,0 +1,76 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import application.ParallelWordCount;
+import application.WordCounter;
+
+/** Checks that counting in parallel chunks gives exactly the same counts as counting serially.
+ *  @author derekdileo */
+class ParallelWordCountTest {
+
+	private static String corpus;
+	private static ForkJoinPool pool;
+
+	@BeforeAll
+	static void setUpBeforeClass() throws Exception {
+		try (InputStream in = ParallelWordCountTest.class.getResourceAsStream("/application/scrape.txt")) {
+			String page = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace('\n', ' ');
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 20; i++) {
+				sb.append(' ').append(page);
+			}
+			corpus = sb.toString();
+		}
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterAll
+	static void tearDownAfterClass() throws Exception {
+		pool.shutdown();
+	}
+
+	@ParameterizedTest
+	@DisplayName("Parallel counts should match serial counts for any chunk size")
+	@ValueSource(ints = {1, 17, 1000, 65536, 10000000})
+	void shouldMatchSerialCounts(int chunkSize) {
+		Map<String, Integer> serial = ParallelWordCount.countSerial(corpus).toMap();
+		assertFalse(serial.isEmpty());
+		assertEquals(serial, ParallelWordCount.count(corpus, chunkSize, pool).toMap());
+	}
+
+	@ParameterizedTest
+	@DisplayName("Chunks should never split a word or a tag")
+	@ValueSource(strings = {
+			"nevermore <span style=\"a b c d e f g\">quoth</span> the raven",
+			"wo<b>rd after word<i> split </i>ting",
+			"a < b and c > d while < never closes",
+			"only<>brackets<<>>here" })
+	void shouldMatchSerialCountsOnMarkup(String text) {
+		for (int chunkSize = 1; chunkSize < text.length(); chunkSize++) {
+			assertEquals(ParallelWordCount.countSerial(text).toMap(), ParallelWordCount.count(text, chunkSize, pool).toMap());
+		}
+	}
+
+	@Test
+	@DisplayName("Should ignore mdash left over from HTML entities")
+	void shouldSkipUncountableTokens() {
+		WordCounter counts = ParallelWordCount.countSerial("shore&mdash;nevermore");
+		assertEquals(2, counts.size());
+		assertEquals(1, counts.get("nevermore"));
+	}
+
+}
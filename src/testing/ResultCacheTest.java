@@ -0,0 +1,102 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.JobResult;
+import application.ResultCache;
+import application.TopWords;
+import application.WordCounter;
+
+/** Tests for the in-memory ResultCache.
+ *  @author derekdileo */
+class ResultCacheTest {
+
+	private static final String RAVEN = "https://www.gutenberg.org/files/1065/1065-h/1065-h.htm";
+
+	@Test
+	@DisplayName("A repeated request should be served the same result")
+	void shouldReturnCachedResult() {
+		ResultCache cache = new ResultCache(60000, 1 << 20);
+		String key = ResultCache.key(RAVEN, "The Raven", "*** END", "\"abc\"");
+		assertNull(cache.get(key));
+
+		JobResult result = result("nevermore", 3);
+		cache.put(key, result, 100);
+		assertSame(result, cache.get(ResultCache.key(RAVEN, "The Raven", "*** END", "\"abc\"")));
+
+		ResultCache.Stats stats = cache.getStats();
+		assertEquals(1, stats.hits);
+		assertEquals(1, stats.misses);
+		assertEquals(1, stats.entries);
+		assertEquals(100, stats.bytes);
+	}
+
+	@Test
+	@DisplayName("Keys should differ when any field or the page validator differs")
+	void shouldSeparateKeys() {
+		String key = ResultCache.key(RAVEN, "The Raven", "*** END", "\"abc\"");
+		assertNotEquals(key, ResultCache.key(RAVEN, "The Raven", "*** END", "\"abd\""));
+		assertNotEquals(key, ResultCache.key(RAVEN, "The Raven", "*** END", null));
+		assertNotEquals(key, ResultCache.key(RAVEN, "The Rave", "n*** END", "\"abc\""));
+		assertNotEquals(key, ResultCache.key(RAVEN + "?x", "The Raven", "*** END", "\"abc\""));
+	}
+
+	@Test
+	@DisplayName("Results older than the TTL should not be served")
+	void shouldExpireResults() throws InterruptedException {
+		ResultCache cache = new ResultCache(1, 1 << 20);
+		cache.put("a", result("nevermore", 3), 100);
+		Thread.sleep(20);
+		assertNull(cache.get("a"));
+
+		ResultCache.Stats stats = cache.getStats();
+		assertEquals(1, stats.expirations);
+		assertEquals(0, stats.entries);
+		assertEquals(0, stats.bytes);
+	}
+
+	@Test
+	@DisplayName("Least recently used results should be evicted to stay within the memory bound")
+	void shouldEvictLeastRecentlyUsed() {
+		ResultCache cache = new ResultCache(60000, 250);
+		cache.put("a", result("a", 1), 100);
+		cache.put("b", result("b", 1), 100);
+		cache.get("a");
+		cache.put("c", result("c", 1), 100);
+
+		assertNull(cache.get("b"));
+		assertEquals("a", cache.get("a").getTopWords().get(0).getWord());
+		assertEquals("c", cache.get("c").getTopWords().get(0).getWord());
+		assertEquals(1, cache.getStats().evictions);
+		assertEquals(200, cache.getStats().bytes);
+
+		// Too large to fit at all
+		cache.put("d", result("d", 1), 251);
+		assertNull(cache.get("d"));
+		assertEquals(2, cache.getStats().entries);
+	}
+
+	@Test
+	@DisplayName("Estimate should grow with the vocabulary")
+	void shouldEstimateBytes() {
+		WordCounter counts = new WordCounter();
+		counts.add("raven", 1);
+		long one = ResultCache.estimateBytes(counts);
+		counts.add("nevermore", 1);
+		assertTrue(ResultCache.estimateBytes(counts) > one);
+	}
+
+	private static JobResult result(String word, int frequency) {
+		WordCounter counts = new WordCounter();
+		counts.add(word, frequency);
+		return new JobResult(TopWords.select(counts, 10), TopWords.ranked(counts));
+	}
+
+}
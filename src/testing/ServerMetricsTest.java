@@ -0,0 +1,75 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import application.LatencyHistogram;
+import application.ServerMetrics;
+
+/** Tests for LatencyHistogram and the ServerMetrics text endpoint.
+ *  @author derekdileo */
+class ServerMetricsTest {
+
+	@Test
+	@DisplayName("Percentiles should be the bound of the bucket holding them")
+	void shouldEstimatePercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(100, snapshot.count);
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(4), snapshot.getPercentileNanos(0.5));
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(4), snapshot.getPercentileNanos(0.9));
+		// 5ms falls in the bucket up to 8.192ms, which is capped at the largest value recorded
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(5), snapshot.getPercentileNanos(0.99));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(5), snapshot.maxNanos);
+		assertEquals((90 * 3000L + 10 * 5000000L) / 100, snapshot.getMeanNanos());
+	}
+
+	@Test
+	@DisplayName("An empty histogram should report zeros")
+	void shouldHandleEmptyHistogram() {
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+		assertEquals(0, snapshot.count);
+		assertEquals(0, snapshot.getPercentileNanos(0.99));
+		assertEquals(0, snapshot.getMeanNanos());
+	}
+
+	@Test
+	@DisplayName("The endpoint should serve counters and stage histograms as text")
+	void shouldServeText() throws IOException {
+		ServerMetrics.record(ServerMetrics.Stage.DATABASE, TimeUnit.MILLISECONDS.toNanos(2));
+		ServerMetrics.dbRoundTrips(3);
+
+		HttpServer server = ServerMetrics.startEndpoint(0);
+		try (InputStream in = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/metrics").openStream()) {
+			String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			assertTrue(text.contains("# TYPE wordfreq_db_round_trips_total counter"));
+			assertTrue(text.contains("wordfreq_stage_seconds_count{stage=\"database\"}"));
+			assertTrue(text.contains("wordfreq_stage_seconds_bucket{stage=\"fetch\",le=\"+Inf\"}"));
+			for (ServerMetrics.Stage stage : ServerMetrics.Stage.values()) {
+				assertTrue(text.contains("stage=\"" + stage.label() + "\""), stage.label());
+			}
+		} finally {
+			server.stop(0);
+		}
+		assertTrue(ServerMetrics.getStage(ServerMetrics.Stage.DATABASE).count >= 1);
+	}
+
+}
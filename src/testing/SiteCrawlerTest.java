@@ -0,0 +1,203 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import application.SiteCrawler;
+
+/** Tests for the SiteCrawler against a fixture book served by an in-process HTTP server:
+ *  an index page linking to three chapters, each with the text between the usual markers.
+ *  @author derekdileo */
+class SiteCrawlerTest {
+
+	private static final String HEAD = "<h1>The Raven</h1>";
+	private static final String END = "*** END OF THE PROJECT";
+
+	private HttpServer server;
+	private SiteCrawler crawler;
+	private final Map<String, String> pages = new HashMap<String, String>();
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+	private final List<Long> starts = Collections.synchronizedList(new ArrayList<Long>());
+	private final Map<String, Long> firstStarts = new ConcurrentHashMap<String, Long>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		pages.put("/book/index.html", page("quoth index",
+				"<a href=\"ch1.html\">One</a> <a href='ch2.html#top'>Two</a>",
+				"<a href=\"/book/ch1.html\">One again</a> <a href=\"cover.jpg\">Cover</a>",
+				"<a href=\"http://other.example/ch9.html\">Elsewhere</a> <a href=\"/about.html\">About</a>"));
+		pages.put("/book/ch1.html", page("quoth door", "<a href=\"ch3.html\">Three</a> <a href=\"index.html\">Back</a>"));
+		pages.put("/book/ch2.html", page("quoth nevermore", "<a href=\"missing.html\">Gone</a>"));
+		pages.put("/book/ch3.html", page("quoth lenore", ""));
+		pages.put("/about.html", page("about", ""));
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", exchange -> {
+			starts.add(System.nanoTime());
+			firstStarts.putIfAbsent(exchange.getRequestHeaders().getFirst("Host"), System.nanoTime());
+			int now = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(now, Math::max);
+			try {
+				String path = exchange.getRequestURI().getPath();
+				requests.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+				sleep(20);
+				String body = pages.get(path);
+				if (body == null) {
+					exchange.sendResponseHeaders(404, -1);
+					return;
+				}
+				byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(200, bytes.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(bytes);
+				}
+			} finally {
+				inFlight.decrementAndGet();
+				exchange.close();
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+		if (crawler != null) {
+			crawler.shutdown();
+		}
+	}
+
+	@Test
+	@DisplayName("A crawl should count every chapter once and stay within the book's directory")
+	void shouldAggregateSite() throws Exception {
+		crawler = new SiteCrawler(3, 50, 4, 4, 0, true);
+		SiteCrawler.Result result = crawler.crawl(url("/book/index.html"), HEAD, END, null);
+
+		assertNotNull(result);
+		assertEquals(4, result.counts.get("quoth"));
+		assertEquals(1, result.counts.get("door"));
+		assertEquals(1, result.counts.get("lenore"));
+		assertEquals(0, result.counts.get("about"));
+		assertEquals(5, result.pagesFetched);
+		assertEquals(1, result.pagesFailed);
+		for (String path : new String[] { "/book/index.html", "/book/ch1.html", "/book/ch2.html", "/book/ch3.html" }) {
+			assertEquals(1, requests.get(path).get(), path);
+		}
+		assertNull(requests.get("/about.html"));
+		assertNull(requests.get("/book/cover.jpg"));
+	}
+
+	@Test
+	@DisplayName("Depth and page budget should limit the crawl")
+	void shouldRespectLimits() throws Exception {
+		crawler = new SiteCrawler(1, 50, 4, 4, 0, true);
+		SiteCrawler.Result shallow = crawler.crawl(url("/book/index.html"), HEAD, END, null);
+		assertEquals(3, shallow.pagesFetched);
+		assertEquals(0, shallow.counts.get("lenore"));
+		crawler.shutdown();
+
+		crawler = new SiteCrawler(3, 2, 4, 4, 0, false);
+		SiteCrawler.Result budget = crawler.crawl(url("/book/index.html"), HEAD, END, null);
+		assertEquals(2, budget.pagesFetched);
+		assertEquals(2, budget.counts.get("quoth"));
+	}
+
+	@Test
+	@DisplayName("Requests to one host should keep to the connection limit and delay")
+	void shouldBePolite() throws Exception {
+		crawler = new SiteCrawler(3, 50, 8, 1, 100, true);
+		assertNotNull(crawler.crawl(url("/book/index.html"), HEAD, END, null));
+
+		assertEquals(1, maxInFlight.get());
+		List<Long> sorted = new ArrayList<Long>(starts);
+		Collections.sort(sorted);
+		for (int i = 1; i < sorted.size(); i++) {
+			long gap = sorted.get(i) - sorted.get(i - 1);
+			// Request arrivals jitter by a few milliseconds around the gaps the crawler keeps
+			assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(90), "gap " + gap);
+		}
+	}
+
+	@Test
+	@DisplayName("A crawl waiting on a slow host should not keep another host's pages from starting")
+	void shouldNotBlockOtherHosts() throws Exception {
+		crawler = new SiteCrawler(3, 50, 2, 1, 300, true);
+		Thread busy = new Thread(() -> {
+			try {
+				crawler.crawl(url("/book/index.html"), HEAD, END, null);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		busy.start();
+		// Wait until the second level is waiting for the host's delay to pass after the index page
+		while (!requests.containsKey("/book/index.html")) {
+			sleep(5);
+		}
+		sleep(100);
+
+		int port = server.getAddress().getPort();
+		long asked = System.nanoTime();
+		assertNotNull(crawler.crawl("http://127.0.0.1:" + port + "/book/index.html", HEAD, END, null));
+		long waited = firstStarts.get("127.0.0.1:" + port) - asked;
+		assertTrue(waited < TimeUnit.MILLISECONDS.toNanos(150), "waited " + waited);
+		busy.join();
+	}
+
+	@Test
+	@DisplayName("Links should be resolved and normalized before de-duplication")
+	void shouldNormalizeLinks() {
+		URI base = URI.create("http://Example.org:80/book/index.html");
+		assertEquals("http://example.org/book/ch1.html", SiteCrawler.normalize("ch1.html", base).toString());
+		assertEquals("http://example.org/", SiteCrawler.normalize("HTTP://EXAMPLE.org", null).toString());
+		assertEquals("http://example.org/a?b=1", SiteCrawler.normalize("/a?b=1", base).toString());
+		assertNull(SiteCrawler.normalize("mailto:poe@example.org", base));
+
+		List<String> links = new ArrayList<String>();
+		SiteCrawler.findLinks("<A HREF=\"a.html\">a</A><link href='style.css'><a href=\"#top\">", links);
+		assertEquals(Collections.singletonList("a.html"), links);
+	}
+
+	private String url(String path) {
+		return "http://localhost:" + server.getAddress().getPort() + path;
+	}
+
+	private static String page(String words, String... links) {
+		return "<html><body>\n" + String.join("\n", links) + "\n" + HEAD + "\n<p>" + words + "</p>\n" + END + "\n</body></html>\n";
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
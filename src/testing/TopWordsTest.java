@@ -0,0 +1,58 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import application.TopWords;
+import application.Word;
+import application.WordCounter;
+
+/** Tests for TopWords, checked against a full sort of the vocabulary.
+ *  @author derekdileo */
+class TopWordsTest {
+
+	@ParameterizedTest
+	@DisplayName("Heap selection should equal the first k words of a full sort")
+	@ValueSource(ints = {1, 10, 100, 5000})
+	void shouldMatchFullSort(int k) {
+		WordCounter counts = new WordCounter();
+		Random random = new Random(7);
+		for (int i = 0; i < 50000; i++) {
+			counts.add("w" + random.nextInt(2000), 1);
+		}
+		List<Word> expected = TopWords.sorted(counts).stream().limit(k).collect(Collectors.toList());
+		List<Word> actual = TopWords.select(counts, k);
+		assertEquals(toText(expected), toText(actual));
+	}
+
+	@Test
+	@DisplayName("Ties should be broken alphabetically")
+	void shouldBreakTiesAlphabetically() {
+		WordCounter counts = new WordCounter();
+		counts.add("raven", 3);
+		counts.add("door", 3);
+		counts.add("the", 5);
+		counts.add("bust", 1);
+		assertEquals("the=5 door=3 raven=3", toText(TopWords.select(counts, 3)));
+	}
+
+	@Test
+	@DisplayName("Should return nothing for an empty counter")
+	void shouldHandleEmptyCounter() {
+		assertTrue(TopWords.select(new WordCounter(), 10).isEmpty());
+	}
+
+	private static String toText(List<Word> words) {
+		return words.stream().map(w -> w.getWord() + "=" + w.getFrequency()).collect(Collectors.joining(" "));
+	}
+
+}
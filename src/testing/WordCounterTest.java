@@ -0,0 +1,89 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import application.WordCounter;
+
+/** Tests for the open-addressing WordCounter, checked against a HashMap(of String, Integer).
+ *  @author derekdileo */
+class WordCounterTest {
+
+	private WordCounter counter;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		counter = new WordCounter(4);
+	}
+
+	@Test
+	@DisplayName("Should count words from a char range and from a String alike")
+	void shouldCountFromCharRange() {
+		char[] buffer = "xxravenyy".toCharArray();
+		assertEquals(1, counter.increment(buffer, 2, 5));
+		assertEquals(2, counter.increment(buffer, 2, 5));
+		assertEquals(5, counter.add("raven", 3));
+		assertEquals(5, counter.get("raven"));
+		assertEquals(5, counter.get(buffer, 2, 5));
+		assertEquals(0, counter.get("nevermore"));
+		assertEquals(1, counter.size());
+		assertEquals(5, counter.total());
+	}
+
+	@Test
+	@DisplayName("Should match HashMap counts after growing many times")
+	void shouldMatchHashMapAfterResizing() {
+		Map<String, Integer> expected = new HashMap<String, Integer>();
+		Random random = new Random(42);
+		for (int i = 0; i < 200000; i++) {
+			String word = "w" + random.nextInt(50000);
+			expected.merge(word, 1, Integer::sum);
+			char[] chars = word.toCharArray();
+			counter.increment(chars, 0, chars.length);
+		}
+		assertEquals(expected, counter.toMap());
+		assertEquals(expected.size(), counter.size());
+		assertEquals(200000, counter.total());
+	}
+
+	@Test
+	@DisplayName("Should merge another counter and walk every word with a cursor")
+	void shouldMergeAndIterate() {
+		counter.add("the", 2);
+		counter.add("raven", 1);
+		WordCounter other = new WordCounter();
+		other.add("raven", 4);
+		other.add("door", 1);
+		counter.merge(other);
+
+		Map<String, Integer> seen = new HashMap<String, Integer>();
+		WordCounter.Cursor cursor = counter.cursor();
+		while (cursor.next()) {
+			seen.put(cursor.word(), cursor.count());
+		}
+		assertEquals(3, seen.size());
+		assertEquals(Integer.valueOf(5), seen.get("raven"));
+		assertEquals(8, counter.total());
+		assertTrue(other.get("the") == 0);
+	}
+
+	@Test
+	@DisplayName("Words with the same hash code should be kept apart")
+	void shouldHandleHashCollisions() {
+		// "Aa" and "BB" have the same String.hashCode()
+		counter.add("Aa", 1);
+		counter.add("BB", 2);
+		assertEquals(1, counter.get("Aa"));
+		assertEquals(2, counter.get("BB"));
+		assertEquals(2, counter.size());
+	}
+
+}
@@ -0,0 +1,37 @@
+package testing;
+
+import java.util.List;
+
+import application.Word;
+import application.WordCounter;
+
+/** Builders and formatters for word counts shared by the store and buffer tests.
+ *  @author derekdileo */
+final class WordFixtures {
+
+	private WordFixtures() {
+	}
+
+	/** Method builds a WordCounter from word/count pairs.
+	 *  @param pairs alternates each word (String) and its count (Integer)
+	 *  @return WordCounter holding the pairs */
+	static WordCounter counts(Object... pairs) {
+		WordCounter counts = new WordCounter();
+		for (int i = 0; i < pairs.length; i += 2) {
+			counts.add((String) pairs[i], (Integer) pairs[i + 1]);
+		}
+		return counts;
+	}
+
+	/** Method lists the words of a ranking without their frequencies.
+	 *  @param words is the ranking
+	 *  @return words in order, formatted as "[a, b]" */
+	static String words(List<Word> words) {
+		StringBuilder sb = new StringBuilder("[");
+		for (Word word : words) {
+			sb.append(sb.length() > 1 ? ", " : "").append(word.getWord());
+		}
+		return sb.append("]").toString();
+	}
+
+}
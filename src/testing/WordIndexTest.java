@@ -0,0 +1,119 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static testing.WordFixtures.counts;
+import static testing.WordFixtures.words;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import application.IndexWordStore;
+import application.TopWords;
+import application.Word;
+import application.WordCounter;
+import application.WordIndex;
+
+/** Tests for the memory-mapped WordIndex file and the IndexWordStore built on it.
+ *  @author derekdileo */
+class WordIndexTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	@DisplayName("Lookups and top K should match the counts written")
+	void shouldLookUpWords() throws IOException {
+		WordCounter counts = counts("the", 9, "raven", 4, "door", 4, "lenore", 1, "naïve", 2);
+		WordIndex index = WordIndex.write(counts, dir.resolve("words.index"));
+
+		assertEquals(5, index.size());
+		assertEquals(20, index.total());
+		assertEquals(9, index.frequency("the"));
+		assertEquals(2, index.frequency("naïve"));
+		assertEquals(-1, index.frequency("nevermore"));
+		assertEquals(-1, index.frequency("th"));
+		assertEquals(counted(TopWords.select(counts, 3)), counted(index.top(3)));
+		assertEquals("[lenore]", words(index.scan(4, 10)));
+		assertTrue(index.scan(5, 10).isEmpty());
+	}
+
+	@Test
+	@DisplayName("Merging should add job counts to existing words and insert new ones")
+	void shouldMergeJobs() throws IOException {
+		Path file = dir.resolve("words.index");
+		WordIndex index = WordIndex.write(counts("raven", 2, "door", 1), file);
+		index = WordIndex.merge(index, counts("door", 5, "bird", 1, "zephyr", 1), file);
+
+		assertEquals(4, index.size());
+		assertEquals(6, index.frequency("door"));
+		assertEquals(2, index.frequency("raven"));
+		assertEquals(1, index.frequency("bird"));
+		assertEquals(1, index.frequency("zephyr"));
+		assertEquals("[door, raven, bird, zephyr]", words(index.top(10)));
+		assertTrue(Files.notExists(dir.resolve("words.index.tmp")));
+
+		// A negative delta can take a word below zero, which ranks it last
+		index = WordIndex.merge(index, counts("raven", -5), file);
+		assertEquals(-3, index.frequency("raven"));
+		assertEquals("[door, bird, zephyr, raven]", words(index.top(10)));
+	}
+
+	@Test
+	@DisplayName("Merging many jobs should give the same counts as counting them together")
+	void shouldMatchWordCounter() throws IOException {
+		Path file = dir.resolve("words.index");
+		WordIndex index = WordIndex.open(file);
+		WordCounter all = new WordCounter();
+		for (int job = 0; job < 20; job++) {
+			WordCounter counts = new WordCounter();
+			for (int i = 0; i < 500; i++) {
+				counts.add("w" + ((i * 31 + job * 7) % 997), 1 + i % 3);
+			}
+			all.merge(counts);
+			index = WordIndex.merge(index, counts, file);
+		}
+		assertEquals(all.size(), index.size());
+		assertEquals(all.total(), index.total());
+		assertEquals(counted(TopWords.sorted(all)), counted(index.scan(0, all.size())));
+	}
+
+	@Test
+	@DisplayName("The store should keep its counts across a restart")
+	void shouldPersist() throws IOException {
+		Path file = dir.resolve("store.index");
+		IndexWordStore store = new IndexWordStore(file);
+		store.merge(counts("raven", 3, "nevermore", 2));
+		store.increment("raven", 1);
+
+		IndexWordStore reopened = new IndexWordStore(file);
+		assertEquals(4, reopened.frequency("raven"));
+		assertEquals("[raven, nevermore]", words(reopened.top(10)));
+		reopened.clear();
+		assertEquals(0, reopened.size());
+	}
+
+	@Test
+	@DisplayName("A file which is not an index should be rejected")
+	void shouldRejectOtherFiles() throws IOException {
+		Path file = dir.resolve("other.index");
+		Files.write(file, new byte[100]);
+		assertThrows(IOException.class, () -> WordIndex.open(file));
+	}
+
+	private static String counted(List<Word> words) {
+		StringBuilder sb = new StringBuilder();
+		for (Word word : words) {
+			sb.append(word.getWord()).append('=').append(word.getFrequency()).append(' ');
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,146 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import application.CaptureMode;
+import application.WebScrape;
+import application.WordTokenizer;
+
+/** Golden tests which check that the streaming WordTokenizer produces exactly the words of the
+ *  original Scanner + StringBuffer + regex implementation of WebScrape.parseSite().
+ *  @author derekdileo */
+class WordTokenizerTest {
+
+	// The Raven, as saved from Project Gutenberg
+	private static String page;
+
+	@BeforeAll
+	static void setUpBeforeClass() throws Exception {
+		try (InputStream in = WordTokenizerTest.class.getResourceAsStream("/application/scrape.txt")) {
+			page = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	@DisplayName("Should match the original parser on the poem in scrape.txt")
+	void shouldMatchLegacyParserOnPoem() throws IOException {
+		List<String> expected = legacyParse(page, "<h1>The Raven</h1>", "*** END OF THE PROJECT GUTENBERG EBOOK");
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, streamingParse(page, "<h1>The Raven</h1>", "*** END OF THE PROJECT GUTENBERG EBOOK"));
+	}
+
+	@Test
+	@DisplayName("Should match the original parser on the whole of scrape.txt")
+	void shouldMatchLegacyParserOnWholePage() throws IOException {
+		List<String> expected = legacyParse(page, "<!DOCTYPE", "</html>");
+		assertEquals(expected, streamingParse(page, "<!DOCTYPE", "</html>"));
+	}
+
+	@Test
+	@DisplayName("Should match the original parser when sourceHead appears on several lines")
+	void shouldMatchLegacyParserOnRepeatedRegions() throws IOException {
+		List<String> expected = legacyParse(page, "Nevermore", "<br />");
+		assertEquals(expected, streamingParse(page, "Nevermore", "<br />"));
+	}
+
+	@ParameterizedTest
+	@DisplayName("Should match the original parser on tricky markup")
+	@ValueSource(strings = {
+			"Once upon a midnight <i>drea</i>ry, while I pondered",
+			"a <b\nmulti-line\ntag> here",
+			"unclosed < tag at the end",
+			"two < unclosed < brackets",
+			"open <a> then < never closed",
+			"it’s NEVERMORE&mdash;quoth",
+			"\u212Aelvin (Kelvin sign) and İstanbul",
+			"",
+			"   ",
+			"<only a tag>" })
+	void shouldMatchLegacyParserOnMarkup(String text) throws IOException {
+		String document = "start\n" + text + "\nend\n";
+		assertEquals(legacyParse(document, "start", "end"), streamingParse(document, "start", "end"));
+	}
+
+	@Test
+	@DisplayName("Should stop reading once the capture mode has enough regions")
+	void shouldStopAfterCapturedRegions() throws IOException {
+		String document = "head one end\nhead\nsecond\nend\nhead\nthird\nend\ntrailing\n";
+		List<String> tokens = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new StringReader(document));
+		assertTrue(WebScrape.parse(reader, "head", "end", CaptureMode.upTo(2),
+				(buffer, offset, length) -> tokens.add(new String(buffer, offset, length))));
+		assertEquals(Arrays.asList("head", "one", "end", "head", "second", "end", "head", "third", "end"), tokens);
+		
+		// The rest of the page was never read
+		assertEquals("trailing", reader.readLine());
+		
+		// With all regions the whole page is read
+		assertFalse(WebScrape.parse(new BufferedReader(new StringReader(document)), "head", "end", CaptureMode.all(),
+				(buffer, offset, length) -> { }));
+	}
+
+	@Test
+	@DisplayName("Should emit each word as soon as it ends")
+	void shouldEmitTokensIncrementally() {
+		List<String> tokens = new ArrayList<String>();
+		WordTokenizer tokenizer = new WordTokenizer((buffer, offset, length) -> tokens.add(new String(buffer, offset, length)));
+		tokenizer.feed("Quoth the Ra");
+		assertEquals(Arrays.asList("quoth", "the"), tokens);
+		tokenizer.feed("ven.");
+		tokenizer.finish();
+		assertEquals(Arrays.asList("quoth", "the", "raven"), tokens);
+	}
+
+	private static List<String> streamingParse(String document, String head, String end) throws IOException {
+		List<String> tokens = new ArrayList<String>();
+		WebScrape.parse(new BufferedReader(new StringReader(document)), head, end,
+				(buffer, offset, length) -> tokens.add(new String(buffer, offset, length)));
+		return tokens;
+	}
+
+	/** The original parseSite() body, run against a String instead of a URL (blank tokens removed). */
+	private static List<String> legacyParse(String document, String sourceHead, String sourceEnd) {
+		Scanner sc = new Scanner(new InputStreamReader(
+				new java.io.ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+		StringBuffer sb = new StringBuffer();
+		while (sc.hasNextLine()) {
+			String line = sc.nextLine();
+			if (line.contains(sourceHead)) {
+				sb.append(" " + line);
+				while (sc.hasNextLine()) {
+					line = sc.nextLine();
+					sb.append(" " + line);
+					if (line.contains(sourceEnd)) {
+						break;
+					}
+				}
+			}
+		}
+		sc.close();
+		String nohtml = sb.toString().toLowerCase().replaceAll("\\<.*?>", "");
+		return Arrays.stream(nohtml.split("[^a-zA-Z’]+"))
+				.filter(word -> !word.isEmpty())
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,150 @@
+package testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static testing.WordFixtures.counts;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import application.MemoryWordStore;
+import application.WordCounter;
+import application.WriteBehindBuffer;
+import application.WriteBehindWordStore;
+
+/** Tests for the WriteBehindBuffer and its write-ahead log.
+ *  @author derekdileo */
+class WriteBehindBufferTest {
+
+	@TempDir
+	Path dir;
+
+	// Every batch the sink received
+	private final List<WordCounter> batches = Collections.synchronizedList(new ArrayList<WordCounter>());
+	private final WriteBehindBuffer.Sink recording = (namespace, counts) -> batches.add(counts);
+
+	@Test
+	@DisplayName("A flush should write buffered counts in batches and then drop the log")
+	void shouldFlushInBatches() throws IOException {
+		WriteBehindBuffer buffer = new WriteBehindBuffer("test", recording, dir, 3_600_000, 2, 1_000_000, true);
+		buffer.append(7, counts("raven", 2, "door", 1, "lenore", 1));
+		buffer.append(7, counts("raven", 1, "bird", 1, "bust", 1));
+		assertEquals(3, buffer.pending(7, "raven"));
+		assertEquals(5, buffer.getStats().pendingWords);
+		assertTrue(batches.isEmpty());
+
+		buffer.flush();
+		assertEquals(3, batches.size());
+		assertEquals(3, total("raven"));
+		assertEquals(5, buffer.getStats().flushedWords);
+		assertEquals(0, buffer.pending(7, "raven"));
+		assertTrue(buffer.isEmpty());
+		assertEquals(1, logFiles());
+		buffer.close();
+	}
+
+	@Test
+	@DisplayName("Counts which never reached the store should be replayed after a restart")
+	void shouldReplayLog() throws IOException {
+		WriteBehindBuffer failing = new WriteBehindBuffer("test", (namespace, counts) -> false, dir, 10, 100, 1_000_000, true);
+		failing.append(WriteBehindBuffer.SHARED, counts("raven", 3));
+		failing.append(WriteBehindBuffer.SHARED, counts("raven", 1, "nevermore", 2));
+		failing.close();
+
+		WriteBehindBuffer reopened = new WriteBehindBuffer("test", recording, dir, 3_600_000, 100, 1_000_000, true);
+		reopened.flush();
+		assertEquals(2, reopened.getStats().replayedRecords);
+		assertEquals(4, total("raven"));
+		assertEquals(2, total("nevermore"));
+		reopened.close();
+
+		// Nothing is replayed twice
+		batches.clear();
+		new WriteBehindBuffer("test", recording, dir, 3_600_000, 100, 1_000_000, true).close();
+		assertTrue(batches.isEmpty());
+	}
+
+	@Test
+	@DisplayName("A torn record at the end of the log should be ignored")
+	void shouldIgnoreTornRecord() throws IOException {
+		WriteBehindBuffer failing = new WriteBehindBuffer("test", (namespace, counts) -> false, dir, 3_600_000, 100, 1_000_000, true);
+		failing.append(3, counts("raven", 2));
+		failing.close();
+		try (Stream<Path> files = Files.list(dir)) {
+			Path log = files.filter(file -> file.toString().endsWith(".log")).sorted().findFirst().get();
+			Files.write(log, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+		}
+
+		WriteBehindBuffer reopened = new WriteBehindBuffer("test", recording, dir, 3_600_000, 100, 1_000_000, true);
+		reopened.flush();
+		assertEquals(1, reopened.getStats().replayedRecords);
+		assertEquals(2, total("raven"));
+		reopened.close();
+	}
+
+	@Test
+	@DisplayName("Writers should flush themselves once too many occurrences are pending")
+	void shouldApplyBackpressure() throws IOException {
+		WriteBehindBuffer buffer = new WriteBehindBuffer("test", recording, dir, 3_600_000, 100, 5, false);
+		buffer.append(1, counts("raven", 6));
+		assertEquals(6, total("raven"));
+		assertTrue(buffer.isEmpty());
+		buffer.close();
+	}
+
+	@Test
+	@DisplayName("Reads through a store should count deltas a failed flush left buffered, or refuse to answer")
+	void shouldNotHideFailedFlush() throws IOException {
+		MemoryWordStore memory = new MemoryWordStore();
+		boolean[] up = { false };
+		WriteBehindBuffer buffer = new WriteBehindBuffer("test", (namespace, counts) -> {
+			if (up[0]) {
+				memory.merge(counts);
+			}
+			return up[0];
+		}, dir, 3_600_000, 100, 1_000_000, false);
+		WriteBehindWordStore store = new WriteBehindWordStore(memory, buffer);
+		store.merge(counts("raven", 2));
+
+		assertFalse(buffer.flush());
+		assertEquals(2, store.frequency("raven"));
+		assertEquals(-1, store.frequency("door"));
+		assertThrows(IllegalStateException.class, () -> store.top(1));
+		assertThrows(IllegalStateException.class, () -> store.ranked());
+
+		up[0] = true;
+		assertEquals(2, store.frequency("raven"));
+		assertEquals("raven", store.top(1).get(0).getWord());
+		assertTrue(buffer.flush());
+		buffer.close();
+	}
+
+	private int total(String word) {
+		int total = 0;
+		synchronized (batches) {
+			for (WordCounter batch : batches) {
+				total += batch.get(word);
+			}
+		}
+		return total;
+	}
+
+	private long logFiles() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(file -> file.toString().endsWith(".log")).count();
+		}
+	}
+
+}